@@ -0,0 +1,89 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of hashing and building the objects of a repository:
+ *  Utils.sha1 over file contents, constructing a Blob from a file, and
+ *  Commit.setSHA over commits of FILES files.
+ *  @author Israel Rodriguez
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ObjectBenchmark {
+
+    /** Number of files in each commit. */
+    @Param({"10", "100", "1000"})
+    public int files;
+
+    /** Size of each file, in bytes. */
+    @Param({"1024", "65536"})
+    public int fileSize;
+
+    /** Writes the files hashed and the commit whose ID is computed. */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        _repo = new SyntheticRepository(1, files, fileSize);
+        _contents = _repo.contents();
+        HashMap<String, Blob> blobs = new HashMap<>();
+        for (int i = 0; i < files; i += 1) {
+            String name = "file" + i + ".txt";
+            blobs.put(name, new Blob(name, _repo.dir().getPath()));
+        }
+        _commit = new Commit("Benchmark", blobs, new HashMap<>(), "");
+    }
+
+    /** Deletes the files. */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        _repo.delete();
+    }
+
+    /** Hashes the contents of one file. */
+    @Benchmark
+    public String sha1() {
+        return Utils.sha1(_contents);
+    }
+
+    /** Reads and hashes one file as add does. */
+    @Benchmark
+    public Blob blob() {
+        return new Blob("file0.txt", _repo.dir().getPath());
+    }
+
+    /** Computes the ID of a commit of FILES files. */
+    @Benchmark
+    public String commitSha() {
+        _commit.setSHA();
+        return _commit.getSHA();
+    }
+
+    /** Repository holding the files. */
+    private SyntheticRepository _repo;
+
+    /** Contents of one file. */
+    private byte[] _contents;
+
+    /** A commit of every file. */
+    private Commit _commit;
+}
@@ -0,0 +1,152 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of whole-repository operations on a SyntheticRepository
+ *  of COMMITS commits over FILES files of FILESIZE bytes: loading the
+ *  repository, saving its state, status, finding the split point of
+ *  two branches, and merging them. Each opens the repository as a
+ *  command run by Main does, so that what is measured is the cost of
+ *  one command.
+ *  @author Israel Rodriguez
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RepositoryBenchmark {
+
+    /** Number of commits on master. */
+    @Param({"100", "1000"})
+    public int commits;
+
+    /** Number of files. */
+    @Param({"10", "100"})
+    public int files;
+
+    /** Size of each file, in bytes. */
+    @Param({"1024"})
+    public int fileSize;
+
+    /** Builds the repository. */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        _repo = new SyntheticRepository(commits, files, fileSize);
+        _head = _repo.branch("master");
+        _other = _repo.branch(SyntheticRepository.OTHER);
+        _out = System.out;
+    }
+
+    /** Deletes the repository. */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        _repo.delete();
+    }
+
+    /** Opens the repository, reading its state. */
+    @Benchmark
+    public Gitlet load() {
+        Gitlet g = new Gitlet(_repo.dir().getPath());
+        g.close();
+        return g;
+    }
+
+    /** Opens the repository and writes back its state. */
+    @Benchmark
+    public Gitlet save() {
+        Gitlet g = new Gitlet(_repo.dir().getPath());
+        g.saveGitlet();
+        g.close();
+        return g;
+    }
+
+    /** Runs status, discarding what it prints. */
+    @Benchmark
+    public Gitlet status() {
+        Gitlet g = new Gitlet(_repo.dir().getPath());
+        System.setOut(NULL);
+        try {
+            g.status();
+        } finally {
+            System.setOut(_out);
+        }
+        g.close();
+        return g;
+    }
+
+    /** Finds the split point of master and the other branch. */
+    @Benchmark
+    public String splitPoint() {
+        Gitlet g = new Gitlet(_repo.dir().getPath());
+        String result = g.findSplitPoint(_head, _other);
+        g.close();
+        return result;
+    }
+
+    /** Merges the other branch into master, in a copy of the
+     *  repository made for the purpose. */
+    @Benchmark
+    public Gitlet merge(Copy copy) {
+        Gitlet g = new Gitlet(copy._dir.getPath());
+        g.merge(SyntheticRepository.OTHER);
+        g.close();
+        return g;
+    }
+
+    /** A fresh copy of the repository, made before each invocation of a
+     *  benchmark that changes it. */
+    @State(Scope.Thread)
+    public static class Copy {
+
+        /** Copies the repository of BENCHMARK. */
+        @Setup(Level.Invocation)
+        public void setUp(RepositoryBenchmark benchmark) throws IOException {
+            _dir = benchmark._repo.copy();
+        }
+
+        /** Deletes the copy. */
+        @TearDown(Level.Invocation)
+        public void tearDown() throws IOException {
+            SyntheticRepository.delete(_dir);
+        }
+
+        /** Working directory of the copy. */
+        private File _dir;
+    }
+
+    /** A stream that discards everything written to it. */
+    private static final PrintStream NULL =
+        new PrintStream(OutputStream.nullOutputStream());
+
+    /** The repository. */
+    private SyntheticRepository _repo;
+
+    /** The tip of master. */
+    private String _head;
+
+    /** The tip of the other branch. */
+    private String _other;
+
+    /** Standard output, restored after status. */
+    private PrintStream _out;
+}
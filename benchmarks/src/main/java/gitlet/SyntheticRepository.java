@@ -0,0 +1,111 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/** A repository built for benchmarking, the same for the same
+ *  parameters. Its master branch is a linear history of COMMITS commits
+ *  made by a RepoGenerator over FILES files of FILESIZE bytes each,
+ *  each commit after the first rewriting one file. The branch OTHER
+ *  then forks from the tip of master, and master and OTHER each gain
+ *  one more commit, changing different files, so that they merge
+ *  without conflict.
+ *  @author Israel Rodriguez
+ */
+class SyntheticRepository {
+
+    /** Name of the branch that forks from master. */
+    static final String OTHER = "other";
+
+    /** Builds the repository described above in a new temporary
+     *  directory. */
+    SyntheticRepository(int commits, int files, int fileSize)
+            throws IOException {
+        _dir = Files.createTempDirectory("gitlet-jmh").toFile();
+        _fileSize = fileSize;
+        _generator = new RepoGenerator(commits * 31L + files * 17L + fileSize,
+                RepoGenerator.Shape.LINEAR, files, fileSize,
+                RepoGenerator.Sizes.FIXED, 0);
+        _generator.generate(_dir, commits);
+        Gitlet g = new Gitlet(_dir.getPath());
+        g.branch(OTHER);
+        g.checkoutBranch(OTHER);
+        g.add(write(0));
+        g.commit("Change on " + OTHER, null);
+        g.checkoutBranch("master");
+        g.add(write(files - 1));
+        g.commit("Change on master", null);
+        g.close();
+    }
+
+    /** Returns the working directory of this repository. */
+    File dir() {
+        return _dir;
+    }
+
+    /** Returns the ID of the commit the branch NAME points to. */
+    String branch(String name) {
+        return new Refs(new File(_dir, ".gitlet")).get(name);
+    }
+
+    /** Returns a new repository at a temporary directory with the same
+     *  contents as this one. */
+    File copy() throws IOException {
+        Path target = Files.createTempDirectory("gitlet-jmh");
+        Path source = _dir.toPath();
+        try (Stream<Path> paths = Files.walk(source)) {
+            for (Path p : (Iterable<Path>) paths::iterator) {
+                Path q = target.resolve(source.relativize(p).toString());
+                if (Files.isDirectory(p)) {
+                    Files.createDirectories(q);
+                } else {
+                    Files.copy(p, q, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+        return target.toFile();
+    }
+
+    /** Deletes this repository. */
+    void delete() throws IOException {
+        delete(_dir);
+    }
+
+    /** Deletes DIR and everything under it. */
+    static void delete(File dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            paths.sorted(Comparator.reverseOrder())
+                .forEach(p -> p.toFile().delete());
+        }
+    }
+
+    /** Returns FILESIZE random printable bytes, in lines of 64. */
+    byte[] contents() {
+        return _generator.contents(_fileSize);
+    }
+
+    /** Gives file number I new contents and returns its name. */
+    private String write(int i) {
+        Utils.writeContents(new File(_dir, name(i)), contents());
+        return name(i);
+    }
+
+    /** Returns the name of file number I. */
+    private static String name(int i) {
+        return "file" + i + ".txt";
+    }
+
+    /** Working directory of the repository. */
+    private final File _dir;
+
+    /** Size of each file, in bytes. */
+    private final int _fileSize;
+
+    /** The generator of the repository's history and contents. */
+    private final RepoGenerator _generator;
+}
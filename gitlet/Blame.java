@@ -0,0 +1,212 @@
+package gitlet;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+
+/** Finds, for each line of a file, the commit that last changed it.
+ *
+ *  Every line starts out suspected of coming from the commit blamed.
+ *  Commits are then taken newest first, each with the lines still
+ *  suspected of it. Lines that a commit's parent has too, as a
+ *  LineDiff finds, are passed on as suspects of the parent; the rest
+ *  are the commit's own. A commit whose PathFilter shows it did not
+ *  change the file passes all its lines to its first parent without
+ *  being read, and a commit with the same version of the file as one of
+ *  its parents passes all its lines to that parent without a diff. The
+ *  walk ends as soon as no line is suspected of any commit.
+ *
+ *  The result of blaming each file at each commit is kept in the
+ *  directory CACHE, so that blaming it again, or at a later commit, only
+ *  walks the commits made since: once the walk reaches a commit with a
+ *  cached result, the lines suspected of it are settled from that.
+ *  @author Israel Rodriguez
+ */
+class Blame {
+
+    /** Blames files using the commits in STORE, walked through GRAPH,
+     *  caching results in the directory CACHE. */
+    Blame(ObjectStore store, CommitGraph graph, File cache) {
+        _store = store;
+        _graph = graph;
+        _cache = cache;
+    }
+
+    /** Returns, for each line of the file PATH in the commit HEAD, the ID
+     *  of the commit that last changed it, or null if PATH is not in
+     *  HEAD. */
+    ObjectId[] blame(ObjectId head, String path) {
+        ObjectId[] cached = readCache(head, path);
+        if (cached != null) {
+            return cached;
+        }
+        int start = _graph.index(head);
+        Blob file = blob(start, path);
+        if (file == null) {
+            return null;
+        }
+        String[] lines = LineDiff.lines(file.getBytes());
+        ObjectId[] result = new ObjectId[lines.length];
+        int unsettled = lines.length;
+
+        HashMap<Integer, Suspects> pending = new HashMap<>();
+        PriorityQueue<Integer> queue = new PriorityQueue<>((a, b) ->
+                _graph.time(a) != _graph.time(b)
+                ? Long.compare(_graph.time(b), _graph.time(a))
+                : Integer.compare(a, b));
+        Suspects all = new Suspects();
+        for (int i = 0; i < lines.length; i += 1) {
+            all.add(i, i);
+        }
+        pending.put(start, all);
+        queue.add(start);
+        HashMap<Integer, String[]> versions = new HashMap<>();
+        versions.put(start, lines);
+
+        while (unsettled > 0 && !queue.isEmpty()) {
+            int c = queue.poll();
+            Suspects suspects = pending.remove(c);
+            String[] mine = versions.remove(c);
+            ObjectId[] known = c == start ? null
+                    : readCache(_graph.id(c), path);
+            if (known != null) {
+                for (int k = 0; k < suspects._size; k += 1) {
+                    result[suspects._finals[k]] = known[suspects._lines[k]];
+                }
+                unsettled -= suspects._size;
+                continue;
+            }
+            int first = _graph.parent(c);
+            if (first != CommitGraph.NONE && !_graph.mayHaveChanged(c, path)) {
+                pass(first, suspects, null, pending, queue);
+                if (mine != null) {
+                    versions.putIfAbsent(first, mine);
+                }
+                continue;
+            }
+            Blob ours = blob(c, path);
+            if (mine == null) {
+                mine = LineDiff.lines(ours.getBytes());
+            }
+            for (int p : new int[] {first, _graph.secondParent(c)}) {
+                if (p == CommitGraph.NONE || suspects._size == 0) {
+                    continue;
+                }
+                Blob theirs = blob(p, path);
+                if (theirs == null) {
+                    continue;
+                }
+                if (theirs.id().equals(ours.id())) {
+                    pass(p, suspects, null, pending, queue);
+                    versions.putIfAbsent(p, mine);
+                    suspects = new Suspects();
+                    break;
+                }
+                String[] parentLines = versions.computeIfAbsent(p,
+                        k -> LineDiff.lines(theirs.getBytes()));
+                suspects = pass(p, suspects, LineDiff.match(parentLines, mine),
+                        pending, queue);
+            }
+            for (int k = 0; k < suspects._size; k += 1) {
+                result[suspects._finals[k]] = _graph.id(c);
+            }
+            unsettled -= suspects._size;
+        }
+        writeCache(head, path, result);
+        return result;
+    }
+
+    /** Makes the lines of SUSPECTS that MATCH maps to lines of the commit
+     *  at P (or all of them, if MATCH is null) suspects of that commit,
+     *  recording them in PENDING and QUEUE. Returns the suspects that
+     *  remain. */
+    private Suspects pass(int p, Suspects suspects, int[] match,
+                          HashMap<Integer, Suspects> pending,
+                          PriorityQueue<Integer> queue) {
+        Suspects theirs = pending.get(p);
+        boolean queued = theirs != null;
+        if (!queued) {
+            theirs = new Suspects();
+        }
+        Suspects rest = new Suspects();
+        for (int k = 0; k < suspects._size; k += 1) {
+            int line = suspects._lines[k];
+            if (match == null) {
+                theirs.add(line, suspects._finals[k]);
+            } else if (match[line] >= 0) {
+                theirs.add(match[line], suspects._finals[k]);
+            } else {
+                rest.add(line, suspects._finals[k]);
+            }
+        }
+        if (!queued && theirs._size > 0) {
+            pending.put(p, theirs);
+            queue.add(p);
+        }
+        return rest;
+    }
+
+    /** Returns the version of the file PATH in the commit at position C,
+     *  or null if it has none. */
+    private Blob blob(int c, String path) {
+        return _store.readCommit(_graph.id(c)).getFiles().get(path);
+    }
+
+    /** Returns the cached result of blaming PATH at the commit ID, or
+     *  null if there is none. */
+    private ObjectId[] readCache(ObjectId id, String path) {
+        File f = cacheFile(id, path);
+        return f.isFile() ? Utils.readObject(f, ObjectId[].class) : null;
+    }
+
+    /** Caches RESULT as the result of blaming PATH at the commit ID. */
+    private void writeCache(ObjectId id, String path, ObjectId[] result) {
+        File f = cacheFile(id, path);
+        f.getParentFile().mkdirs();
+        Utils.atomicWriteObject(f, result);
+    }
+
+    /** Returns the file caching the result of blaming PATH at the commit
+     *  ID. */
+    private File cacheFile(ObjectId id, String path) {
+        String key = Utils.sha1(id.toString(), "\0", path);
+        return Utils.join(_cache, key.substring(0, ObjectStore.FANOUT),
+                key.substring(ObjectStore.FANOUT));
+    }
+
+    /** Lines suspected of coming from a commit: pairs of a line number in
+     *  the commit's version of the file and the number of the line of
+     *  the file blamed that it became. */
+    private static class Suspects {
+
+        /** Adds line LINE, which became line FINAL. */
+        void add(int line, int finalLine) {
+            if (_size == _lines.length) {
+                _lines = Arrays.copyOf(_lines, 2 * _size + 8);
+                _finals = Arrays.copyOf(_finals, 2 * _size + 8);
+            }
+            _lines[_size] = line;
+            _finals[_size] = finalLine;
+            _size += 1;
+        }
+
+        /** Line numbers in the commit's version. */
+        private int[] _lines = new int[0];
+
+        /** Line numbers in the file blamed. */
+        private int[] _finals = new int[0];
+
+        /** Number of lines. */
+        private int _size;
+    }
+
+    /** The store commits are read from. */
+    private final ObjectStore _store;
+
+    /** The graph of the commits. */
+    private final CommitGraph _graph;
+
+    /** Directory of cached results. */
+    private final File _cache;
+}
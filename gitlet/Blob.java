@@ -1,6 +1,9 @@
 package gitlet;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.Serializable;
 
 /** A Gitlet blob, or a representation of the contents
@@ -12,34 +15,97 @@ public class Blob implements Serializable {
     /** For serializing purposes. */
     private static final long serialVersionUID = 0;
 
+    /** Header hashed ahead of the contents of a blob to make its ID,
+     *  which depends on nothing else: files of the same contents share
+     *  one blob, whatever their names, as chunks do. */
+    static final String HEADER = "blob\0";
+
+    /** Prefix of the ID of the blob of a missing file, which HEADER
+     *  does not start with. */
+    private static final String MISSING = "missing ";
+
     /** Constructs a Blob object consisting of the
-     * contents from file FILENAME in DIRECTORY. */
+     * contents from file FILENAME in DIRECTORY. The contents of a
+     * large file are hashed as they are read, and left in the file
+     * until the blob is stored. */
     Blob(String filename, String directory) {
+        Events.Hash event = new Events.Hash();
+        event.begin();
         _location = Utils.join(directory, filename);
         _fileName = filename;
+        long length = _location.length();
         if (!_location.exists()) {
             _contents = null;
-        } else {
+            _sha = ObjectId.hash(MISSING + filename);
+        } else if (length < ObjectStore.CHUNKED_SIZE) {
             _contents = Utils.readContents(_location);
-            _bytes = new String(Utils.readContents(_location));
+            _sha = ObjectId.hash(HEADER, _contents);
+        } else {
+            try (InputStream in = new FileInputStream(_location)) {
+                _sha = ObjectId.hash(HEADER, in);
+            } catch (IOException excp) {
+                throw Utils.error("Could not read %s.", filename);
+            }
+            Trace.read(_location, length);
+        }
+        if (event.shouldCommit()) {
+            event.file = filename;
+            event.bytes = length;
+            event.blob = _sha.toString();
+            event.commit();
         }
-        _sha = Utils.sha1(_bytes + _fileName + "blob");
     }
 
+    /** A blob named FILENAME whose contents are CONTENTS. */
+    Blob(String filename, byte[] contents) {
+        _fileName = filename;
+        _contents = contents;
+        _sha = ObjectId.hash(HEADER, contents);
+    }
+
+    /** A blob named FILENAME with ID, whose contents are in STORE. */
+    Blob(String filename, ObjectId id, ObjectStore store) {
+        _fileName = filename;
+        _sha = id;
+        _store = store;
+    }
+
+
     /** Returns the contents of this blob as a byte array. */
     public byte[] getContents() {
+        if (_contents == null && _store != null) {
+            _contents = _store.readBlob(_sha.toString());
+        } else if (_contents == null && isUnstoredFile()) {
+            return Utils.readContents(_location);
+        }
         return _contents;
     }
 
+    /** Writes the contents of this blob to the file DEST, streaming them
+     *  from the store they were saved in if they are not in memory. */
+    void writeTo(File dest) {
+        if (_contents == null && _store != null
+                && _store.copyBlob(_sha.toString(), dest)) {
+            return;
+        }
+        Utils.writeContents(dest, getContents());
+    }
+
     /** Returns the SHA-1 ID of this blob. */
     public String getSha() {
+        return _sha.toString();
+    }
+
+    /** Returns the ID of this blob. */
+    ObjectId id() {
         return _sha;
     }
 
     /** Returns the contents of this blob represented as
-     * a String. */
+     * a String, or null if it has none. */
     public String getBytes() {
-        return _bytes;
+        byte[] contents = getContents();
+        return contents == null ? null : new String(contents);
     }
 
     /** Returns the File where this blob is located. */
@@ -52,14 +118,48 @@ public class Blob implements Serializable {
         return _fileName;
     }
 
-    /** The contents of this blob represented as a string. */
-    private String _bytes;
+    /** Has this blob read its contents from STORE when they are
+     *  needed, rather than keeping them in memory. */
+    void attach(ObjectStore store) {
+        _store = store;
+    }
+
+    /** Saves the contents of this blob in STORE, if they are not there
+     *  already, and from then on reads them from STORE when needed. */
+    void store(ObjectStore store) {
+        if (_store == store && _contents == null) {
+            return;
+        }
+        if (_contents == null && isUnstoredFile()) {
+            ObjectId stored;
+            try (InputStream in = new FileInputStream(_location)) {
+                stored = store.writeBlob(HEADER, in);
+            } catch (IOException excp) {
+                throw Utils.error("Could not read %s.", _fileName);
+            }
+            if (!stored.equals(_sha)) {
+                throw Utils.error("File %s changed while it was added.",
+                        _fileName);
+            }
+        } else if (getContents() != null) {
+            store.writeBlob(_sha.toString(), _contents);
+        }
+        _contents = null;
+        _store = store;
+    }
+
+    /** Returns true iff the contents of this blob are those of a large
+     *  file, not held in memory and not yet stored. */
+    private boolean isUnstoredFile() {
+        return _store == null && _location != null && _location.isFile()
+                && _location.length() >= ObjectStore.CHUNKED_SIZE;
+    }
 
     /** The contents of this blob as a byte array. */
     private byte[] _contents;
 
     /** The SHA-1 ID of this blob. */
-    private String _sha;
+    private ObjectId _sha;
 
     /** The location of this blob (the directory where it is stored). */
     private File _location;
@@ -67,5 +167,9 @@ public class Blob implements Serializable {
     /** Name of this blob. */
     private String _fileName;
 
+    /** The object store holding the contents of this blob, if they
+     *  have been stored. */
+    private transient ObjectStore _store;
+
 
 }
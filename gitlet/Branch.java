@@ -14,7 +14,7 @@ public class Branch implements Serializable {
      * ID of the head commit it points to. */
     public Branch(String name, String id) {
         _name = name;
-        _id = id;
+        _id = ObjectId.parse(id);
     }
 
     /** Returns the name of the branch. */
@@ -24,19 +24,24 @@ public class Branch implements Serializable {
 
     /** Returns the SHA-1 of the commit this branch points to. */
     public String getID() {
+        return ObjectId.hex(_id);
+    }
+
+    /** Returns the ID of the commit this branch points to. */
+    ObjectId id() {
         return _id;
     }
 
     /** Changes the commit this branch points to by setting
      * its id to NEWID. */
     public void setID(String newID) {
-        _id = newID;
+        _id = ObjectId.parse(newID);
     }
 
     /** Name of branch. */
     private String _name;
 
     /** SHA-1 ID of the commit this branch points to. */
-    private String _id;
+    private ObjectId _id;
 
 }
@@ -0,0 +1,84 @@
+package gitlet;
+
+import java.util.SplittableRandom;
+
+/** Content-defined chunking, after FastCDC, for splitting the contents
+ *  of large files into chunks that the ObjectStore keeps once each.
+ *
+ *  A cut falls after a byte where a rolling "gear" hash of the bytes
+ *  before it has all the bits of a mask clear, so cut points depend
+ *  only on the nearby contents: a change in one region of a file moves
+ *  the cuts around it alone, and the chunks elsewhere are the same as
+ *  before. The hash shifts left one bit per byte and adds a random
+ *  value for the byte, so its high bits, which the masks test, depend
+ *  on the last 64 bytes. No cut falls within MIN_SIZE bytes of the
+ *  last, which are not hashed at all. Below AVG_SIZE bytes the mask
+ *  has more bits, and beyond it fewer, so that chunk sizes bunch
+ *  around AVG_SIZE; at MAX_SIZE bytes there is a cut regardless.
+ *
+ *  The gear table comes from a fixed seed: changing it, or any of the
+ *  sizes, changes where files are cut, and so which chunks two
+ *  versions of a file share.
+ *  @author Israel Rodriguez
+ */
+class Chunker {
+
+    /** Least size of a chunk other than the last, in bytes. */
+    static final int MIN_SIZE = 16 << 10;
+
+    /** Size around which chunk sizes fall, in bytes. */
+    static final int AVG_SIZE = 64 << 10;
+
+    /** Greatest size of a chunk, in bytes. */
+    static final int MAX_SIZE = 256 << 10;
+
+    /** Returns the end of the chunk of DATA that starts at START, where
+     *  the data to be chunked ends at END. */
+    static int cut(byte[] data, int start, int end) {
+        if (end - start <= MIN_SIZE) {
+            return end;
+        }
+        int normal = start + Math.min(AVG_SIZE, end - start);
+        int max = start + Math.min(MAX_SIZE, end - start);
+        long hash = 0;
+        int i = start + MIN_SIZE;
+        for (; i < normal; i += 1) {
+            hash = (hash << 1) + GEAR[data[i] & 0xff];
+            if ((hash & MASK_SMALL) == 0) {
+                return i + 1;
+            }
+        }
+        for (; i < max; i += 1) {
+            hash = (hash << 1) + GEAR[data[i] & 0xff];
+            if ((hash & MASK_LARGE) == 0) {
+                return i + 1;
+            }
+        }
+        return max;
+    }
+
+    /** Returns a mask of the BITS highest bits of a long. */
+    private static long highBits(int bits) {
+        return -1L << (Long.SIZE - bits);
+    }
+
+    /** Mask tested before AVG_SIZE bytes: two bits more than AVG_SIZE
+     *  would call for, so that a cut there is a quarter as likely. */
+    private static final long MASK_SMALL =
+            highBits(Integer.numberOfTrailingZeros(AVG_SIZE) + 2);
+
+    /** Mask tested after AVG_SIZE bytes: two bits fewer, so that a cut
+     *  there is four times as likely. */
+    private static final long MASK_LARGE =
+            highBits(Integer.numberOfTrailingZeros(AVG_SIZE) - 2);
+
+    /** Value added to the hash for each byte value. */
+    private static final long[] GEAR = new long[256];
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x6769746c6574L);
+        for (int i = 0; i < GEAR.length; i += 1) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+}
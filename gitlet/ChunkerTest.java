@@ -0,0 +1,173 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static gitlet.UnitTest.assertEquals;
+import static gitlet.UnitTest.assertTrue;
+import static gitlet.UnitTest.branch;
+import static gitlet.UnitTest.run;
+
+/** Tests of Chunker and of how ObjectStore keeps large blobs in chunks.
+ *  @author Israel Rodriguez
+ */
+class ChunkerTest {
+
+    /** Size of the test files: several times the greatest chunk. */
+    private static final int SIZE = 4 << 20;
+
+    /** Inserting bytes in the middle of the contents moves only the
+     *  cuts near the insertion; the rest fall at the same places,
+     *  shifted by the bytes inserted. */
+    static void testCutsAreStableAfterLocalEdit() {
+        byte[] before = random(SIZE, 1);
+        byte[] after = insert(before, SIZE / 2, random(10, 2));
+        List<Integer> old = cuts(before);
+        Set<Integer> shifted = new HashSet<>();
+        for (int cut : cuts(after)) {
+            shifted.add(cut <= SIZE / 2 ? cut : cut - 10);
+        }
+        int moved = 0;
+        for (int cut : old) {
+            if (!shifted.contains(cut)) {
+                moved += 1;
+            }
+        }
+        assertTrue("too few chunks to test: " + old.size(), old.size() > 8);
+        assertTrue(moved + " of " + old.size() + " cuts moved", moved <= 1);
+    }
+
+    /** Storing a new version of a large file with a local edit writes
+     *  only the chunks around the edit. */
+    static void testOnlyChangedChunksAreWritten() throws IOException {
+        File dir = UnitTest.tempDirectory();
+        try {
+            ObjectStore store = new ObjectStore(dir);
+            byte[] before = random(SIZE, 3);
+            byte[] after = insert(before, SIZE / 2, random(10, 4));
+            File chunks = new File(dir, "chunks");
+            store.writeBlob(Blob.HEADER,
+                    new ByteArrayInputStream(before));
+            int first = count(chunks);
+            ObjectId id = store.writeBlob(Blob.HEADER,
+                    new ByteArrayInputStream(after));
+            int written = count(chunks) - first;
+            assertTrue("too few chunks to test: " + first, first > 8);
+            assertTrue(written + " chunks written for a 10-byte edit",
+                    written >= 1 && written <= 2);
+            assertEquals("ID of streamed blob", new Blob("f", after).id(), id);
+            assertTrue("stored contents differ",
+                    Arrays.equals(after, store.readBlob(id.toString())));
+        } finally {
+            UnitTest.delete(dir);
+        }
+    }
+
+    /** Contents that are not text, and would decode to the same String,
+     *  still get blobs of different IDs. */
+    static void testBinaryContentsDoNotCollide() {
+        byte[] one = {(byte) 0xff, 0};
+        byte[] two = {(byte) 0xfe, 0};
+        assertEquals("decoded contents", new String(one), new String(two));
+        assertTrue("blobs of different bytes have the same ID",
+                !new Blob("f", one).id().equals(new Blob("f", two).id()));
+    }
+
+    /** A large binary file committed, changed and committed again comes
+     *  back byte for byte when the first version is checked out, and is
+     *  kept as chunks. */
+    static void testCheckoutRestoresChunkedFile() {
+        File dir = UnitTest.tempDirectory();
+        try {
+            byte[] before = random(SIZE, 5);
+            byte[] after = insert(before, SIZE / 3, random(100, 6));
+            File f = new File(dir, "big.bin");
+            run(dir, Gitlet::init);
+            Utils.writeContents(f, before);
+            run(dir, g -> g.add("big.bin"));
+            run(dir, g -> g.commit("Before", null));
+            String first = branch(dir, "master");
+            Utils.writeContents(f, after);
+            run(dir, g -> g.add("big.bin"));
+            run(dir, g -> g.commit("After", null));
+
+            assertTrue("large file not kept as chunks", count(Utils.join(
+                    dir, ".gitlet", "objects", "chunked")) == 2);
+            run(dir, g -> g.checkout(first, "--", "big.bin"));
+            assertTrue("checked-out file differs",
+                    Arrays.equals(before, Utils.readContents(f)));
+            run(dir, g -> g.checkout("--", "big.bin"));
+            assertTrue("checked-out file differs",
+                    Arrays.equals(after, Utils.readContents(f)));
+        } finally {
+            UnitTest.delete(dir);
+        }
+    }
+
+    /** Two files of the same large contents, under different names,
+     *  are one blob, kept once. */
+    static void testSameContentsAreStoredOnce() {
+        File dir = UnitTest.tempDirectory();
+        try {
+            byte[] contents = random(SIZE, 7);
+            run(dir, Gitlet::init);
+            Utils.writeContents(new File(dir, "a.bin"), contents);
+            Utils.writeContents(new File(dir, "b.bin"), contents);
+            run(dir, g -> g.add("a.bin"));
+            run(dir, g -> g.add("b.bin"));
+            run(dir, g -> g.commit("Copies", null));
+            assertEquals("blob IDs", new Blob("a.bin", contents).id(),
+                    new Blob("b.bin", contents).id());
+            assertEquals("chunk lists stored", 1, count(Utils.join(
+                    dir, ".gitlet", "objects", "chunked")));
+        } finally {
+            UnitTest.delete(dir);
+        }
+    }
+
+    /** Returns the ends of the chunks Chunker cuts DATA into. */
+    private static List<Integer> cuts(byte[] data) {
+        List<Integer> result = new ArrayList<>();
+        for (int start = 0; start < data.length;) {
+            start = Chunker.cut(data, start, data.length);
+            result.add(start);
+        }
+        return result;
+    }
+
+    /** Returns DATA with INSERTED inserted at AT. */
+    private static byte[] insert(byte[] data, int at, byte[] inserted) {
+        byte[] result = new byte[data.length + inserted.length];
+        System.arraycopy(data, 0, result, 0, at);
+        System.arraycopy(inserted, 0, result, at, inserted.length);
+        System.arraycopy(data, at, result, at + inserted.length,
+                data.length - at);
+        return result;
+    }
+
+    /** Returns SIZE random bytes from SEED. */
+    private static byte[] random(int size, long seed) {
+        byte[] result = new byte[size];
+        new Random(seed).nextBytes(result);
+        return result;
+    }
+
+    /** Returns the number of files under DIR. */
+    private static int count(File dir) {
+        int result = 0;
+        File[] children = dir.listFiles();
+        if (children != null) {
+            for (File c : children) {
+                result += c.isDirectory() ? count(c) : 1;
+            }
+        }
+        return result;
+    }
+}
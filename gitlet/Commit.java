@@ -4,8 +4,8 @@ import java.io.Serializable;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Map;
+import java.util.TreeMap;
 
 /** A snapshot of the contents of files in a particular
  * directory.
@@ -23,15 +23,38 @@ public class Commit implements Serializable {
      * staging area. */
     public Commit(String message, HashMap<String, Blob> files,
                   HashMap<String, Blob> pfiles, String parent) {
+        this(message, files, pfiles, parent, Calendar.getInstance());
+    }
+
+    /** Creates a commit as above, but made at the time WHEN, whose time
+     *  zone its timestamp is written in. */
+    Commit(String message, HashMap<String, Blob> files,
+           HashMap<String, Blob> pfiles, String parent, Calendar when) {
         _message = message;
         _files = files;
         _parentFiles = pfiles;
-        _parent = parent;
-        Calendar c = Calendar.getInstance();
+        _parent = ObjectId.parse(parent);
         SimpleDateFormat sdf =
                 new SimpleDateFormat("EEE MMM d kk:mm:ss YYYY ZZZ");
-        _timestamp = sdf.format(c.getTime());
-        _ancestors = new HashSet<>();
+        sdf.setTimeZone(when.getTimeZone());
+        _timestamp = sdf.format(when.getTime());
+        _time = when.getTimeInMillis();
+        _secondParent = null;
+        setSHA();
+    }
+
+    /** Creates a commit as above, but with the TIMESTAMP and TIME,
+     *  written as getTimestamp and getTime return them, of a commit made
+     *  before. */
+    Commit(String message, HashMap<String, Blob> files,
+           HashMap<String, Blob> pfiles, String parent, String timestamp,
+           long time) {
+        _message = message;
+        _files = files;
+        _parentFiles = pfiles;
+        _parent = ObjectId.parse(parent);
+        _timestamp = timestamp;
+        _time = time;
         _secondParent = null;
         setSHA();
     }
@@ -40,37 +63,42 @@ public class Commit implements Serializable {
     public Commit() {
         _message = "initial commit";
         _timestamp = "Wed Dec 31 16:00:00 1969 -0800";
-        _parent = "";
+        _parent = null;
         _files = new HashMap<>();
         _parentFiles = new HashMap<>();
-        _ancestors = new HashSet<>();
         _secondParent = null;
         setSHA();
     }
 
     /** Creates the SHA-1 identifier for this commit. It
-     * incorporates the contents of its blob references alongside
-     * other metadata. */
+     * incorporates the name and ID of each of its blob references,
+     * in order of name, alongside other metadata, including the merge
+     * parent of a merge, so that merges differing only in what was
+     * merged in differ in ID. A blob's ID already stands for its
+     * contents, so they are never read to make the ID of a commit. */
     public void setSHA() {
-        StringBuilder blobBytes = new StringBuilder();
-        for (Blob b : _files.values()) {
-            blobBytes.append(b.getBytes());
+        TreeMap<String, Blob> files = new TreeMap<>(_files);
+        Object[] vals = new Object[files.size() + 1];
+        vals[0] = _message + "commit" + _timestamp + ObjectId.hex(_parent);
+        if (_secondParent != null) {
+            vals[0] += "\0merge " + _secondParent;
         }
-        _sha = Utils.sha1(_message + "commit" + _timestamp
-                + _parent + blobBytes.toString());
+        int i = 1;
+        for (Map.Entry<String, Blob> e : files.entrySet()) {
+            vals[i] = "\0" + e.getKey() + "\0" + e.getValue().getSha();
+            i += 1;
+        }
+        _sha = ObjectId.hash(vals);
     }
 
     /** Returns SHA-1 identifier. */
     public String getSHA() {
-        return _sha;
+        return _sha.toString();
     }
 
-    public void setAncestors(Set<String> s) {
-        _ancestors = s;
-    }
-
-    public Set<String> getAncestors() {
-        return _ancestors;
+    /** Returns the ID of this commit. */
+    ObjectId id() {
+        return _sha;
     }
 
     /** Returns the blob references of this commit. */
@@ -91,17 +119,39 @@ public class Commit implements Serializable {
     /** Returns this commit's time of creation. */
     public String getTimestamp() {return _timestamp;}
 
-    /** Returns the SHA-1 identifier of this commit's parent. */
+    /** Returns this commit's time of creation in milliseconds since the
+     *  epoch (0 for the initial commit). */
+    public long getTime() {
+        return _time;
+    }
+
+    /** Returns the SHA-1 identifier of this commit's parent, or "" for
+     *  the initial commit. */
     public String parent() {
+        return ObjectId.hex(_parent);
+    }
+
+    /** Returns the ID of this commit's parent, or null for the initial
+     *  commit. */
+    ObjectId parentId() {
         return _parent;
     }
 
     public String getSecondParent() {
+        return _secondParent == null ? null : _secondParent.toString();
+    }
+
+    /** Returns the ID of this commit's merge parent, or null if it is
+     *  not a merge. */
+    ObjectId secondParentId() {
         return _secondParent;
     }
 
+    /** Makes this commit a merge of the commit SECONDPARENTID into its
+     *  parent, which changes its ID. */
     public void setSecondParent(String secondParentId) {
-        _secondParent = secondParentId;
+        _secondParent = ObjectId.parse(secondParentId);
+        setSHA();
     }
 
 
@@ -122,19 +172,20 @@ public class Commit implements Serializable {
      * and their contents. */
     private HashMap<String, Blob> _parentFiles = new HashMap<>();
 
-    /** This commit's ancestors. */
-    private Set<String> _ancestors;
-
     /** Denotes the time at which this commit was made. */
     private String _timestamp;
 
+    /** Time at which this commit was made, in milliseconds since the
+     *  epoch. */
+    private long _time;
+
     /** SHA-1 identifier for this commit's parent. */
-    private String _parent;
+    private ObjectId _parent;
 
     /** SHA-1 ID of this commit's merge parent*/
-    private String _secondParent;
+    private ObjectId _secondParent;
 
     /** SHA-1 identifier for this commit. */
-    private String _sha;
+    private ObjectId _sha;
 
 }
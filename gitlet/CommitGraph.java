@@ -0,0 +1,321 @@
+package gitlet;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Set;
+
+/** The commit graph of an ObjectStore, held in primitive arrays so that
+ *  walks over it neither allocate nor hash IDs. Each commit read is given
+ *  a position, the next one free, and its parents, generation number and
+ *  time are kept at that position in int and long arrays, with the
+ *  PathFilter of the files it changed. IDs are translated to positions
+ *  only at the ends of a walk.
+ *
+ *  What the graph knows of a commit comes from its CommitInfo, not the
+ *  commit itself, read from the store when a walk first reaches it, so
+ *  that a walk that stops early reads only what it visits. The parents
+ *  of a commit are looked up when first asked for; a parent that is not
+ *  in the store, as past the boundary of a shallow history, is NONE.
+ *  The generation number of a commit, one more than the greatest of its
+ *  parents' (1 for a commit with none), is computed when first asked
+ *  for, reading all the commit's ancestors. A commit's generation is
+ *  greater than that of each of its ancestors, which lets walks looking
+ *  for an ancestor skip the commits that cannot lead to it.
+ *  @author Israel Rodriguez
+ */
+class CommitGraph {
+
+    /** Position standing for no commit. */
+    static final int NONE = -1;
+
+    /** A graph of the commits in STORE, where SHALLOW are the commits
+     *  whose parents are left out. */
+    CommitGraph(ObjectStore store, Set<String> shallow) {
+        _store = store;
+        _shallow = shallow;
+    }
+
+    /** Returns the position of the commit with ID, reading it from the
+     *  store if it has none yet, or NONE if ID is null or the commit is
+     *  not in the store. */
+    int index(ObjectId id) {
+        if (id == null) {
+            return NONE;
+        }
+        Integer pos = _positions.get(id);
+        if (pos != null) {
+            return pos;
+        }
+        CommitInfo c = _store.readInfo(id);
+        if (c == null) {
+            return NONE;
+        }
+        int i = _size;
+        if (i == _ids.length) {
+            grow();
+        }
+        _size += 1;
+        _ids[i] = id;
+        _parentIds[2 * i] = c.parent();
+        _parentIds[2 * i + 1] = c.secondParent();
+        boolean cut = !_shallow.isEmpty() && _shallow.contains(id.toString());
+        _parents[2 * i] = cut || c.parent() == null ? NONE : UNKNOWN;
+        _parents[2 * i + 1] = cut || c.secondParent() == null
+                ? NONE : UNKNOWN;
+        _times[i] = c.time();
+        _filters[i] = c.filter();
+        _positions.put(id, i);
+        return i;
+    }
+
+    /** Returns the position of the commit whose ID is written ID, as
+     *  index does. */
+    int index(String id) {
+        return ObjectId.isId(id) ? index(ObjectId.parse(id)) : NONE;
+    }
+
+    /** Returns the ID of the commit at position I. */
+    ObjectId id(int i) {
+        return _ids[i];
+    }
+
+    /** Returns the position of the first parent of the commit at I, or
+     *  NONE if it has none here. */
+    int parent(int i) {
+        return parentAt(2 * i);
+    }
+
+    /** Returns the position of the merge parent of the commit at I, or
+     *  NONE if it has none here. */
+    int secondParent(int i) {
+        return parentAt(2 * i + 1);
+    }
+
+    /** Returns the time of the commit at I, in milliseconds since the
+     *  epoch. */
+    long time(int i) {
+        return _times[i];
+    }
+
+    /** Returns false if the commit at I certainly did not change the
+     *  file PATH from its first parent, and true if it may have. */
+    boolean mayHaveChanged(int i, String path) {
+        return PathFilter.mayContain(_filters[i], path);
+    }
+
+    /** Returns the generation number of the commit at I. */
+    int generation(int i) {
+        if (_generations[i] == 0) {
+            computeGeneration(i);
+        }
+        return _generations[i];
+    }
+
+    /** Returns true iff the commit at ANCESTOR is reachable from the
+     *  commit at DESCENDANT, or is DESCENDANT itself. Where the
+     *  generations of ANCESTOR and of the commits walked are already
+     *  known, skips those that are too low to reach it. */
+    boolean isAncestor(int ancestor, int descendant) {
+        if (ancestor == NONE || descendant == NONE) {
+            return false;
+        }
+        int floor = _generations[ancestor];
+        boolean found = false;
+        int sp = push(0, descendant);
+        _marks[descendant] = true;
+        while (sp > 0) {
+            int c = _stack[--sp];
+            if (c == ancestor) {
+                found = true;
+                break;
+            }
+            if (_generations[c] != 0 && _generations[c] < floor) {
+                continue;
+            }
+            for (int k = 2 * c; k < 2 * c + 2; k += 1) {
+                int p = parentAt(k);
+                if (p != NONE && !_marks[p]) {
+                    _marks[p] = true;
+                    sp = push(sp, p);
+                }
+            }
+        }
+        Arrays.fill(_marks, 0, _size, false);
+        return found;
+    }
+
+    /** Returns the position of the closest common ancestor of the
+     *  commits at HEAD and OTHER, or NONE if they have none. Walks from
+     *  HEAD depth first, last parent first, recording the distance at
+     *  which each ancestor is first reached, then walks from OTHER in
+     *  the same way and returns the first commit reached with the least
+     *  such distance. Sets VISITED[0], unless VISITED is null, to the
+     *  number of commits the walks visited. */
+    int mergeBase(int head, int other, int[] visited) {
+        if (head == NONE || other == NONE) {
+            return NONE;
+        }
+        int count = 0;
+        int sp = push(0, head);
+        _distance[head] = 0;
+        while (sp > 0) {
+            int c = _stack[--sp];
+            if (_marks[c]) {
+                continue;
+            }
+            _marks[c] = true;
+            count += 1;
+            for (int k = 2 * c; k < 2 * c + 2; k += 1) {
+                int p = parentAt(k);
+                if (p != NONE && _distance[p] < 0) {
+                    _distance[p] = _distance[c] + 1;
+                    sp = push(sp, p);
+                }
+            }
+        }
+        Arrays.fill(_marks, 0, _size, false);
+
+        int result = NONE;
+        int least = Integer.MAX_VALUE;
+        sp = push(0, other);
+        while (sp > 0) {
+            int c = _stack[--sp];
+            if (_marks[c]) {
+                continue;
+            }
+            _marks[c] = true;
+            count += 1;
+            if (_distance[c] >= 0 && _distance[c] < least) {
+                least = _distance[c];
+                result = c;
+            }
+            for (int k = 2 * c; k < 2 * c + 2; k += 1) {
+                int p = parentAt(k);
+                if (p != NONE && !_marks[p]) {
+                    sp = push(sp, p);
+                }
+            }
+        }
+        Arrays.fill(_marks, 0, _size, false);
+        Arrays.fill(_distance, 0, _size, -1);
+        if (visited != null) {
+            visited[0] = count;
+        }
+        return result;
+    }
+
+    /** Returns the position of the parent in slot K of _parents, looking
+     *  it up if it is not yet known. */
+    private int parentAt(int k) {
+        int p = _parents[k];
+        if (p == UNKNOWN) {
+            p = index(_parentIds[k]);
+            _parents[k] = p;
+        }
+        return p;
+    }
+
+    /** Computes the generation numbers of the commit at I and of all its
+     *  ancestors that lack them, parents before children. */
+    private void computeGeneration(int i) {
+        int sp = push(0, i);
+        while (sp > 0) {
+            int c = _stack[sp - 1];
+            if (_generations[c] != 0) {
+                sp -= 1;
+                continue;
+            }
+            int generation = 1;
+            boolean ready = true;
+            for (int k = 2 * c; k < 2 * c + 2; k += 1) {
+                int p = parentAt(k);
+                if (p == NONE) {
+                    continue;
+                }
+                if (_generations[p] == 0) {
+                    ready = false;
+                    sp = push(sp, p);
+                } else {
+                    generation = Math.max(generation, _generations[p] + 1);
+                }
+            }
+            if (ready) {
+                _generations[c] = generation;
+                sp -= 1;
+            }
+        }
+    }
+
+    /** Puts the position C on the walk stack, of which SP entries are in
+     *  use, and returns the new number in use. */
+    private int push(int sp, int c) {
+        if (sp == _stack.length) {
+            _stack = Arrays.copyOf(_stack, 2 * _stack.length + 16);
+        }
+        _stack[sp] = c;
+        return sp + 1;
+    }
+
+    /** Doubles the room for commits. */
+    private void grow() {
+        int n = Math.max(16, 2 * _ids.length);
+        int old = _ids.length;
+        _ids = Arrays.copyOf(_ids, n);
+        _parentIds = Arrays.copyOf(_parentIds, 2 * n);
+        _parents = Arrays.copyOf(_parents, 2 * n);
+        _generations = Arrays.copyOf(_generations, n);
+        _times = Arrays.copyOf(_times, n);
+        _filters = Arrays.copyOf(_filters, n);
+        _marks = Arrays.copyOf(_marks, n);
+        _distance = Arrays.copyOf(_distance, n);
+        Arrays.fill(_distance, old, n, -1);
+    }
+
+    /** Slot value of a parent not yet looked up. */
+    private static final int UNKNOWN = -2;
+
+    /** The store commits are read from. */
+    private final ObjectStore _store;
+
+    /** Commits whose parents are left out. */
+    private final Set<String> _shallow;
+
+    /** Position of each commit read. */
+    private final HashMap<ObjectId, Integer> _positions = new HashMap<>();
+
+    /** Number of commits with positions. */
+    private int _size;
+
+    /** ID of the commit at each position. */
+    private ObjectId[] _ids = new ObjectId[0];
+
+    /** IDs of the first and merge parents of the commit at each position
+     *  I, at 2I and 2I + 1. */
+    private ObjectId[] _parentIds = new ObjectId[0];
+
+    /** Positions of the first and merge parents of the commit at each
+     *  position I, at 2I and 2I + 1: NONE, or UNKNOWN if not yet looked
+     *  up. */
+    private int[] _parents = new int[0];
+
+    /** Generation number of the commit at each position, or 0 if not yet
+     *  computed. */
+    private int[] _generations = new int[0];
+
+    /** Time of the commit at each position. */
+    private long[] _times = new long[0];
+
+    /** PathFilter of the files the commit at each position changed. */
+    private byte[][] _filters = new byte[0][];
+
+    /** Stack of positions of the walks. */
+    private int[] _stack = new int[0];
+
+    /** Marks of the commits a walk has reached, all false between
+     *  walks. */
+    private boolean[] _marks = new boolean[0];
+
+    /** Distance of each commit from the start of the first walk of
+     *  mergeBase, all -1 between walks. */
+    private int[] _distance = new int[0];
+}
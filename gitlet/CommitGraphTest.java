@@ -0,0 +1,164 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static gitlet.UnitTest.assertEquals;
+
+/** Tests of CommitGraph against the walk over HashMaps of commits that
+ *  it replaced.
+ *  @author Israel Rodriguez
+ */
+class CommitGraphTest {
+
+    /** In a criss-cross merge each side has merged the other, so there
+     *  are two closest common ancestors; the graph picks the same one
+     *  as the old walk. */
+    static void testCrissCross() {
+        File dir = UnitTest.tempDirectory();
+        try {
+            ObjectStore store = new ObjectStore(dir);
+            String root = commit(store, "root", new Commit().getSHA(), null);
+            String a1 = commit(store, "a1", root, null);
+            String b1 = commit(store, "b1", root, null);
+            String a2 = commit(store, "a2", a1, b1);
+            String b2 = commit(store, "b2", b1, a1);
+            String a3 = commit(store, "a3", a2, null);
+            String b3 = commit(store, "b3", b2, null);
+            compare(store, List.of(root, a1, b1, a2, b2, a3, b3));
+        } finally {
+            UnitTest.delete(dir);
+        }
+    }
+
+    /** In random histories full of merges, the graph finds the same
+     *  split point as the old walk for every pair of commits. */
+    static void testRandomHistories() {
+        Random random = new Random(61);
+        for (int trial = 0; trial < 5; trial += 1) {
+            File dir = UnitTest.tempDirectory();
+            try {
+                ObjectStore store = new ObjectStore(dir);
+                List<String> ids = new ArrayList<>();
+                ids.add(commit(store, "root", new Commit().getSHA(), null));
+                for (int i = 1; i < 60; i += 1) {
+                    String parent = ids.get(random.nextInt(ids.size()));
+                    String other = random.nextInt(3) == 0
+                            ? ids.get(random.nextInt(ids.size())) : null;
+                    if (parent.equals(other)) {
+                        other = null;
+                    }
+                    ids.add(commit(store, trial + "." + i, parent, other));
+                }
+                compare(store, ids);
+            } finally {
+                UnitTest.delete(dir);
+            }
+        }
+    }
+
+    /** Checks that CommitGraph and the old walk find the same split
+     *  point for each pair of the commits IDS in STORE. */
+    private static void compare(ObjectStore store, List<String> ids) {
+        CommitGraph graph = new CommitGraph(store, Set.of());
+        for (String head : ids) {
+            for (String other : ids) {
+                int base = graph.mergeBase(graph.index(head),
+                        graph.index(other), null);
+                assertEquals("split point of " + head + " and " + other,
+                        oldSplitPoint(store, head, other),
+                        base == CommitGraph.NONE ? null
+                                : graph.id(base).toString());
+            }
+        }
+    }
+
+    /** Returns the split point of HEAD and OTHER in STORE as Gitlet found
+     *  it before CommitGraph: the distance from HEAD of each of its
+     *  ancestors is recorded in a HashMap, walking depth first, and the
+     *  first ancestor of OTHER reached at the least distance wins. The
+     *  old walk from OTHER did not mark the commits it visited; marking
+     *  them saves revisiting shared history without changing the result,
+     *  since a commit reached again has the same distance. */
+    private static String oldSplitPoint(ObjectStore store, String head,
+                                        String other) {
+        Map<String, Integer> distance = new HashMap<>();
+        Set<String> ancestors = new HashSet<>();
+        ArrayDeque<String> stack = new ArrayDeque<>();
+        stack.push(head);
+        distance.put(head, 0);
+        while (!stack.isEmpty()) {
+            String id = stack.pop();
+            if (!ancestors.add(id)) {
+                continue;
+            }
+            Commit c = store.readCommit(id);
+            for (String p : Transfer.parents(c)) {
+                if (!distance.containsKey(p)) {
+                    distance.put(p, distance.get(id) + 1);
+                    stack.push(p);
+                }
+            }
+        }
+
+        String result = null;
+        int least = Integer.MAX_VALUE;
+        Set<String> visited = new HashSet<>();
+        stack.push(other);
+        while (!stack.isEmpty()) {
+            String id = stack.pop();
+            if (!visited.add(id)) {
+                continue;
+            }
+            Integer d = distance.get(id);
+            if (d != null && d < least) {
+                least = d;
+                result = id;
+            }
+            for (String p : Transfer.parents(store.readCommit(id))) {
+                stack.push(p);
+            }
+        }
+        return result;
+    }
+
+    /** Merges that differ only in the commit merged in have different
+     *  IDs, so that neither is taken for the other. */
+    static void testMergeParentIsHashed() {
+        String root = new Commit().getSHA();
+        Calendar when = Calendar.getInstance();
+        String a = new Commit("a", new HashMap<>(), new HashMap<>(), root,
+                when).getSHA();
+        String b = new Commit("b", new HashMap<>(), new HashMap<>(), root,
+                when).getSHA();
+        String withA = new MergeCommit("m", new HashMap<>(), new HashMap<>(),
+                root, a, when).getSHA();
+        String withB = new MergeCommit("m", new HashMap<>(), new HashMap<>(),
+                root, b, when).getSHA();
+        UnitTest.assertTrue("merges of different commits collide",
+                !withA.equals(withB));
+    }
+
+    /** Stores in STORE a commit with MESSAGE and no files, whose parent
+     *  is PARENT and merge parent OTHER, if not null. Returns its ID. */
+    private static String commit(ObjectStore store, String message,
+                                 String parent, String other) {
+        if (!store.hasCommit(parent)) {
+            store.writeCommit(new Commit());
+        }
+        Commit c = other == null
+                ? new Commit(message, new HashMap<>(), new HashMap<>(), parent)
+                : new MergeCommit(message, new HashMap<>(), new HashMap<>(),
+                        parent, other);
+        store.writeCommit(c);
+        return c.getSHA();
+    }
+}
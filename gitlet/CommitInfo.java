@@ -0,0 +1,130 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+/** What walks of history need to know about a commit, without its
+ *  files: its parents, its time, and a PathFilter of the files it
+ *  changed from its first parent. The ObjectStore keeps one beside each
+ *  commit, in a few dozen bytes, so that a walk that reads these rather
+ *  than commits never deserializes a commit's file maps, and a search
+ *  for the commits that changed a file loads only those whose filters
+ *  say they may have.
+ *  @author Israel Rodriguez
+ */
+class CommitInfo {
+
+    /** Returns the information about commit C, whose first parent is
+     *  PARENT, which is null if C has none or it is not available. */
+    static CommitInfo of(Commit c, Commit parent) {
+        byte[] filter;
+        if (c.parentId() != null && parent == null) {
+            filter = PathFilter.FULL;
+        } else {
+            HashMap<String, Blob> before =
+                    parent == null ? new HashMap<>() : parent.getFiles();
+            Set<String> changed = new HashSet<>();
+            for (String name : c.getFiles().keySet()) {
+                Blob b = before.get(name);
+                if (b == null || !b.id().equals(c.getFiles().get(name).id())) {
+                    changed.add(name);
+                }
+            }
+            for (String name : before.keySet()) {
+                if (!c.getFiles().containsKey(name)) {
+                    changed.add(name);
+                }
+            }
+            filter = PathFilter.build(changed);
+        }
+        return new CommitInfo(c.parentId(), c.secondParentId(), c.getTime(),
+                filter);
+    }
+
+    /** Returns the information written as BYTES by toBytes. */
+    static CommitInfo fromBytes(byte[] bytes) {
+        try (DataInputStream in =
+                 new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (in.readByte() != VERSION) {
+                throw Utils.error("Unknown commit information format.");
+            }
+            ObjectId parent = ObjectId.read(in);
+            ObjectId secondParent = ObjectId.read(in);
+            long time = in.readLong();
+            byte[] filter = new byte[in.readInt()];
+            in.readFully(filter);
+            return new CommitInfo(parent, secondParent, time, filter);
+        } catch (IOException excp) {
+            throw Utils.error("Corrupt commit information.");
+        }
+    }
+
+    /** Information about a commit whose parents are PARENT and
+     *  SECONDPARENT (or null), made at TIME, whose changed paths are
+     *  recorded in FILTER. */
+    private CommitInfo(ObjectId parent, ObjectId secondParent, long time,
+                       byte[] filter) {
+        _parent = parent;
+        _secondParent = secondParent;
+        _time = time;
+        _filter = filter;
+    }
+
+    /** Returns this information as stored. */
+    byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            ObjectId.write(out, _parent);
+            ObjectId.write(out, _secondParent);
+            out.writeLong(_time);
+            out.writeInt(_filter.length);
+            out.write(_filter);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Returns the ID of the first parent, or null if there is none. */
+    ObjectId parent() {
+        return _parent;
+    }
+
+    /** Returns the ID of the merge parent, or null if there is none. */
+    ObjectId secondParent() {
+        return _secondParent;
+    }
+
+    /** Returns the time of the commit, in milliseconds since the
+     *  epoch. */
+    long time() {
+        return _time;
+    }
+
+    /** Returns the filter of the paths the commit changed. */
+    byte[] filter() {
+        return _filter;
+    }
+
+    /** Version of the stored form. */
+    private static final byte VERSION = 1;
+
+    /** ID of the first parent, or null. */
+    private final ObjectId _parent;
+
+    /** ID of the merge parent, or null. */
+    private final ObjectId _secondParent;
+
+    /** Time of the commit. */
+    private final long _time;
+
+    /** Filter of the paths changed. */
+    private final byte[] _filter;
+}
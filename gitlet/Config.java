@@ -0,0 +1,70 @@
+package gitlet;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.TreeMap;
+
+/** Per-repository settings of a Gitlet repository: a sorted map from
+ *  setting names to their values, stored serialized in the file CONFIG
+ *  of its .gitlet directory.
+ *  @author Israel Rodriguez
+ */
+public class Config implements Serializable {
+
+    /** For serializing purposes. */
+    private static final long serialVersionUID = 0;
+
+    /** Returns the configuration stored in FILE, or an empty
+     *  configuration if FILE does not exist. */
+    @SuppressWarnings("unchecked")
+    static Config load(File file) {
+        Config result = new Config();
+        result._file = file;
+        if (file.isFile()) {
+            result._values = Utils.readObject(file, TreeMap.class);
+        }
+        return result;
+    }
+
+    /** Writes this configuration back to the file it was loaded from. */
+    void save() {
+        Utils.atomicWriteObject(_file, _values);
+    }
+
+    /** Returns the value of KEY, or DEFAULTVALUE if it is unset. */
+    public String get(String key, String defaultValue) {
+        return _values.getOrDefault(key, defaultValue);
+    }
+
+    /** Returns the value of KEY as a boolean, or DEFAULTVALUE if it
+     *  is unset. */
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = _values.get(key);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+
+    /** Returns the value of KEY as a long, or DEFAULTVALUE if it is
+     *  unset or not a number. */
+    public long getLong(String key, long defaultValue) {
+        try {
+            return Long.parseLong(_values.get(key));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /** Sets KEY to VALUE, or unsets it if VALUE is null. */
+    public void set(String key, String value) {
+        if (value == null) {
+            _values.remove(key);
+        } else {
+            _values.put(key, value);
+        }
+    }
+
+    /** Mapping between setting names and their values. */
+    private TreeMap<String, String> _values = new TreeMap<>();
+
+    /** File this configuration is stored in. */
+    private transient File _file;
+}
@@ -0,0 +1,169 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+
+/** Binary deltas between two versions of a file's contents. A delta
+ *  describes a TARGET as a sequence of instructions that either copy a
+ *  range of bytes from a BASE or insert literal bytes, so that a
+ *  receiver holding BASE can rebuild TARGET from a much smaller delta.
+ *
+ *  Format: the varint lengths of BASE and TARGET, followed by
+ *  instructions, each a tag byte COPY followed by the varint offset
+ *  and length of the range to copy, or a tag byte INSERT followed by
+ *  the varint length of the literal bytes and the bytes themselves.
+ *  @author Israel Rodriguez
+ */
+class Delta {
+
+    /** Tag of a copy instruction. */
+    static final int COPY = 0;
+
+    /** Tag of an insert instruction. */
+    static final int INSERT = 1;
+
+    /** Length of the blocks of BASE that are indexed for matching. */
+    static final int BLOCK = 16;
+
+    /** Multiplier of the rolling hash. */
+    private static final int PRIME = 31;
+
+    /** Returns a delta that rebuilds TARGET from BASE. */
+    static byte[] create(byte[] base, byte[] target) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarint(out, base.length);
+        writeVarint(out, target.length);
+
+        HashMap<Integer, Integer> index = new HashMap<>();
+        for (int i = 0; i + BLOCK <= base.length; i += BLOCK) {
+            index.putIfAbsent(hash(base, i), i);
+        }
+        int power = 1;
+        for (int i = 1; i < BLOCK; i += 1) {
+            power *= PRIME;
+        }
+
+        int pending = 0;
+        int i = 0;
+        int h = target.length >= BLOCK ? hash(target, 0) : 0;
+        while (i + BLOCK <= target.length) {
+            Integer at = index.get(h);
+            if (at != null && matches(base, at, target, i, BLOCK)) {
+                int start = at;
+                int len = BLOCK;
+                while (start + len < base.length && i + len < target.length
+                        && base[start + len] == target[i + len]) {
+                    len += 1;
+                }
+                while (start > 0 && i > pending
+                        && base[start - 1] == target[i - 1]) {
+                    start -= 1;
+                    i -= 1;
+                    len += 1;
+                }
+                writeInsert(out, target, pending, i);
+                out.write(COPY);
+                writeVarint(out, start);
+                writeVarint(out, len);
+                i += len;
+                pending = i;
+                if (i + BLOCK <= target.length) {
+                    h = hash(target, i);
+                }
+            } else {
+                if (i + BLOCK < target.length) {
+                    h = (h - target[i] * power) * PRIME + target[i + BLOCK];
+                }
+                i += 1;
+            }
+        }
+        writeInsert(out, target, pending, target.length);
+        return out.toByteArray();
+    }
+
+    /** Returns the result of applying DELTA to BASE. */
+    static byte[] apply(byte[] base, byte[] delta) {
+        int[] pos = new int[] {0};
+        int baseLength = readVarint(delta, pos);
+        int targetLength = readVarint(delta, pos);
+        if (baseLength != base.length) {
+            throw Utils.error("Delta does not match its base.");
+        }
+        byte[] result = new byte[targetLength];
+        int n = 0;
+        while (pos[0] < delta.length) {
+            int tag = delta[pos[0]];
+            pos[0] += 1;
+            if (tag == COPY) {
+                int offset = readVarint(delta, pos);
+                int len = readVarint(delta, pos);
+                System.arraycopy(base, offset, result, n, len);
+                n += len;
+            } else {
+                int len = readVarint(delta, pos);
+                System.arraycopy(delta, pos[0], result, n, len);
+                pos[0] += len;
+                n += len;
+            }
+        }
+        if (n != targetLength) {
+            throw Utils.error("Corrupt delta.");
+        }
+        return result;
+    }
+
+    /** Writes an insert instruction for TARGET[FROM .. TO) to OUT, if
+     *  that range is not empty. */
+    private static void writeInsert(ByteArrayOutputStream out,
+                                    byte[] target, int from, int to) {
+        if (to > from) {
+            out.write(INSERT);
+            writeVarint(out, to - from);
+            out.write(target, from, to - from);
+        }
+    }
+
+    /** Returns the rolling hash of DATA[START .. START + BLOCK). */
+    private static int hash(byte[] data, int start) {
+        int h = 0;
+        for (int i = start; i < start + BLOCK; i += 1) {
+            h = h * PRIME + data[i];
+        }
+        return h;
+    }
+
+    /** Returns true iff the LEN bytes of A at I equal those of B at J. */
+    private static boolean matches(byte[] a, int i, byte[] b, int j,
+                                   int len) {
+        for (int k = 0; k < len; k += 1) {
+            if (a[i + k] != b[j + k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Writes the non-negative VALUE to OUT, 7 bits per byte. */
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /** Reads a varint from DATA at POS[0], advancing POS[0] past it. */
+    private static int readVarint(byte[] data, int[] pos) {
+        int result = 0;
+        int shift = 0;
+        while (true) {
+            int b = data[pos[0]] & 0xff;
+            pos[0] += 1;
+            result |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+            shift += 7;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package gitlet;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** JDK Flight Recorder events marking the phases of Gitlet commands, so
+ *  that a recording shows where their time goes alongside the JVM's own
+ *  GC and I/O events. Each is emitted in the standard way:
+ *
+ *      Events.Load event = new Events.Load();
+ *      event.begin();
+ *      ...
+ *      if (event.shouldCommit()) {
+ *          event.branches = ...;
+ *          event.commit();
+ *      }
+ *
+ *  so that the attributes are only computed, and nothing is recorded,
+ *  unless a recording has enabled the event. With no recording running,
+ *  the JIT compiles the event away. Events are named gitlet.* and can be
+ *  enabled, or given thresholds, by name in a .jfc settings file.
+ *  @author Israel Rodriguez
+ */
+class Events {
+
+    /** Loading a repository's state when a command starts. */
+    @Name("gitlet.Load")
+    @Label("Repository Load")
+    @Category("Gitlet")
+    static class Load extends Event {
+        /** Working directory of the repository. */
+        @Label("Directory")
+        String directory;
+
+        /** Number of branches read, which is only the current branch;
+         *  the rest are read when a command needs them. */
+        @Label("Branches")
+        int branches;
+
+        /** Number of files staged for addition or removal. */
+        @Label("Staged Files")
+        int staged;
+
+        /** ID of the head commit. */
+        @Label("Head Commit")
+        String head;
+    }
+
+    /** Writing a repository's state to its journal. */
+    @Name("gitlet.Save")
+    @Label("State Save")
+    @Category("Gitlet")
+    static class Save extends Event {
+        /** Bytes of state written. */
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        /** Number of branches changed. */
+        @Label("Branches Changed")
+        int refs;
+
+        /** ID of the head commit. */
+        @Label("Head Commit")
+        String head;
+    }
+
+    /** Reading and hashing a file of the working directory. */
+    @Name("gitlet.Hash")
+    @Label("Blob Hash")
+    @Category("Gitlet")
+    @StackTrace(false)
+    static class Hash extends Event {
+        /** Name of the file. */
+        @Label("File")
+        String file;
+
+        /** Size of the file. */
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        /** ID of the resulting blob. */
+        @Label("Blob")
+        String blob;
+    }
+
+    /** A walk of the commit graph. */
+    @Name("gitlet.Traversal")
+    @Label("Graph Traversal")
+    @Category("Gitlet")
+    static class Traversal extends Event {
+        /** What the walk is for. */
+        @Label("Purpose")
+        String purpose;
+
+        /** Commit the walk started from. */
+        @Label("From")
+        String from;
+
+        /** Other commit the walk started from, if any. */
+        @Label("Other")
+        String other;
+
+        /** Number of commits visited. */
+        @Label("Commits Visited")
+        int visited;
+
+        /** Commit found, if any. */
+        @Label("Result")
+        String result;
+    }
+
+    /** Deciding the outcome of each file in a merge. */
+    @Name("gitlet.Merge")
+    @Label("Merge Resolution")
+    @Category("Gitlet")
+    static class Merge extends Event {
+        /** Branch merged in. */
+        @Label("Branch")
+        String branch;
+
+        /** ID of the split point. */
+        @Label("Split Point")
+        String split;
+
+        /** Number of files considered. */
+        @Label("Files")
+        int files;
+
+        /** Number of renames detected. */
+        @Label("Renames")
+        int renames;
+
+        /** True iff some file conflicted. */
+        @Label("Conflict")
+        boolean conflict;
+    }
+
+    /** Writing the files of a commit into the working directory. */
+    @Name("gitlet.Checkout")
+    @Label("Checkout Writes")
+    @Category("Gitlet")
+    static class Checkout extends Event {
+        /** Command doing the writing. */
+        @Label("Command")
+        String command;
+
+        /** ID of the commit checked out. */
+        @Label("Commit")
+        String commit;
+
+        /** Number of files written. */
+        @Label("Files")
+        int files;
+
+        /** Bytes written. */
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+
+    /** Sending or receiving a pack of objects. */
+    @Name("gitlet.Transfer")
+    @Label("Remote Transfer")
+    @Category("Gitlet")
+    @Description("A pack written to or read from another repository")
+    static class Transfer extends Event {
+        /** "send" or "receive". */
+        @Label("Direction")
+        String direction;
+
+        /** Number of commits in the pack. */
+        @Label("Commits")
+        int commits;
+
+        /** Number of blobs in the pack. */
+        @Label("Blobs")
+        int blobs;
+
+        /** Bytes of objects in the pack, before compression. */
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        /** ID of the last commit in the pack, the newest, if any. */
+        @Label("Last Commit")
+        String last;
+    }
+}
@@ -0,0 +1,186 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/** Writes the history of a repository as a stream that FastImport
+ *  reads back: every commit reachable from a branch, each after its
+ *  parents and after the blobs it adds, then a reset putting each
+ *  branch at its commit.
+ *
+ *  Commits and blobs are named by marks, numbered in the order they are
+ *  written, and each commit lists only the files that differ from its
+ *  first parent. A commit whose parent is the initial commit, which
+ *  every repository has and so is never written, is preceded by a
+ *  reset of its branch.
+ *  @author Israel Rodriguez
+ */
+class FastExport {
+
+    /** An exporter of the commits in STORE reachable from the commits
+     *  TIPS of the branches. */
+    FastExport(ObjectStore store, Map<String, String> tips) {
+        _store = store;
+        _tips = new TreeMap<>(tips);
+        _initial = new Commit().getSHA();
+    }
+
+    /** Writes the stream to OUT. */
+    void run(OutputStream out) {
+        _out = out;
+        try {
+            for (Map.Entry<String, String> tip : _tips.entrySet()) {
+                for (String id : parentsFirst(tip.getValue())) {
+                    writeCommit(id, tip.getKey());
+                }
+            }
+            for (Map.Entry<String, String> tip : _tips.entrySet()) {
+                writeLine("reset " + tip.getKey());
+                if (!tip.getValue().equals(_initial)) {
+                    writeLine("from " + mark(tip.getValue()));
+                }
+                writeLine("");
+            }
+            writeLine("done");
+            _out.flush();
+        } catch (IOException excp) {
+            throw Utils.error("Could not export: %s", excp.getMessage());
+        }
+    }
+
+    /** Returns the IDs of the commits reachable from TIP not yet
+     *  written, other than the initial commit, each after its
+     *  parents. */
+    private List<String> parentsFirst(String tip) {
+        ArrayList<String> result = new ArrayList<>();
+        Set<String> visited = new HashSet<>();
+        Set<String> done = new HashSet<>();
+        ArrayDeque<String> stack = new ArrayDeque<>();
+        stack.push(tip);
+        while (!stack.isEmpty()) {
+            String id = stack.peek();
+            if (id.equals(_initial) || _commitMarks.containsKey(id)) {
+                stack.pop();
+            } else if (visited.add(id)) {
+                Commit c = _store.readCommit(id);
+                if (c == null) {
+                    throw Utils.error("Missing commit %s.", id);
+                }
+                for (String parent : Transfer.parents(c)) {
+                    if (!visited.contains(parent)) {
+                        stack.push(parent);
+                    }
+                }
+            } else {
+                stack.pop();
+                if (done.add(id)) {
+                    result.add(id);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Writes the commit with ID on BRANCH, after the blobs it adds. */
+    private void writeCommit(String id, String branch) throws IOException {
+        Commit c = _store.readCommit(id);
+        Commit parent = _store.readCommit(c.parent());
+        TreeMap<String, Blob> files = new TreeMap<>(c.getFiles());
+        List<String> changes = new ArrayList<>();
+        for (String path : new TreeMap<>(parent.getFiles()).keySet()) {
+            if (!files.containsKey(path)) {
+                changes.add("D " + path);
+            }
+        }
+        for (Map.Entry<String, Blob> e : files.entrySet()) {
+            Blob old = parent.getFiles().get(e.getKey());
+            ObjectId blob = e.getValue().id();
+            if (old != null && old.id().equals(blob)) {
+                continue;
+            }
+            if (!_blobMarks.containsKey(blob)) {
+                _blobMarks.put(blob, nextMark());
+                writeLine("blob");
+                writeLine("mark " + _blobMarks.get(blob));
+                writeData(e.getValue().getContents());
+            }
+            changes.add("M " + _blobMarks.get(blob) + " " + e.getKey());
+        }
+        if (c.parent().equals(_initial)) {
+            writeLine("reset " + branch);
+            writeLine("");
+        }
+        _commitMarks.put(id, nextMark());
+        writeLine("commit " + branch);
+        writeLine("mark " + _commitMarks.get(id));
+        String stamp = c.getTimestamp();
+        writeLine("time " + c.getTime() + " "
+                + stamp.substring(stamp.lastIndexOf(' ') + 1));
+        writeData(c.getMessage().getBytes(StandardCharsets.UTF_8));
+        if (!c.parent().equals(_initial)) {
+            writeLine("from " + mark(c.parent()));
+        }
+        if (c.getSecondParent() != null) {
+            writeLine("merge " + mark(c.getSecondParent()));
+        }
+        for (String change : changes) {
+            writeLine(change);
+        }
+        writeLine("");
+    }
+
+    /** Returns how the stream names the commit with ID. */
+    private String mark(String id) {
+        String mark = _commitMarks.get(id);
+        return mark == null ? id : mark;
+    }
+
+    /** Returns a new mark. */
+    private String nextMark() {
+        _marks += 1;
+        return ":" + _marks;
+    }
+
+    /** Writes a data command for DATA. */
+    private void writeData(byte[] data) throws IOException {
+        writeLine("data " + data.length);
+        _out.write(data);
+        writeLine("");
+    }
+
+    /** Writes LINE and a newline. */
+    private void writeLine(String line) throws IOException {
+        _out.write(line.getBytes(StandardCharsets.UTF_8));
+        _out.write('\n');
+    }
+
+    /** The store exported from. */
+    private final ObjectStore _store;
+
+    /** The commit each branch points at. */
+    private final TreeMap<String, String> _tips;
+
+    /** ID of the initial commit. */
+    private final String _initial;
+
+    /** The mark of each commit written, by ID. */
+    private final HashMap<String, String> _commitMarks = new HashMap<>();
+
+    /** The mark of each blob written, by ID. */
+    private final HashMap<ObjectId, String> _blobMarks = new HashMap<>();
+
+    /** Number of marks given out. */
+    private int _marks;
+
+    /** The stream written. */
+    private OutputStream _out;
+}
@@ -0,0 +1,338 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+/** Reads a stream of blobs, commits and branch updates into a
+ *  repository's ObjectStore, for bringing in a whole history at once
+ *  rather than a commit at a time.
+ *
+ *  The stream is a subset of the one git fast-import reads. It is a
+ *  series of commands, each a line of text, some followed by raw data:
+ *
+ *    blob
+ *    mark :MARK
+ *    data COUNT
+ *    <COUNT bytes of contents>
+ *
+ *    commit BRANCH
+ *    mark :MARK
+ *    time MILLIS [+HHMM|-HHMM]
+ *    data COUNT
+ *    <COUNT bytes of message>
+ *    from COMMIT
+ *    merge COMMIT
+ *    M :MARK PATH       (or "M inline PATH" followed by a data command)
+ *    D PATH
+ *    deleteall
+ *
+ *    reset BRANCH
+ *    from COMMIT
+ *
+ *    done
+ *
+ *  where a COMMIT is either ":MARK", for a commit earlier in the
+ *  stream, or the ID of a commit in the repository. In a commit, all
+ *  but the commit, time and data lines are optional, and the file
+ *  changes come last. A commit with no from line follows the last
+ *  commit made on BRANCH, or the initial commit if there is none; a
+ *  reset with no from line makes BRANCH start again from the initial
+ *  commit. Blank lines, and lines starting with "#", are skipped, and
+ *  a single newline after the data of a data command is optional.
+ *
+ *  A blob's ID depends only on its contents, so blobs are stored as
+ *  they are read, and a commit names them by ID. A commit's ID depends
+ *  only on the IDs of its blobs, so the contents of the files it keeps
+ *  from its parent are never read again. Blobs and
+ *  commits are written in one batch of the ObjectStore, which moves
+ *  them into the store, and builds the CommitInfos of the commits, only
+ *  once the whole stream has been read; the branches are not written at
+ *  all: run returns where each ends up, for the caller to save in one
+ *  batch.
+ *  @author Israel Rodriguez
+ */
+class FastImport {
+
+    /** An importer into STORE of the repository whose branches point at
+     *  the commits in TIPS. */
+    FastImport(ObjectStore store, Map<String, String> tips) {
+        _store = store;
+        _tips = new TreeMap<>(tips);
+        _initial = new Commit().getSHA();
+    }
+
+    /** Reads the stream IN to its end, and returns the commit each
+     *  branch points at afterwards. */
+    Map<String, String> run(InputStream in) {
+        _in = new BufferedInputStream(in, BUFFER_SIZE);
+        boolean done = false;
+        _store.beginBatch();
+        try {
+            for (String line = nextCommand(); line != null;
+                 line = nextCommand()) {
+                if (line.equals("blob")) {
+                    readBlob();
+                } else if (line.startsWith("commit ")) {
+                    readCommit(line.substring("commit ".length()));
+                } else if (line.startsWith("reset ")) {
+                    readReset(line.substring("reset ".length()));
+                } else if (line.equals("done")) {
+                    break;
+                } else {
+                    throw Utils.error("Unknown import command: %s", line);
+                }
+            }
+            done = true;
+        } catch (IOException excp) {
+            throw Utils.error("Could not import: %s", excp.getMessage());
+        } finally {
+            _store.endBatch(done);
+        }
+        return _tips;
+    }
+
+    /** Returns the number of commits stored. */
+    int commits() {
+        return _commits;
+    }
+
+    /** Reads a blob command, whose first line has been read. */
+    private void readBlob() throws IOException {
+        String mark = optional("mark ");
+        byte[] contents = readData();
+        if (mark != null) {
+            ObjectId id = ObjectId.hash(Blob.HEADER, contents);
+            _store.writeBlob(id.toString(), contents);
+            _blobs.put(parseMark(mark), id);
+        }
+    }
+
+    /** Reads a commit command on BRANCH, whose first line has been
+     *  read. */
+    private void readCommit(String branch) throws IOException {
+        String mark = optional("mark ");
+        String time = optional("time ");
+        if (time == null) {
+            throw Utils.error("Commit on %s has no time.", branch);
+        }
+        String message = new String(readData(), StandardCharsets.UTF_8);
+        String from = optional("from ");
+        String parent = from != null ? resolve(from)
+                : _tips.getOrDefault(branch, _initial);
+        String merge = optional("merge ");
+        String secondParent = merge == null ? null : resolve(merge);
+
+        Commit prev = _store.readCommit(parent);
+        HashMap<String, Blob> pFiles = new HashMap<>(prev.getFiles());
+        TreeMap<String, Blob> changed = new TreeMap<>();
+        for (String line = optional(""); line != null; line = optional("")) {
+            if (line.equals("deleteall")) {
+                pFiles.clear();
+                changed.clear();
+            } else if (line.startsWith("D ")) {
+                String path = line.substring(2);
+                pFiles.remove(path);
+                changed.remove(path);
+            } else if (line.startsWith("M ")) {
+                int space = line.indexOf(' ', 2);
+                if (space < 0) {
+                    throw Utils.error("Bad file change: %s", line);
+                }
+                String ref = line.substring(2, space);
+                String path = line.substring(space + 1);
+                Blob b;
+                if (ref.equals("inline")) {
+                    b = new Blob(path, readData());
+                    b.store(_store);
+                } else {
+                    b = new Blob(path, marked(ref), _store);
+                }
+                changed.put(path, b);
+            } else {
+                _pushedBack = line;
+                break;
+            }
+        }
+        HashMap<String, Blob> updated = new HashMap<>();
+        updated.putAll(pFiles);
+        updated.putAll(new HashMap<>(changed));
+        Calendar when = parseTime(time);
+        Commit c;
+        if (secondParent == null) {
+            c = new Commit(message, updated, pFiles, parent, when);
+        } else {
+            c = new MergeCommit(message, updated, pFiles, parent,
+                    secondParent, when);
+        }
+        _store.writeCommit(c);
+        _commits += 1;
+        if (mark != null) {
+            _marks.put(parseMark(mark), c.getSHA());
+        }
+        _tips.put(branch, c.getSHA());
+    }
+
+    /** Reads a reset command on BRANCH, whose first line has been
+     *  read. */
+    private void readReset(String branch) throws IOException {
+        String from = optional("from ");
+        _tips.put(branch, from == null ? _initial : resolve(from));
+    }
+
+    /** Returns the ID of the commit COMMIT names. */
+    private String resolve(String commit) {
+        String result;
+        if (commit.startsWith(":")) {
+            result = _marks.get(parseMark(commit));
+        } else {
+            result = _store.resolveCommit(commit);
+        }
+        if (result == null) {
+            throw Utils.error("No commit %s.", commit);
+        }
+        return result;
+    }
+
+    /** Returns the ID of the blob with MARK. */
+    private ObjectId marked(String mark) {
+        ObjectId result = _blobs.get(parseMark(mark));
+        if (result == null) {
+            throw Utils.error("No blob %s.", mark);
+        }
+        return result;
+    }
+
+    /** Returns the number of MARK, written ":NUMBER". */
+    private static long parseMark(String mark) {
+        try {
+            if (mark.startsWith(":")) {
+                return Long.parseLong(mark.substring(1));
+            }
+        } catch (NumberFormatException excp) {
+            /* Fall through. */
+        }
+        throw Utils.error("Bad mark: %s", mark);
+    }
+
+    /** Returns the time written TIME, as "MILLIS" or "MILLIS ZONE". */
+    private static Calendar parseTime(String time) {
+        String[] parts = time.split(" ");
+        TimeZone zone = parts.length > 1
+                ? TimeZone.getTimeZone("GMT" + parts[1])
+                : TimeZone.getDefault();
+        Calendar result = Calendar.getInstance(zone);
+        try {
+            result.setTimeInMillis(Long.parseLong(parts[0]));
+        } catch (NumberFormatException excp) {
+            throw Utils.error("Bad time: %s", time);
+        }
+        return result;
+    }
+
+    /** Reads a data command and returns its data. */
+    private byte[] readData() throws IOException {
+        String line = optional("data ");
+        if (line == null) {
+            throw Utils.error("Expected data.");
+        }
+        int count;
+        try {
+            count = Integer.parseInt(line);
+        } catch (NumberFormatException excp) {
+            throw Utils.error("Bad data length: %s", line);
+        }
+        byte[] result = _in.readNBytes(count);
+        if (result.length != count) {
+            throw Utils.error("Import stream ends within data.");
+        }
+        _in.mark(1);
+        if (_in.read() != '\n') {
+            _in.reset();
+        }
+        return result;
+    }
+
+    /** Returns the rest of the next line if it starts with PREFIX,
+     *  skipping blank lines and comments, or otherwise leaves it to be
+     *  read again and returns null. */
+    private String optional(String prefix) throws IOException {
+        String line = nextCommand();
+        if (line == null) {
+            return null;
+        }
+        if (!line.startsWith(prefix)) {
+            _pushedBack = line;
+            return null;
+        }
+        return line.substring(prefix.length());
+    }
+
+    /** Returns the next line that is not blank or a comment, or null at
+     *  the end of the stream. */
+    private String nextCommand() throws IOException {
+        if (_pushedBack != null) {
+            String result = _pushedBack;
+            _pushedBack = null;
+            return result;
+        }
+        while (true) {
+            String line = readLine();
+            if (line == null) {
+                return null;
+            }
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                return line;
+            }
+        }
+    }
+
+    /** Returns the next line of the stream, without its newline, or
+     *  null at its end. */
+    private String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int c = _in.read();
+        if (c < 0) {
+            return null;
+        }
+        while (c >= 0 && c != '\n') {
+            line.write(c);
+            c = _in.read();
+        }
+        return line.toString(StandardCharsets.UTF_8);
+    }
+
+    /** Size of the buffer the stream is read through. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** The store imported into. */
+    private final ObjectStore _store;
+
+    /** The commit each branch points at. */
+    private final TreeMap<String, String> _tips;
+
+    /** ID of the initial commit. */
+    private final String _initial;
+
+    /** The ID of each marked blob. */
+    private final HashMap<Long, ObjectId> _blobs = new HashMap<>();
+
+    /** The ID of each marked commit. */
+    private final HashMap<Long, String> _marks = new HashMap<>();
+
+    /** Number of commits stored. */
+    private int _commits;
+
+    /** The stream read. */
+    private BufferedInputStream _in;
+
+    /** A line read ahead and put back, or null. */
+    private String _pushedBack;
+}
@@ -0,0 +1,168 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/** Removes from an ObjectStore the commits and blobs that nothing in
+ *  the repository refers to any more: those left behind by reset,
+ *  rm-branch, or a fetch that was interrupted part way.
+ *
+ *  Collection marks every commit reachable from a set of roots, and
+ *  every blob those commits refer to, then deletes each object that is
+ *  not marked and was written more than a grace period ago, and then
+ *  each chunk of large blob contents that no remaining blob uses and
+ *  that is as old. The grace period protects objects that a command
+ *  running concurrently has written but not yet pointed a branch at.
+ *  The sketches RenameDetector has cached of blobs that are neither
+ *  reachable nor still in the store are dropped with them.
+ *  @author Israel Rodriguez
+ */
+class GarbageCollector {
+
+    /** Setting giving the grace period, in seconds. */
+    static final String EXPIRE_KEY = "gc.pruneExpire";
+
+    /** Setting giving the estimated number of objects written since
+     *  the last collection above which an automatic collection runs,
+     *  or 0 to never run one. */
+    static final String AUTO_KEY = "gc.auto";
+
+    /** Setting giving the estimated growth of the store since the last
+     *  collection, in bytes, above which an automatic collection runs,
+     *  or 0 for no limit. */
+    static final String AUTO_SIZE_KEY = "gc.autoSize";
+
+    /** Default grace period: two weeks, in seconds. */
+    static final long DEFAULT_EXPIRE = 14 * 24 * 60 * 60;
+
+    /** Default object count that triggers an automatic collection. */
+    static final long DEFAULT_AUTO = 6700;
+
+    /** Default store size that triggers an automatic collection. */
+    static final long DEFAULT_AUTO_SIZE = 256L << 20;
+
+    /** File, in the .gitlet directory, recording the estimated size of
+     *  the store after the last collection. */
+    static final String BASELINE = "gc-baseline";
+
+    /** Fan-out directory sampled to estimate the size of the store. */
+    private static final String SAMPLE = "17";
+
+    /** A collector for STORE, the store of the repository whose .gitlet
+     *  directory is DIR, whose settings are in CONFIG, and where SHALLOW
+     *  are the commits whose parents are known to be absent. */
+    GarbageCollector(File dir, ObjectStore store, Config config,
+                     Set<String> shallow) {
+        _baseline = Utils.join(dir, BASELINE);
+        _sketches = Utils.join(dir, RenameDetector.SKETCHES);
+        _store = store;
+        _config = config;
+        _shallow = shallow;
+    }
+
+    /** Returns true iff the store is estimated to have grown by more
+     *  objects, or more bytes, than the thresholds for an automatic
+     *  collection since the last collection. Reachable objects are
+     *  never collected, so it is growth, not size, that measures what
+     *  a collection might reclaim. */
+    boolean needed() {
+        long count = _config.getLong(AUTO_KEY, DEFAULT_AUTO);
+        if (count <= 0) {
+            return false;
+        }
+        long size = _config.getLong(AUTO_SIZE_KEY, DEFAULT_AUTO_SIZE);
+        long[] sample = _store.sample(SAMPLE);
+        long[] base = _baseline.isFile()
+                ? Utils.readObject(_baseline, long[].class) : new long[2];
+        return (sample[0] - base[0]) * 256 > count
+                || (size > 0 && (sample[1] - base[1]) * 256 > size);
+    }
+
+    /** Deletes every object not reachable from the commits ROOTS or
+     *  among the blobs BLOBS, and older than the grace period. Returns
+     *  the number of commits and of blobs deleted. */
+    int[] collect(Collection<String> roots, Collection<Blob> blobs) {
+        Events.Traversal event = new Events.Traversal();
+        event.begin();
+        Set<ObjectId> commits = new HashSet<>();
+        Set<ObjectId> live = new HashSet<>();
+        for (Blob b : blobs) {
+            live.add(b.id());
+        }
+        ArrayDeque<ObjectId> stack = new ArrayDeque<>();
+        for (String root : roots) {
+            stack.push(ObjectId.parse(root));
+        }
+        while (!stack.isEmpty()) {
+            ObjectId id = stack.pop();
+            if (!commits.add(id)) {
+                continue;
+            }
+            Commit c = _store.readCommit(id);
+            if (c == null) {
+                continue;
+            }
+            for (Blob b : c.getFiles().values()) {
+                live.add(b.id());
+            }
+            for (Blob b : c.getParentFiles().values()) {
+                live.add(b.id());
+            }
+            if (_shallow.isEmpty() || !_shallow.contains(id.toString())) {
+                if (c.parentId() != null) {
+                    stack.push(c.parentId());
+                }
+                if (c.secondParentId() != null) {
+                    stack.push(c.secondParentId());
+                }
+            }
+        }
+        if (event.shouldCommit()) {
+            event.purpose = "gc";
+            event.visited = commits.size();
+            event.commit();
+        }
+
+        long cutoff = System.currentTimeMillis()
+                - _config.getLong(EXPIRE_KEY, DEFAULT_EXPIRE) * 1000;
+        int[] removed = new int[2];
+        for (String id : _store.commitIds()) {
+            if (ObjectId.isId(id) && !commits.contains(ObjectId.parse(id))
+                    && _store.pruneCommit(id, cutoff)) {
+                removed[0] += 1;
+            }
+        }
+        for (String id : _store.blobIds()) {
+            if (ObjectId.isId(id) && !live.contains(ObjectId.parse(id))
+                    && _store.pruneBlob(id, cutoff)) {
+                removed[1] += 1;
+            }
+        }
+        _store.pruneChunks(cutoff);
+        if (_sketches.isFile()) {
+            new RenameDetector(_sketches).retain(id -> _store.hasBlob(id)
+                    || ObjectId.isId(id) && live.contains(ObjectId.parse(id)));
+        }
+        Utils.atomicWriteObject(_baseline, _store.sample(SAMPLE));
+        return removed;
+    }
+
+    /** File recording the estimated size of the store after the last
+     *  collection. */
+    private final File _baseline;
+
+    /** File of the sketches cached by RenameDetector. */
+    private final File _sketches;
+
+    /** The store collected. */
+    private final ObjectStore _store;
+
+    /** Settings of the repository. */
+    private final Config _config;
+
+    /** Commits on the boundary of a shallow history. */
+    private final Set<String> _shallow;
+}
@@ -1,6 +1,7 @@
 package gitlet;
 
 import java.io.*;
+import java.net.InetAddress;
 
 import java.util.*;
 import java.util.zip.ZipEntry;
@@ -24,12 +25,19 @@ public class Gitlet implements Serializable {
      * been initialized, it loads its last saved state.
      */
     public Gitlet(String path) {
+        Events.Load event = new Events.Load();
+        event.begin();
         _currDir = path;
         if (_currDir.contains(".gitlet")) {
             _currDir = path.replace(".gitlet", "");
         }
         _cwd = Utils.join(_currDir, ".gitlet");
         _cwdPath = _cwd.getPath();
+        _objects = new ObjectStore(Utils.join(_cwdPath, "objects"));
+        _objects.setPromisors(this::promisors);
+        _refs = new Refs(_cwd);
+        recover();
+        Legacy.migrate(_cwd, _objects, _refs);
         try {
             _gitletExists = Utils.readObject(Utils.join(_cwdPath,
                     "gitletExists"), Boolean.class);
@@ -38,44 +46,49 @@ public class Gitlet implements Serializable {
         }
         if (!_gitletExists) {
             _stage = new StagingArea();
-            _commits = new HashMap<>();
             _branches = new HashMap<>();
             _remotes = new HashMap<>();
             _headbranch = "";
             _headCommit = "";
             _gitletExists = true;
             _initHappened = false;
-            _commands.addAll(Arrays.asList("init", "add", "commit",
-                    "rm", "branch", "checkout", "merge", "status",
-                    "log", "global-log", "reset", "rm-branch",
-                    "find", "add-remote", "rm-remote", "push",
-                    "fetch", "pull"));
         } else {
-            _stage = Utils.readObject(Utils.join(_cwdPath, "stage"),
-                    StagingArea.class);
-            _commits = Utils.readObject(Utils.join(_cwdPath, "commits"),
-                    HashMap.class);
-            _branches = Utils.readObject(Utils.join(_cwdPath, "branches"),
-                    HashMap.class);
+            ObjectId.use(ObjectId.Algorithm.parse(config().get(
+                    ObjectId.FORMAT_KEY, ObjectId.Algorithm.SHA1.toString())));
+            _stage = StagingArea.fromBytes(Utils.readContents(
+                    Utils.join(_cwdPath, "stage")), _objects);
+            _branches = new HashMap<>();
             _remotes = Utils.readObject(Utils.join(_cwdPath, "remotes"),
                     HashMap.class);
             _headbranch = Utils.readObject(Utils.join(_cwdPath, "headBranch"),
                     String.class);
-            _headCommit = Utils.readObject(Utils.join(_cwdPath, "headCommit"),
-                    String.class);
-            _hEAD = Utils.readObject(Utils.join(_cwdPath, "HEAD"),
-                    Commit.class);
-            _commands = Utils.readObject(Utils.join(_cwdPath, "commands"),
-                    ArrayList.class);
+            Branch head = findBranch(_headbranch);
+            _headCommit = head == null ? "" : head.getID();
+            _hEAD = _objects.readCommit(_headCommit);
             _initHappened = Utils.readObject(Utils.join(_cwdPath,
                     "initHappened"), Boolean.class);
         }
-
+        if (event.shouldCommit()) {
+            event.directory = new File(_currDir).getAbsolutePath();
+            event.branches = _branches.size();
+            event.staged = _stage.forAddition().size()
+                    + _stage.forRemoval().size();
+            event.head = _headCommit;
+            event.commit();
+        }
     }
 
     /** Returns a list of all valid commands. */
-    public ArrayList<String> commands() {
-        return _commands;
+    public List<String> commands() {
+        return COMMANDS;
+    }
+
+    /** Returns the configuration of this repository. */
+    public Config config() {
+        if (_config == null) {
+            _config = Config.load(Utils.join(_cwdPath, "config"));
+        }
+        return _config;
     }
 
     /** Returns true if init has been called. */
@@ -83,32 +96,157 @@ public class Gitlet implements Serializable {
         return _initHappened;
     }
 
-    /** Writes onto disk the contents of this Gitlet repository. */
+    /** Writes onto disk the state of this Gitlet repository. Commits
+     *  are saved in the object store as they are made, and the head
+     *  commit is the commit the current branch points to. The caller
+     *  holds the RepositoryLock. */
     public void saveGitlet() {
-        Utils.writeObject(Utils.join(_cwdPath, "commits"), _commits);
-        Utils.writeObject(Utils.join(_cwdPath, "stage"), _stage);
-        Utils.writeObject(Utils.join(_cwdPath, "headBranch"), _headbranch);
-        Utils.writeObject(Utils.join(_cwdPath, "branches"), _branches);
-        Utils.writeObject(Utils.join(_cwdPath, "remotes"), _remotes);
-        Utils.writeObject(Utils.join(_cwdPath, "headCommit"), _headCommit);
-        Utils.writeObject(Utils.join(_cwdPath, "gitletExists"), _gitletExists);
-        Utils.writeObject(Utils.join(_cwdPath, "HEAD"), _hEAD);
-        Utils.writeObject(Utils.join(_cwdPath, "initHappened"), _initHappened);
-        Utils.writeObject(Utils.join(_cwdPath, "commands"), _commands);
+        Trace.Phase phase = Trace.phase("save");
+        try {
+            Events.Save event = new Events.Save();
+            event.begin();
+            int refs = 0;
+            Journal.Batch batch = journal().begin();
+            for (Blob b : _stage.forAddition().values()) {
+                b.store(_objects);
+            }
+            batch.write("stage", _stage.toBytes());
+            batch.write("headBranch", Utils.serialize(_headbranch));
+            batch.write("remotes", Utils.serialize(_remotes));
+            batch.write("gitletExists", Utils.serialize(_gitletExists));
+            batch.write("initHappened", Utils.serialize(_initHappened));
+            for (Branch b : _branches.values()) {
+                String saved = _savedRefs.get(b.getName());
+                if (!b.getID().equals(saved)) {
+                    batch.ref(b.getName(), saved, b.getID());
+                    _savedRefs.put(b.getName(), b.getID());
+                    refs += 1;
+                }
+            }
+            for (String name : new ArrayList<>(_savedRefs.keySet())) {
+                if (!_branches.containsKey(name)) {
+                    batch.ref(name, _savedRefs.remove(name), null);
+                    refs += 1;
+                }
+            }
+            int bytes = batch.commit();
+            if (event.shouldCommit()) {
+                event.bytes = bytes;
+                event.refs = refs;
+                event.head = _headCommit;
+                event.commit();
+            }
+        } finally {
+            phase.close();
+        }
+    }
+
+    /** Finishes with this repository: applies any changes whose
+     *  application the journal has deferred and checkpoints it. */
+    public void close() {
+        if (_journal != null) {
+            _journal.close();
+            _journal = null;
+        }
+    }
+
+    /** Returns the journal of this repository's state. */
+    private Journal journal() {
+        if (_journal == null) {
+            _journal = new Journal(_cwd, _refs, Journal.Fsync.parse(
+                    config().get(Journal.FSYNC_KEY, null),
+                    Journal.Fsync.BATCH));
+        }
+        return _journal;
     }
 
+    /** Applies any changes a process that stopped part way through left
+     *  in the journal, if this process holds the RepositoryLock or no
+     *  other process does. */
+    private void recover() {
+        File file = Utils.join(_cwd, Journal.JOURNAL);
+        if (!file.isFile() || file.length() == 0) {
+            return;
+        }
+        if (RepositoryLock.isHeld(_cwd)) {
+            journal().recover();
+            return;
+        }
+        try (RepositoryLock lock = RepositoryLock.tryAcquire(_cwd)) {
+            if (lock != null) {
+                journal().recover();
+            }
+        }
+    }
 
+    /** Returns every branch, reading from _refs those not yet read. */
+    private HashMap<String, Branch> branches() {
+        if (!_allBranches) {
+            _refs.list("", (name, id) -> {
+                if (!_savedRefs.containsKey(name)) {
+                    _branches.put(name, new Branch(name, id));
+                    _savedRefs.put(name, id);
+                }
+            });
+            _allBranches = true;
+        }
+        return _branches;
+    }
+
+    /** Returns the branch NAME, reading it from _refs if it has not been
+     *  read, or null if there is no such branch. */
+    private Branch findBranch(String name) {
+        Branch result = _branches.get(name);
+        if (result == null && !_allBranches && !_savedRefs.containsKey(name)) {
+            String id = _refs.get(name);
+            if (id != null) {
+                result = new Branch(name, id);
+                _branches.put(name, result);
+                _savedRefs.put(name, id);
+            }
+        }
+        return result;
+    }
+
+    /** Writes onto disk the branches that have changed since they were
+     *  read, each provided that no other process has changed it in the
+     *  meantime. */
+    private void saveRefs() {
+        for (Branch b : _branches.values()) {
+            String saved = _savedRefs.get(b.getName());
+            if (!b.getID().equals(saved)) {
+                _refs.update(b.getName(), saved, b.getID());
+                _savedRefs.put(b.getName(), b.getID());
+            }
+        }
+        for (String name : new ArrayList<>(_savedRefs.keySet())) {
+            if (!_branches.containsKey(name)) {
+                _refs.update(name, _savedRefs.remove(name), null);
+            }
+        }
+    }
 
     /** Initializes a Gitlet version-control system. */
     public void init() {
+        init(ObjectId.Algorithm.SHA1);
+    }
+
+    /** Creates a new repository whose objects are named by hashes made
+     *  with ALGORITHM. */
+    public void init(ObjectId.Algorithm algorithm) {
         if (_cwd.exists()) {
             throw Utils.error("A gitlet version-control system "
                     + "already exists in the current directory");
         }
         _cwd.mkdirs();
+        ObjectId.use(algorithm);
+        if (algorithm != ObjectId.Algorithm.SHA1) {
+            config().set(ObjectId.FORMAT_KEY, algorithm.toString());
+            config().save();
+        }
         Commit initial = new Commit();
         String initialID = initial.getSHA();
-        _commits.put(initialID, initial);
+        _objects.writeCommit(initial);
         _hEAD = initial;
         _headCommit = initialID;
         Branch master = new Branch("master", _headCommit);
@@ -118,11 +256,28 @@ public class Gitlet implements Serializable {
         saveGitlet();
     }
 
-    /** Stages file with name FILENAME for addition. */
+    /** Stages file with name FILENAME for addition, or, if FILENAME is
+     *  ".", every file in the working directory not ignored. */
     public void add(String filename) {
         if (!_initHappened) {
             throw Utils.error("Not in an initialized Gitlet directory.");
         }
+        if (filename.equals(".")) {
+            boolean monitor = monitor();
+            for (String name : workingFiles()) {
+                if (!monitor || !isStaged(name, workingTree().id(name))) {
+                    stage(name);
+                }
+            }
+        } else {
+            stage(filename);
+        }
+        saveGitlet();
+    }
+
+    /** Stages the file FILENAME for addition, or unstages it if it is
+     *  the same as in the current commit. */
+    private void stage(String filename) {
         Blob newAdd = new Blob(filename, _currDir);
         if (!newAdd.getLocation().exists()) {
             throw Utils.error("File does not exist.");
@@ -136,12 +291,76 @@ public class Gitlet implements Serializable {
                 if (_stage.forAddition().containsKey(filename)) {
                     _stage.forAddition().remove(filename);
                 }
-                saveGitlet();
                 return;
             }
         }
+        newAdd.store(_objects);
         _stage.forAddition().put(filename, newAdd);
-        saveGitlet();
+    }
+
+    /** Returns true iff the file NAME, whose contents as a blob have
+     *  the ID, is staged as it is: staged for addition with that ID, or
+     *  tracked with that ID and neither staged for addition nor for
+     *  removal. */
+    private boolean isStaged(String name, ObjectId id) {
+        Blob staged = _stage.forAddition().get(name);
+        if (staged != null) {
+            return staged.id().equals(id);
+        }
+        Blob tracked = _hEAD.getFiles().get(name);
+        return tracked != null && tracked.id().equals(id)
+                && !_stage.forRemoval().containsKey(name);
+    }
+
+    /** Returns true iff commands ask a Watcher what has changed in the
+     *  working directory (setting core.fsmonitor). */
+    private boolean monitor() {
+        return config().getBoolean(Watcher.CONFIG_KEY, false);
+    }
+
+    /** Returns the files of the working directory with their blob IDs,
+     *  found on first use. */
+    private WorkingTree workingTree() {
+        if (_tree == null) {
+            _tree = WorkingTree.load(new File(_currDir), _cwd,
+                    ignoreMatcher(), monitor());
+        }
+        return _tree;
+    }
+
+    /** Returns the names of the plain files in the working directory
+     *  that the .gitletignore patterns do not ignore, in lexicographic
+     *  order. Ignored names are passed over without looking at the
+     *  files they name. Where a Watcher runs, these come from the
+     *  WorkingTree, without listing the directory. */
+    private List<String> workingFiles() {
+        if (monitor()) {
+            return new ArrayList<>(workingTree().names());
+        }
+        String[] names = new File(_currDir).list();
+        List<String> result = new ArrayList<>();
+        if (names == null) {
+            return result;
+        }
+        IgnoreMatcher ignore = ignoreMatcher();
+        for (String name : names) {
+            if (!ignore.ignored(name)
+                    && Utils.join(_currDir, name).isFile()) {
+                result.add(name);
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    /** Returns the patterns of the files to ignore, read from the
+     *  working directory on first use. */
+    private IgnoreMatcher ignoreMatcher() {
+        if (_ignore == null) {
+            _ignore = IgnoreMatcher.load(
+                    Utils.join(_currDir, IgnoreMatcher.FILE));
+        }
+        return _ignore;
     }
 
     /**
@@ -184,7 +403,7 @@ public class Gitlet implements Serializable {
         if (_stage.forAddition().isEmpty() && _stage.forRemoval().isEmpty()) {
             throw Utils.error("No changes added to the commit.");
         }
-        Commit prev = _commits.get(_headCommit);
+        Commit prev = _objects.readCommit(_headCommit);
         HashMap<String, Blob> stagedAdd = new HashMap<>(_stage.forAddition());
         HashMap<String, Blob> pFiles = new HashMap<>(prev.getFiles());
         HashMap<String, Blob> updated = new HashMap<>();
@@ -200,12 +419,22 @@ public class Gitlet implements Serializable {
             c = new MergeCommit(msg, updated, pFiles, _headCommit, secondParent);
         }
 
+        ResolutionCache rerere = resolutionCache();
+        if (rerere != null) {
+            if (secondParent == null) {
+                rerere.concludeMerge(_stage, _headCommit);
+            } else {
+                rerere.merged(c.getSHA());
+            }
+        }
+
         _headCommit = c.getSHA();
-        _commits.put(_headCommit, c);
+        _objects.writeCommit(c);
         _branches.get(_headbranch).setID(_headCommit);
         _hEAD = c;
         _stage.clean();
         saveGitlet();
+        gc(true);
     }
 
     /**
@@ -216,18 +445,63 @@ public class Gitlet implements Serializable {
         if (!_initHappened) {
             throw Utils.error("Not in an initialized Gitlet directory.");
         }
-        Commit currHEAD = _hEAD;
-        String parent = currHEAD.parent();
-        while (parent != null) {
+        CommitGraph graph = graph();
+        for (int c = graph.index(_hEAD.id()); c != CommitGraph.NONE;
+             c = graph.parent(c)) {
             System.out.println("===");
-            Commit temp = _commits.get(currHEAD.getSHA());
-            System.out.println(temp.toString() + "\n");
-            currHEAD = _commits.get(parent);
-            if (currHEAD != null) {
-                parent = currHEAD.parent();
-            } else {
-                parent = null;
+            System.out.println(_objects.readCommit(graph.id(c)) + "\n");
+        }
+    }
+
+    /** Displays, as log does, the commits that changed the file PATH
+     *  from their first parents: those on the first-parent chain from
+     *  the current HEAD commit or, if FULLHISTORY, all those reachable
+     *  from it, newest first. Commits whose PathFilters show that they
+     *  did not change PATH are passed over without being read. */
+    public void log(String path, boolean fullHistory) {
+        if (!_initHappened) {
+            throw Utils.error("Not in an initialized Gitlet directory.");
+        }
+        CommitGraph graph = graph();
+        int head = graph.index(_hEAD.id());
+        if (!fullHistory) {
+            for (int c = head; c != CommitGraph.NONE; c = graph.parent(c)) {
+                logIfChanged(graph, c, path);
             }
+            return;
+        }
+        PriorityQueue<Integer> queue = new PriorityQueue<>((a, b) ->
+                graph.time(a) != graph.time(b)
+                ? Long.compare(graph.time(b), graph.time(a))
+                : Integer.compare(a, b));
+        BitSet queued = new BitSet();
+        queue.add(head);
+        queued.set(head);
+        while (!queue.isEmpty()) {
+            int c = queue.poll();
+            logIfChanged(graph, c, path);
+            for (int p : new int[] {graph.parent(c), graph.secondParent(c)}) {
+                if (p != CommitGraph.NONE && !queued.get(p)) {
+                    queued.set(p);
+                    queue.add(p);
+                }
+            }
+        }
+    }
+
+    /** Displays the commit at position C of GRAPH as log does, if it
+     *  changed the file PATH from its first parent. */
+    private void logIfChanged(CommitGraph graph, int c, String path) {
+        if (!graph.mayHaveChanged(c, path)) {
+            return;
+        }
+        Commit commit = _objects.readCommit(graph.id(c));
+        int p = graph.parent(c);
+        Blob before = p == CommitGraph.NONE ? null
+                : _objects.readCommit(graph.id(p)).getFiles().get(path);
+        if (!sameId(commit.getFiles().get(path), before)) {
+            System.out.println("===");
+            System.out.println(commit + "\n");
         }
     }
 
@@ -236,7 +510,8 @@ public class Gitlet implements Serializable {
         if (!_initHappened) {
             throw Utils.error("Not in an initialized Gitlet directory.");
         }
-        for (Commit c : _commits.values()) {
+        for (String id : _objects.commitIds()) {
+            Commit c = _objects.readCommit(id);
             System.out.println("===");
             System.out.println(c.toString() + "\n");
         }
@@ -252,7 +527,8 @@ public class Gitlet implements Serializable {
             throw Utils.error("Not in an initialized Gitlet directory.");
         }
         boolean found = false;
-        for (Commit c : _commits.values()) {
+        for (String id : _objects.commitIds()) {
+            Commit c = _objects.readCommit(id);
             if (c.getMessage().equals(message)) {
                 System.out.println(c.getSHA());
                 found = true;
@@ -263,6 +539,28 @@ public class Gitlet implements Serializable {
         }
     }
 
+    /** Prints each line of the file FILE as of the current HEAD commit,
+     *  after the abbreviated ID of the commit that last changed it and
+     *  its line number. */
+    public void blame(String file) {
+        if (!_initHappened) {
+            throw Utils.error("Not in an initialized Gitlet directory.");
+        }
+        Blob blob = _hEAD.getFiles().get(file);
+        if (blob == null) {
+            throw Utils.error("File does not exist in that commit.");
+        }
+        Blame blame = new Blame(_objects, graph(),
+                Utils.join(_cwdPath, "blame-cache"));
+        ObjectId[] origins = blame.blame(_hEAD.id(), file);
+        String[] lines = LineDiff.lines(blob.getBytes());
+        for (int i = 0; i < lines.length; i += 1) {
+            System.out.printf("%s %d) %s%n",
+                    origins[i].toString().substring(0, BLAME_ABBREV), i + 1,
+                    lines[i]);
+        }
+    }
+
     /**
      * Displays in lexicographic order the files that have
      * been staged for either addition or removal, as well as
@@ -273,29 +571,27 @@ public class Gitlet implements Serializable {
             throw Utils.error("Not in an initialized Gitlet directory.");
         }
         System.out.println("=== Branches ===");
-        TreeMap<String, Branch> sorted = new TreeMap<>(_branches);
-        for (String branch : sorted.keySet()) {
+        _refs.list("", (branch, id) -> {
             if (branch.equals(_headbranch)) {
                 System.out.println("*" + branch);
             } else {
                 System.out.println(branch);
             }
-        }
+        });
         System.out.println();
         System.out.println("=== Staged Files ===");
-        for (String add : _stage.sortedAdd().keySet()) {
+        for (String add : _stage.forAddition().keySet()) {
             System.out.println(add);
         }
         System.out.println();
         System.out.println("=== Removed Files ===");
-        for (String rem : _stage.sortedRem().keySet()) {
+        for (String rem : _stage.forRemoval().keySet()) {
             System.out.println(rem);
         }
         System.out.println();
 
-        File f = new File(_currDir);
-        ArrayList<String> names = new ArrayList<String>(Arrays.asList(f.list()));
-//        System.out.println("Names List: " + names);
+        WorkingTree tree = workingTree();
+        Set<String> names = tree.names();
 
         Set<String> allFiles = new TreeSet<>();
         allFiles.addAll(names);                     // working dir
@@ -303,26 +599,26 @@ public class Gitlet implements Serializable {
         allFiles.addAll(_stage.forAddition().keySet());
         System.out.println("=== Modifications Not Staged For Commit ===");
         for (String filename : allFiles) {
-            File file = Utils.join(f, filename);
-            if (file.isDirectory()) {
+            if (!names.contains(filename) && !inSparse(filename)
+                    && !_stage.forAddition().containsKey(filename)) {
                 continue;
             }
-
-            boolean exists = file.exists();
-            byte[] fileContents = null;
-            if (exists) {
-                fileContents = Utils.readContents(file);
+            ObjectId id = tree.id(filename);
+            if (id == null && ignoreMatcher().ignored(filename)
+                    && Utils.join(_currDir, filename).isFile()) {
+                id = new Blob(filename, _currDir).id();
             }
+            boolean exists = id != null;
 
             if (_hEAD.getFiles().containsKey(filename)
                     && !_stage.forAddition().containsKey(filename)
                     && exists
-                    && !Arrays.equals(_hEAD.getFiles().get(filename).getContents(), fileContents)) {
+                    && !_hEAD.getFiles().get(filename).id().equals(id)) {
                 System.out.println(filename + " (modified)");
 
             } else if (_stage.forAddition().containsKey(filename)
                     && exists
-                    && !Arrays.equals(_stage.forAddition().get(filename).getContents(), fileContents)) {
+                    && !_stage.forAddition().get(filename).id().equals(id)) {
                 System.out.println(filename + " (modified)");
 
             } else if (_stage.forAddition().containsKey(filename)
@@ -339,14 +635,9 @@ public class Gitlet implements Serializable {
         System.out.println("=== Untracked Files ===");
 
         for (String filename : names) {
-            if (Utils.join(f, filename).isDirectory()) {
-                continue;
-            }
             if ((!_stage.forAddition().containsKey(filename))
                 && (!_hEAD.getFiles().containsKey(filename))
-                && (!_stage.forRemoval().containsKey(filename))
-                && (new File(filename).isFile())
-                && (!(new File(filename).isDirectory()))) {
+                && (!_stage.forRemoval().containsKey(filename))) {
                 System.out.println(filename);
             }
         }
@@ -354,8 +645,8 @@ public class Gitlet implements Serializable {
     }
 
     public boolean inCommit(String file) {
-        for (Commit commit : _commits.values()) {
-            if (commit.getFiles().containsKey(file)) {
+        for (String id : _objects.commitIds()) {
+            if (_objects.readCommit(id).getFiles().containsKey(file)) {
                 return true;
             }
         }
@@ -389,19 +680,15 @@ public class Gitlet implements Serializable {
         if (!op.equals("--")) {
             throw Utils.error("Incorrect operands.");
         }
-        Commit desired = null;
-        for (String id : _commits.keySet()) {
-            if (id.startsWith(commitID)) {
-                desired = _commits.get(id);
-                break;
-            }
-        }
+        String id = _objects.resolveCommit(commitID);
+        Commit desired = id == null ? null : _objects.readCommit(id);
         if (desired == null) {
             throw Utils.error("No commit with that id exists");
         }
         if (!desired.getFiles().containsKey(filename)) {
             throw Utils.error("File does not exist in that commit");
         }
+        _objects.prefetch(List.of(desired.getFiles().get(filename)));
         checkoutFile(filename, desired);
         saveGitlet();
     }
@@ -415,37 +702,45 @@ public class Gitlet implements Serializable {
         if (!_initHappened) {
             throw Utils.error("Not in an initialized Gitlet directory.");
         }
-        if (!_branches.containsKey(branch)) {
+        if (findBranch(branch) == null) {
             throw Utils.error("No such branch exists.");
         }
         if (branch.equals(_headbranch)) {
             throw Utils.error("No need to checkout the current branch.");
         }
 
-        Branch desiredB = _branches.get(branch);
-        Commit desiredC = _commits.get(desiredB.getID());
-        List<String> filesinDir = Utils.plainFilenamesIn(_currDir);
+        Branch desiredB = findBranch(branch);
+        Commit desiredC = _objects.readCommit(desiredB.getID());
+        if (sparse() != null) {
+            checkoutSparse(desiredC, "checkout");
+        } else {
+            List<String> filesinDir = workingFiles();
 
-        // Check for untracked files that would be overwritten
-        for (String file : filesinDir) {
-            boolean inCurrent = _hEAD.getFiles().containsKey(file);
-            boolean inDesired = desiredC.getFiles().containsKey(file);
+            // Check for untracked files that would be overwritten
+            for (String file : filesinDir) {
+                boolean inCurrent = _hEAD.getFiles().containsKey(file);
+                boolean inDesired = desiredC.getFiles().containsKey(file);
 
-            if (!inCurrent && inDesired) {
-                throw Utils.error("There is an untracked file in the way; delete it or add and commit it first.");
+                if (!inCurrent && inDesired) {
+                    throw Utils.error("There is an untracked file in the way; delete it or add and commit it first.");
+                }
             }
-        }
 
-        // Delete files that exist in current commit but do not exist in the target commit
-        for (String file : _hEAD.getFiles().keySet()) {
-            if (!desiredC.getFiles().containsKey(file)) {
-                restrictedDelete(file);
+            // Delete files that exist in current commit but do not exist in the target commit
+            for (String file : _hEAD.getFiles().keySet()) {
+                if (!desiredC.getFiles().containsKey(file)) {
+                    restrictedDelete(file);
+                }
             }
-        }
 
-        // Write files from the new branch into the working directory
-        for (String name : desiredC.getFiles().keySet()) {
-            checkoutFile(name, desiredC);
+            // Write files from the new branch into the working directory
+            Events.Checkout event = new Events.Checkout();
+            event.begin();
+            _objects.prefetch(desiredC.getFiles().values());
+            for (String name : desiredC.getFiles().keySet()) {
+                checkoutFile(name, desiredC);
+            }
+            commitCheckout(event, "checkout", desiredC);
         }
 
         _headbranch = branch;
@@ -466,12 +761,12 @@ public class Gitlet implements Serializable {
         if (branchName == null) {
             throw Utils.error("No branch name provided.");
         }
-        if (_branches.containsKey(branchName)) {
+        if (findBranch(branchName) != null) {
             throw Utils.error("A branch with that name already exists.");
         }
         Branch newBranch = new Branch(branchName, _headCommit);
         _branches.put(branchName, newBranch);
-        saveGitlet();
+        saveRefs();
     }
 
     /** Deletes the branch with name BRANCHNAME. */
@@ -479,14 +774,81 @@ public class Gitlet implements Serializable {
         if (!_initHappened) {
             throw Utils.error("Not in an initialized Gitlet directory.");
         }
-        if (!_branches.containsKey(branchName)) {
+        if (findBranch(branchName) == null) {
             throw Utils.error("A branch with that name does not exist.");
         }
         if (branchName.equals(_headbranch)) {
             throw Utils.error("Cannot remove the current branch.");
         }
         _branches.remove(branchName);
-        saveGitlet();
+        saveRefs();
+    }
+
+    /**
+     * Prints the value of the setting KEY if VALUE is null, and
+     * otherwise sets KEY to VALUE.
+     */
+    public void config(String key, String value) {
+        if (!_initHappened) {
+            throw Utils.error("Not in an initialized Gitlet directory.");
+        }
+        if (key == null) {
+            throw Utils.error("Incorrect operands.");
+        }
+        if (value != null && key.equals(ObjectId.FORMAT_KEY)) {
+            throw Utils.error("Cannot change the object format of an "
+                    + "existing repository.");
+        }
+        if (value == null) {
+            String current = config().get(key, null);
+            if (current != null) {
+                System.out.println(current);
+            }
+        } else {
+            config().set(key, value);
+            config().save();
+        }
+    }
+
+    /** Records EVENT, the writing by COMMAND of all the files of the
+     *  commit C, if a recording wants it. */
+    private static void commitCheckout(Events.Checkout event, String command,
+                                       Commit c) {
+        if (event.shouldCommit()) {
+            event.command = command;
+            event.commit = c.getSHA();
+            event.files = c.getFiles().size();
+            for (Blob b : c.getFiles().values()) {
+                byte[] contents = b.getContents();
+                event.bytes += contents == null ? 0 : contents.length;
+            }
+            event.commit();
+        }
+    }
+
+    /** Deletes the commits and blobs that no branch, remote-tracking
+     *  branch or the staging area refers to, and that were written more
+     *  than gc.pruneExpire seconds ago. If AUTO, does so only if the
+     *  store has grown by more than gc.auto objects or gc.autoSize
+     *  bytes since the last collection. */
+    public void gc(boolean auto) {
+        if (!_initHappened) {
+            throw Utils.error("Not in an initialized Gitlet directory.");
+        }
+        GarbageCollector collector =
+                new GarbageCollector(_cwd, _objects, config(), shallow());
+        if (auto && !collector.needed()) {
+            return;
+        }
+        Set<String> roots = new HashSet<>();
+        for (Branch b : branches().values()) {
+            roots.add(b.getID());
+        }
+        roots.add(_headCommit);
+        List<Blob> staged = new ArrayList<>(_stage.forAddition().values());
+        staged.addAll(_stage.forRemoval().values());
+        collector.collect(roots, staged);
+        _refs.pack();
     }
 
     /**
@@ -497,33 +859,34 @@ public class Gitlet implements Serializable {
         if (!_initHappened) {
             throw Utils.error("Not in an initialized Gitlet directory.");
         }
-        Commit reset = null;
-        for (String id : _commits.keySet()) {
-            if (id.startsWith(commitID)) {
-                reset = _commits.get(id);
-                break;
-            }
-        }
+        String id = _objects.resolveCommit(commitID);
+        Commit reset = id == null ? null : _objects.readCommit(id);
         if (reset == null) {
             throw Utils.error("No commit with that id exists");
         }
-        List<String> filesinDir = Utils.plainFilenamesIn(_currDir);
-        for (String file : filesinDir) {
-            if (!_hEAD.getFiles().containsKey(file)
-                    && reset.getFiles().containsKey(file)) {
-                throw Utils.error("There is an untracked file in the way;"
-                        + " delete it or add and commit it first.");
+        if (sparse() != null) {
+            checkoutSparse(reset, "reset");
+        } else {
+            List<String> filesinDir = workingFiles();
+            for (String file : filesinDir) {
+                if (!_hEAD.getFiles().containsKey(file)
+                        && reset.getFiles().containsKey(file)) {
+                    throw Utils.error("There is an untracked file in the way;"
+                            + " delete it or add and commit it first.");
+                }
             }
-            if (_hEAD.getFiles().containsKey(file)
-                    && !reset.getFiles().containsKey(file)) {
-                restrictedDelete(file);
+            for (String file : _hEAD.getFiles().keySet()) {
+                if (!reset.getFiles().containsKey(file)) {
+                    restrictedDelete(Utils.join(_currDir, file));
+                }
             }
-        }
-        for (String name : reset.getFiles().keySet()) {
-            Blob rVersion = reset.getFiles().get(name);
-            byte[] rContents = rVersion.getContents();
-            File newFile = Utils.join(_currDir, name);
-            Utils.writeContents(newFile, rContents);
+            Events.Checkout event = new Events.Checkout();
+            event.begin();
+            _objects.prefetch(reset.getFiles().values());
+            for (String name : reset.getFiles().keySet()) {
+                reset.getFiles().get(name).writeTo(Utils.join(_currDir, name));
+            }
+            commitCheckout(event, "reset", reset);
         }
         _hEAD = reset;
         _headCommit = reset.getSHA();
@@ -537,7 +900,7 @@ public class Gitlet implements Serializable {
         if (!_initHappened) {
             throw Utils.error("Not in an initialized Gitlet directory.");
         }
-        if (!_branches.containsKey(branchName)) {
+        if (findBranch(branchName) == null) {
             throw Utils.error("A branch with that name does not exist.");
         }
         if (_headbranch.equals(branchName)) {
@@ -547,20 +910,28 @@ public class Gitlet implements Serializable {
             throw Utils.error("You have uncommitted changes.");
         }
 
+        String givenCommitID = findBranch(branchName).getID();
+        String splitPointId;
+        Trace.Phase phase = Trace.phase("split-point");
+        try {
+            splitPointId = findSplitPoint(_headCommit, givenCommitID);
+        } finally {
+            phase.close();
+        }
+        if (splitPointId == null) {
+            throw Utils.error("No common ancestor; fetch more history "
+                    + "with a greater --depth.");
+        }
 
-//        setAncestors(_headCommit);
-//        printAncestors(_headCommit);
-
-        String givenCommitID = _branches.get(branchName).getID();
-        String splitPointId = findSplitPoint(_headCommit, givenCommitID);
-
-
-
-        Commit currentBranchCommit = _commits.get(_headCommit);
-        Commit givenBranchCommit = _commits.get(givenCommitID);
-        Commit splitPointCommit = _commits.get(splitPointId);
+        Commit currentBranchCommit = _objects.readCommit(_headCommit);
+        Commit givenBranchCommit = _objects.readCommit(givenCommitID);
+        Commit splitPointCommit = _objects.readCommit(splitPointId);
 
-        if (currentBranchCommit.getAncestors().contains(givenBranchCommit.getSHA())) {
+        CommitGraph graph = graph();
+        int head = graph.index(_headCommit);
+        int given = graph.index(givenCommitID);
+        if (graph.generation(given) <= graph.generation(head)
+                && graph.isAncestor(given, head)) {
             throw Utils.error("Given branch is an ancestor of the current branch.");
         }
         if (splitPointId.equals(_headCommit)) {
@@ -571,8 +942,13 @@ public class Gitlet implements Serializable {
         HashMap<String, Blob> currentBranchFiles = currentBranchCommit.getFiles();
         HashMap<String, Blob> givenBranchFiles = givenBranchCommit.getFiles();
         HashMap<String, Blob> splitPointFiles = splitPointCommit.getFiles();
+        _objects.prefetch(changedBlobs(splitPointFiles, currentBranchFiles,
+                givenBranchFiles));
 
-        List<String> filesinDir = Utils.plainFilenamesIn(_currDir);
+        Collection<String> filesinDir = workingFiles();
+        if (sparse() != null) {
+            filesinDir = untrackedInWay(givenBranchFiles);
+        }
         for (String file : filesinDir) {
             if (!_hEAD.getFiles().containsKey(file)
                     && givenBranchFiles.containsKey(file)) {
@@ -584,12 +960,21 @@ public class Gitlet implements Serializable {
 
         }
 
+        ResolutionCache rerere = resolutionCache();
+        if (rerere != null) {
+            rerere.clearPending();
+        }
+
+        Events.Merge event = new Events.Merge();
+        event.begin();
+        Set<String> renamed = mergeRenames(currentBranchFiles,
+                givenBranchFiles, splitPointFiles);
+
         Set<String> allFiles = new HashSet<>();
         allFiles.addAll(splitPointFiles.keySet());
         allFiles.addAll(currentBranchFiles.keySet());
         allFiles.addAll(givenBranchFiles.keySet());
-
-
+        allFiles.removeAll(renamed);
 
         for (String filename : allFiles) {
             boolean inSplitPoint = splitPointFiles.containsKey(filename);
@@ -603,9 +988,11 @@ public class Gitlet implements Serializable {
                 if (!inGivenBranch && inCurrentBranch) {
                     if (splitPointFileContents.equals(currentBranchFiles.get(filename).getSha())) {
                         _stage.forRemoval().put(filename, currentBranchFiles.get(filename));
-                        String CWD = System.getProperty("user.dir");
-                        File f = Utils.join(CWD, filename);
-                        Utils.restrictedDelete(f);
+                        if (inSparse(filename)) {
+                            String CWD = System.getProperty("user.dir");
+                            File f = Utils.join(CWD, filename);
+                            Utils.restrictedDelete(f);
+                        }
                     } else {
                         handleMergeConflict(
                                 currentBranchFiles.get(filename),
@@ -619,13 +1006,14 @@ public class Gitlet implements Serializable {
                     String currentBranchFileContents = currentBranchFiles.get(filename).getSha();
                     String givenBranchFileContents = givenBranchFiles.get(filename).getSha();
                     // ...identically → No action needed
-                    if (splitPointFileContents.equals(currentBranchFileContents)
-                            && splitPointFileContents.equals(givenBranchFileContents)) {
+                    if (currentBranchFileContents.equals(givenBranchFileContents)) {
                         // No change needed: same modification in both branches
                     } else if (!splitPointFileContents.equals(givenBranchFileContents)) {
                         // Given branch modified the file differently → checkout and stage it
                         if (splitPointFileContents.equals(currentBranchFileContents)) {
-                            checkoutFile(filename, givenBranchCommit);
+                            if (inSparse(filename)) {
+                                checkoutFile(filename, givenBranchCommit);
+                            }
                             _stage.forAddition().put(filename, givenBranchFiles.get(filename));
                         } else {
                             handleMergeConflict(
@@ -638,7 +1026,9 @@ public class Gitlet implements Serializable {
             } else {
                 // Handle files not in the split point (new files).
                 if (!inCurrentBranch && inGivenBranch) {
-                    checkoutFile(filename, givenBranchCommit);
+                    if (inSparse(filename)) {
+                        checkoutFile(filename, givenBranchCommit);
+                    }
                     _stage.forAddition().put(filename, givenBranchFiles.get(filename));
                 }
                 if (inCurrentBranch && inGivenBranch) {
@@ -652,6 +1042,14 @@ public class Gitlet implements Serializable {
                 }
             }
         }
+        if (event.shouldCommit()) {
+            event.branch = branchName;
+            event.split = splitPointId;
+            event.files = allFiles.size();
+            event.renames = renamed.size();
+            event.conflict = _mergeConflictFound;
+            event.commit();
+        }
         commit("Merged " + branchName + " into " + _headbranch + ".", givenCommitID);
         if (_mergeConflictFound) {
             System.out.println("Encountered a merge conflict.");
@@ -660,14 +1058,236 @@ public class Gitlet implements Serializable {
         saveGitlet();
     }
 
+    /**
+     * Finds the files renamed since the split point (files SPLIT) on
+     * either the current (CURRENT) or the given (GIVEN) side of a merge
+     * and merges each one at its new path: a rename on one side plus a
+     * modification on the other yields the modified contents under the
+     * new name. Returns the old and new paths of all renamed files, which
+     * need no further merging.
+     */
+    private Set<String> mergeRenames(HashMap<String, Blob> current,
+                                     HashMap<String, Blob> given,
+                                     HashMap<String, Blob> split) {
+        Set<String> handled = new HashSet<>();
+        RenameDetector detector =
+                new RenameDetector(Utils.join(_cwdPath,
+                        RenameDetector.SKETCHES));
+
+        HashMap<String, Blob> deleted = new HashMap<>();
+        HashMap<String, Blob> added = new HashMap<>();
+        for (String name : split.keySet()) {
+            if (!given.containsKey(name) && current.containsKey(name)) {
+                deleted.put(name, split.get(name));
+            }
+        }
+        for (String name : given.keySet()) {
+            if (!split.containsKey(name) && !current.containsKey(name)) {
+                added.put(name, given.get(name));
+            }
+        }
+        for (Map.Entry<String, String> r
+                : detector.detect(deleted, added).entrySet()) {
+            String from = r.getKey();
+            String to = r.getValue();
+            Blob base = split.get(from);
+            Blob ours = current.get(from);
+            Blob theirs = given.get(to);
+            _stage.forRemoval().put(from, ours);
+            if (inSparse(from)) {
+                restrictedDelete(Utils.join(_currDir, from));
+            }
+            if (RenameDetector.sameContents(ours, base)
+                    || RenameDetector.sameContents(ours, theirs)) {
+                stageContents(to, theirs.getContents());
+            } else if (RenameDetector.sameContents(theirs, base)) {
+                stageContents(to, ours.getContents());
+            } else {
+                handleMergeConflict(ours, theirs, to);
+            }
+            handled.add(from);
+            handled.add(to);
+        }
+
+        deleted.clear();
+        added.clear();
+        for (String name : split.keySet()) {
+            if (!current.containsKey(name) && given.containsKey(name)) {
+                deleted.put(name, split.get(name));
+            }
+        }
+        for (String name : current.keySet()) {
+            if (!split.containsKey(name) && !given.containsKey(name)) {
+                added.put(name, current.get(name));
+            }
+        }
+        for (Map.Entry<String, String> r
+                : detector.detect(deleted, added).entrySet()) {
+            String from = r.getKey();
+            String to = r.getValue();
+            Blob base = split.get(from);
+            Blob ours = current.get(to);
+            Blob theirs = given.get(from);
+            if (RenameDetector.sameContents(theirs, base)
+                    || RenameDetector.sameContents(theirs, ours)) {
+                // Only renamed on our side; nothing to bring over.
+            } else if (RenameDetector.sameContents(ours, base)) {
+                stageContents(to, theirs.getContents());
+            } else {
+                handleMergeConflict(ours, theirs, to);
+            }
+            handled.add(from);
+            handled.add(to);
+        }
+        detector.save();
+        return handled;
+    }
+
+    /** Stages CONTENTS as the file FILENAME for addition, and writes
+     *  them to that file in the working directory unless the sparse
+     *  checkout leaves it out. */
+    private void stageContents(String filename, byte[] contents) {
+        Blob b = new Blob(filename, contents);
+        if (inSparse(filename)) {
+            Utils.writeContents(Utils.join(_currDir, filename), contents);
+        }
+        b.store(_objects);
+        _stage.forAddition().put(filename, b);
+    }
+
+    /** Brings the working directory of a sparse checkout from the
+     *  current commit to the commit TARGET, for COMMAND: deletes the
+     *  files TARGET does not track and writes only the files the sparse
+     *  patterns select whose versions differ between the two commits,
+     *  looking at no other files. */
+    private void checkoutSparse(Commit target, String command) {
+        IgnoreMatcher sparse = sparse();
+        HashMap<String, Blob> current = _hEAD.getFiles();
+        HashMap<String, Blob> wanted = target.getFiles();
+        if (!untrackedInWay(wanted).isEmpty()) {
+            throw Utils.error("There is an untracked file in the way;"
+                    + " delete it or add and commit it first.");
+        }
+        for (String file : current.keySet()) {
+            if (!wanted.containsKey(file)) {
+                restrictedDelete(Utils.join(_currDir, file));
+            }
+        }
+        List<Blob> changed = new ArrayList<>();
+        for (Map.Entry<String, Blob> e : wanted.entrySet()) {
+            if (sparse.matches(e.getKey())
+                    && !sameId(e.getValue(), current.get(e.getKey()))) {
+                changed.add(e.getValue());
+            }
+        }
+        Events.Checkout event = new Events.Checkout();
+        event.begin();
+        _objects.prefetch(changed);
+        for (String name : wanted.keySet()) {
+            if (sparse.matches(name)
+                    && !sameId(wanted.get(name), current.get(name))) {
+                wanted.get(name).writeTo(Utils.join(_currDir, name));
+            }
+        }
+        commitCheckout(event, command, target);
+    }
+
+    /** Returns the files of FILES, which a commit tracks, that the sparse
+     *  patterns select, that the current commit does not track, and
+     *  that are in the working directory. */
+    private List<String> untrackedInWay(HashMap<String, Blob> files) {
+        List<String> result = new ArrayList<>();
+        for (String name : files.keySet()) {
+            if (!_hEAD.getFiles().containsKey(name) && inSparse(name)
+                    && Utils.join(_currDir, name).isFile()) {
+                result.add(name);
+            }
+        }
+        return result;
+    }
+
+    /** Returns true iff the file NAME belongs in the working directory:
+     *  there is no sparse checkout, or its patterns select NAME. */
+    private boolean inSparse(String name) {
+        return sparse() == null || sparse().matches(name);
+    }
+
+    /** Returns the patterns of the sparse checkout, or null if the
+     *  whole of each commit is checked out. */
+    private IgnoreMatcher sparse() {
+        if (_sparse == null) {
+            File f = Utils.join(_cwdPath, SPARSE_FILE);
+            _sparse = f.isFile() ? Optional.of(IgnoreMatcher.load(f))
+                    : Optional.empty();
+        }
+        return _sparse.orElse(null);
+    }
+
+    /** Sets, for ACTION "set", the sparse checkout patterns to PATTERNS
+     *  and brings the working directory into line with them: deletes
+     *  tracked files they do not select, unless modified, and writes
+     *  those they select that are missing. For "disable", checks out
+     *  every file again and for "list", prints the patterns. */
+    public void sparseCheckout(String action, List<String> patterns) {
+        if (!_initHappened) {
+            throw Utils.error("Not in an initialized Gitlet directory.");
+        }
+        File f = Utils.join(_cwdPath, SPARSE_FILE);
+        switch (action == null ? "" : action) {
+        case "list":
+            if (f.isFile()) {
+                System.out.print(Utils.readContentsAsString(f));
+            }
+            return;
+        case "set":
+            if (patterns.isEmpty()) {
+                throw Utils.error("Incorrect operands.");
+            }
+            Utils.atomicWriteContents(f, String.join("\n", patterns) + "\n");
+            break;
+        case "disable":
+            f.delete();
+            break;
+        default:
+            throw Utils.error("Incorrect operands.");
+        }
+        _sparse = null;
+        TreeMap<String, Blob> missing = new TreeMap<>();
+        for (Map.Entry<String, Blob> e : _hEAD.getFiles().entrySet()) {
+            File file = Utils.join(_currDir, e.getKey());
+            if (!inSparse(e.getKey())) {
+                if (file.isFile() && sameId(e.getValue(),
+                        new Blob(e.getKey(), _currDir))) {
+                    restrictedDelete(file);
+                }
+            } else if (!file.exists()) {
+                missing.put(e.getKey(), e.getValue());
+            }
+        }
+        _objects.prefetch(missing.values());
+        for (Map.Entry<String, Blob> e : missing.entrySet()) {
+            e.getValue().writeTo(Utils.join(_currDir, e.getKey()));
+        }
+    }
+
     private void checkoutFile(String filename, Commit givenBranchCommit) {
-        Blob newVersion = givenBranchCommit.getFiles().get(filename);
-        byte[] newContents = newVersion.getContents();
-        File newFile = Utils.join(_currDir, filename);
-        Utils.writeContents(newFile, newContents);
+        givenBranchCommit.getFiles().get(filename)
+                .writeTo(Utils.join(_currDir, filename));
     }
 
     private void handleMergeConflict(Blob currBlob, Blob givenBlob, String filename) {
+        ResolutionCache rerere = resolutionCache();
+        String conflictId = null;
+        if (rerere != null) {
+            conflictId = ResolutionCache.conflictId(currBlob, givenBlob);
+            byte[] resolved = rerere.resolution(conflictId);
+            if (resolved != null) {
+                stageContents(filename, resolved);
+                System.out.println("Resolved '" + filename
+                        + "' using previous resolution.");
+                return;
+            }
+        }
         String conflictedFile = createMergeConflictFile(currBlob, givenBlob);
         byte[] newContents = conflictedFile.getBytes();
         File newFile = Utils.join(_currDir, filename);
@@ -675,6 +1295,21 @@ public class Gitlet implements Serializable {
         Blob conflictedFileBlob = new Blob(filename, _currDir);
         _stage.forAddition().put(filename, conflictedFileBlob);
         _mergeConflictFound = true;
+        if (rerere != null) {
+            rerere.conflicted(filename, conflictId, newContents);
+        }
+    }
+
+    /** Returns the cache of recorded conflict resolutions, or null if
+     *  reusing recorded resolutions (setting rerere.enabled) is off. */
+    private ResolutionCache resolutionCache() {
+        if (!config().getBoolean("rerere.enabled", false)) {
+            return null;
+        }
+        if (_rerere == null) {
+            _rerere = new ResolutionCache(Utils.join(_cwdPath, "rr-cache"));
+        }
+        return _rerere;
     }
 
     public String createMergeConflictFile(Blob b1, Blob b2) {
@@ -687,86 +1322,34 @@ public class Gitlet implements Serializable {
         + "\n>>>>>>>";
     }
 
-    public Set<String> findCommitAncestors(String commitId, Map<String, Integer> distanceMap) {
-        Set<String> ancestors = new HashSet<>();
-        Stack<String> stack = new Stack<>();
-
-        stack.push(commitId);
-        distanceMap.put(commitId, 0);
-
-        while (!stack.isEmpty()) {
-            String currentId = stack.pop();
-            if (currentId == null || ancestors.contains(currentId)) {
-                continue;
-            }
-            ancestors.add(currentId);
-            Commit commit = _commits.get(currentId);
-            if (commit == null) {
-                continue;
-            }
-            int currentDistance = distanceMap.get(currentId);
-            // Handle first parent
-            if (commit.parent() != null && !distanceMap.containsKey(commit.parent())) {
-                distanceMap.put(commit.parent(), currentDistance + 1);
-                stack.push(commit.parent());
-            }
-            // Handle second parent (merge commit case)
-            if (commit.getSecondParent() != null && !distanceMap.containsKey(commit.getSecondParent())) {
-                distanceMap.put(commit.getSecondParent(), currentDistance + 1);
-                stack.push(commit.getSecondParent());
-            }
-        }
-        _commits.get(commitId).setAncestors(ancestors);
-        return ancestors;
+    /** Returns the ID of the closest common ancestor of the commits
+     *  HEADCOMMITID and GIVENCOMMITID, or null if they have none. */
+    String findSplitPoint(String headCommitID, String givenCommitID) {
+        Events.Traversal event = new Events.Traversal();
+        event.begin();
+        CommitGraph graph = graph();
+        int[] visited = new int[1];
+        int base = graph.mergeBase(graph.index(headCommitID),
+                graph.index(givenCommitID), visited);
+        String result = base == CommitGraph.NONE ? null
+                : graph.id(base).toString();
+        if (event.shouldCommit()) {
+            event.purpose = "split-point";
+            event.from = headCommitID;
+            event.other = givenCommitID;
+            event.visited = visited[0];
+            event.result = result;
+            event.commit();
+        }
+        return result;
     }
 
-    private String findSplitPoint(String headCommitID, String givenCommitID) {
-        HashMap<String, Integer> distanceMap = new HashMap<>();
-        Set<String> headCommitAncestors = findCommitAncestors(headCommitID, distanceMap);
-        String closestSplitPoint = null;
-        int minDistance = Integer.MAX_VALUE;
-
-        Stack<String> stack = new Stack<>();
-        stack.push(givenCommitID);
-
-        while (!stack.isEmpty()) {
-            String currentId = stack.pop();
-            Commit commit = _commits.get(currentId);
-
-            if (commit == null) {
-                continue;
-            }
-
-            // If the commit exists in head's ancestors, check the distance
-            if (distanceMap.containsKey(currentId)) {
-                int distance = distanceMap.get(currentId);
-                if (distance < minDistance) {
-                    minDistance = distance;
-                    closestSplitPoint = currentId;
-                }
-            }
-
-            // Traverse the first parent
-            if (commit.parent() != null) {
-                stack.push(commit.parent());
-            }
-
-            // Traverse the second parent (merge commit case)
-            if (commit.getSecondParent() != null) {
-                stack.push(commit.getSecondParent());
-            }
-        }
-
-        return closestSplitPoint;
-    }
-
-    public void printAncestors(String commitId) {
-        Commit commit = _commits.get(commitId);
-        System.out.println("These are the ancestors of commit " + commitId);
-        System.out.println();
-        for (String c : commit.getAncestors()) {
-            System.out.println(c);
+    /** Returns the commit graph of this repository. */
+    CommitGraph graph() {
+        if (_graph == null) {
+            _graph = new CommitGraph(_objects, shallow());
         }
+        return _graph;
     }
 
     /**
@@ -810,112 +1393,271 @@ public class Gitlet implements Serializable {
         if (!_remotes.containsKey(remote)) {
             throw Utils.error("A remote with that name does not exist.");
         }
+        Transport transport = openTransport(_remotes.get(remote));
+        String remoteHead = transport.refs().get(remoteBranchName);
+        if (remoteHead != null && !isAncestor(remoteHead, _headCommit)) {
+            throw Utils.error("Please pull down remote changes before pushing.");
+        }
+        transport.push(_objects, _headCommit, remoteBranchName, remoteHead);
+    }
 
-        Remote givenRemote = _remotes.get(remote);
-        String remoteDir = givenRemote.getRemoteDirectory();
+    /** Fetches REMOTEBRANCH from REMOTE, as with fetch, to DEPTH and
+     *  possibly BLOBLESS, and merges it into the current branch. */
+    public void pull(String remote, String remoteBranch, int depth,
+                     boolean blobless) {
+        fetch(remote, remoteBranch, depth, blobless);
+        merge(remote + '/' + remoteBranch);
 
-        if (givenRemote.isOnlineRemote()) {
+    }
 
-        } else {
-            if (!new File(remoteDir).exists()) {
-                throw Utils.error("Remote directory not found.");
-            }
-            Gitlet remoteRepo = new Gitlet(remoteDir);
-            HashMap<String, Branch> remoteBranches = remoteRepo._branches;
-            if (!remoteBranches.containsKey(remoteBranchName)) {
-                remoteBranches.put(remoteBranchName, new Branch(remoteBranchName, _headCommit));
-            } else {
-                Branch remoteBranch = remoteBranches.get(remoteBranchName);
-                Map<String, Integer> localDistanceMap = new HashMap<>();
-                Set<String> localBranchAncestors = findCommitAncestors(_headCommit, localDistanceMap);
-                if (!localBranchAncestors.contains(remoteBranch.getID())) {
-                    throw Utils.error("Please pull down remote changes before pushing.");
-                }
-                Map<String, Integer> remoteDistanceMap = new HashMap<>();
-                Set<String> remoteBranchAncestors = findCommitAncestors(remoteBranch.getID(), remoteDistanceMap);
+    /** Copies the commits of the branch REMOTEBRANCHNAME of REMOTE into
+     *  this repository as the branch REMOTE/REMOTEBRANCHNAME. If DEPTH
+     *  is positive only the last DEPTH commits of its history are
+     *  fetched, or deepened to, and the commits whose parents were left
+     *  out are recorded as the shallow boundary. A DEPTH of 0 fetches
+     *  the complete history. If BLOBLESS, the contents of files are left
+     *  behind and REMOTE is recorded as a promisor, from which they are
+     *  fetched when a command needs them. */
+    public void fetch(String remote, String remoteBranchName, int depth,
+                      boolean blobless) {
+        if (!_initHappened) {
+            throw Utils.error("Not in an initialized Gitlet directory.");
+        }
+        if (!_remotes.containsKey(remote)) {
+            throw Utils.error("A remote with that name does not exist.");
+        }
+        Transport transport = openTransport(_remotes.get(remote));
+        if (blobless && !config().getBoolean(promisorKey(remote), false)) {
+            config().set(promisorKey(remote), "true");
+            config().save();
+        }
+        HashSet<String> shallow = new HashSet<>(shallow());
+        String remoteHead = transport.fetch(remoteBranchName,
+                Transfer.tips(branches()), depth, shallow, !blobless,
+                _objects);
+        shallow.removeIf(id -> Transfer.parents(_objects.readCommit(id))
+                .stream().allMatch(_objects::hasCommit));
+        _graph = null;
+        if (!shallow.equals(_shallow)) {
+            _shallow = shallow;
+            Utils.atomicWriteObject(Utils.join(_cwdPath, "shallow"),
+                    _shallow);
+        }
+        Branch fetchBranch = new Branch(remote + "/" + remoteBranchName, remoteHead);
+        _branches.put(remote + "/" + remoteBranchName, fetchBranch);
+        saveRefs();
+    }
 
-                List<String> missingCommits = new ArrayList<>();
-                for (String commitID : localBranchAncestors) {
-                    if (!remoteBranchAncestors.contains(commitID)) {
-                        missingCommits.add(commitID);
-                    }
-                }
-                missingCommits.sort(Comparator.comparingInt(localDistanceMap::get));
-                for (String commitID : missingCommits) {
-                    remoteRepo._commits.put(commitID, _commits.get(commitID));
-                }
+    /** Returns a Transport to the repository REMOTE refers to. */
+    private Transport openTransport(Remote remote) {
+        String location = remote.getRemoteDirectory();
+        if (remote.isOnlineRemote()) {
+            return new HttpTransport(location);
+        }
+        if (!new File(location).exists()) {
+            throw Utils.error("Remote directory not found.");
+        }
+        return new RemoteRepository(new File(location));
+    }
 
-//            remoteBranches.put(remoteBranchName, new Branch(remoteBranchName, _headCommit));
-                remoteRepo._hEAD = _hEAD;
-                remoteRepo._headCommit = _headCommit;
-                remoteRepo.saveGitlet();
+    /**
+     * Publishes this repository over HTTP on PORT (8080 if null) of the
+     * local ADDRESS, for remotes added with an http:// URL, until the
+     * process is stopped. There is no authentication: anyone who can
+     * reach the port can read the whole repository and push to, or
+     * move, any branch. Other machines are only let in by naming an
+     * address they reach, such as 0.0.0.0, rather than the loopback
+     * address, and a warning saying so is printed when that is done.
+     */
+    public void serve(String address, String port) {
+        if (!_initHappened) {
+            throw Utils.error("Not in an initialized Gitlet directory.");
+        }
+        try {
+            int p = new GitletServer(_cwd).start(address,
+                    port == null ? 8080 : Integer.parseInt(port));
+            System.out.println("Serving " + _currDir + " on " + address
+                    + " port " + p + ".");
+            if (!InetAddress.getByName(address).isLoopbackAddress()) {
+                System.out.println("Warning: there is no authentication; "
+                        + "anyone who can reach this port can read and "
+                        + "write the repository.");
             }
+        } catch (NumberFormatException e) {
+            throw Utils.error("Incorrect operands.");
+        } catch (IOException e) {
+            throw Utils.error("Could not serve: %s", e.getMessage());
         }
-
-
-//        String commonAncestor = findSplitPoint();
-
     }
 
-    public void pull(String remote, String remoteBranch) {
-        fetch(remote, remoteBranch);
-        merge(remote + '/' + remoteBranch);
+    /** Watches the working directory for changes until stopped, so
+     *  that commands, if setting core.fsmonitor is true, need look only
+     *  at the files that changed. */
+    public void watch() {
+        if (!_initHappened) {
+            throw Utils.error("Not in an initialized Gitlet directory.");
+        }
+        new Watcher(new File(_currDir), _cwd).run(() ->
+                System.out.println("Watching " + _currDir + "."));
+    }
 
+    /** Reads into this repository the history in the stream FastImport
+     *  reads, from the file FILE, or from the standard input if FILE is
+     *  null. Branches are moved, and made, as the stream says, all at
+     *  once at the end. The working directory and staging area are left
+     *  alone, even if the current branch moves. */
+    public void fastImport(String file) {
+        if (!_initHappened) {
+            throw Utils.error("Not in an initialized Gitlet directory.");
+        }
+        HashMap<String, String> tips = new HashMap<>();
+        for (Branch b : branches().values()) {
+            tips.put(b.getName(), b.getID());
+        }
+        FastImport importer = new FastImport(_objects, tips);
+        Map<String, String> moved;
+        try (InputStream in = file == null ? System.in
+                 : new FileInputStream(file)) {
+            moved = importer.run(in);
+        } catch (IOException excp) {
+            throw Utils.error("Could not read %s.", file);
+        }
+        for (Map.Entry<String, String> e : moved.entrySet()) {
+            Branch b = _branches.get(e.getKey());
+            if (b == null) {
+                _branches.put(e.getKey(), new Branch(e.getKey(), e.getValue()));
+            } else {
+                b.setID(e.getValue());
+            }
+        }
+        _headCommit = _branches.get(_headbranch).getID();
+        _hEAD = _objects.readCommit(_headCommit);
+        _graph = null;
+        saveGitlet();
     }
 
-    public void fetch(String remote, String remoteBranchName) {
+    /** Writes the history reachable from every branch, as a stream that
+     *  fastImport reads, to the file FILE, or to the standard output if
+     *  FILE is null. */
+    public void fastExport(String file) {
         if (!_initHappened) {
             throw Utils.error("Not in an initialized Gitlet directory.");
         }
-        if (!_remotes.containsKey(remote)) {
-            throw Utils.error("A remote with that name does not exist.");
+        HashMap<String, String> tips = new HashMap<>();
+        for (Branch b : branches().values()) {
+            tips.put(b.getName(), b.getID());
         }
-        Remote givenRemote = _remotes.get(remote);
-        String remoteDir = givenRemote.getRemoteDirectory();
-        if (!new File(remoteDir).exists()) {
-            throw Utils.error("Remote directory not found.");
+        FastExport exporter = new FastExport(_objects, tips);
+        if (file == null) {
+            exporter.run(new BufferedOutputStream(System.out));
+            return;
         }
-        Gitlet remoteRepo = new Gitlet(remoteDir);
-        HashMap<String, Branch> remoteBranches = remoteRepo._branches;
-        HashMap<String, Commit> remoteCommits = remoteRepo._commits;
-        if (!remoteBranches.containsKey(remoteBranchName)) {
-            throw Utils.error("That remote does not have that branch.");
+        try (OutputStream out =
+                 new BufferedOutputStream(new FileOutputStream(file))) {
+            exporter.run(out);
+        } catch (IOException excp) {
+            throw Utils.error("Could not write %s.", file);
         }
-        HashMap<String, Integer> remoteDistanceMap = new HashMap<>();
-        Set<String> remoteCommitAncestors = remoteRepo.findCommitAncestors(remoteRepo._headCommit, remoteDistanceMap);
-        List<String> missingCommits = new ArrayList<>();
-        for (String commitID : remoteCommitAncestors) {
-            if (!_commits.containsKey(commitID)) {
-                missingCommits.add(commitID);
+    }
+
+    /** Returns the setting recording that REMOTE is a promisor. */
+    private static String promisorKey(String remote) {
+        return "remote." + remote + ".promisor";
+    }
+
+    /** Returns transports to the remotes that blobless fetches have
+     *  been made from, which blob contents missing from this
+     *  repository are fetched from. */
+    private List<Transport> promisors() {
+        ArrayList<Transport> result = new ArrayList<>();
+        for (Remote remote : _remotes.values()) {
+            if (config().getBoolean(promisorKey(remote.getName()), false)) {
+                result.add(openTransport(remote));
             }
         }
-        missingCommits.sort(Comparator.comparingInt(remoteDistanceMap::get));
-        for (String commitID : missingCommits) {
-            _commits.put(commitID, remoteCommits.get(commitID));
+        return result;
+    }
+
+    /** Returns the versions of files in SPLIT, CURRENT and GIVEN, the
+     *  commits of a merge, that differ between them and so will be
+     *  read. */
+    private static List<Blob> changedBlobs(Map<String, Blob> split,
+                                           Map<String, Blob> current,
+                                           Map<String, Blob> given) {
+        Set<String> names = new HashSet<>(split.keySet());
+        names.addAll(current.keySet());
+        names.addAll(given.keySet());
+        ArrayList<Blob> result = new ArrayList<>();
+        for (String name : names) {
+            Blob s = split.get(name);
+            Blob c = current.get(name);
+            Blob g = given.get(name);
+            if (sameId(s, c) && sameId(c, g)) {
+                continue;
+            }
+            for (Blob b : new Blob[] {s, c, g}) {
+                if (b != null) {
+                    result.add(b);
+                }
+            }
         }
-        Branch fetchBranch = new Branch(remote + "/" + remoteBranchName, remoteRepo._headCommit);
-        _branches.put(remote + "/" + remoteBranchName, fetchBranch);
-        saveGitlet();
+        return result;
+    }
+
+    /** Returns true iff A and B are both null or have the same ID. */
+    private static boolean sameId(Blob a, Blob b) {
+        return a == null ? b == null
+                : b != null && a.id().equals(b.id());
+    }
+
+    /** Returns the commits whose parents were left out of a shallow
+     *  fetch, which are treated as having none. */
+    @SuppressWarnings("unchecked")
+    private Set<String> shallow() {
+        if (_shallow == null) {
+            File f = Utils.join(_cwdPath, "shallow");
+            _shallow = f.isFile() ? Utils.readObject(f, HashSet.class)
+                    : new HashSet<>();
+        }
+        return _shallow;
+    }
+
+    /** Returns true iff the commit ANCESTOR is reachable from the commit
+     *  DESCENDANT (or is DESCENDANT itself). */
+    private boolean isAncestor(String ancestor, String descendant) {
+        return graph().isAncestor(graph().index(ancestor),
+                graph().index(descendant));
     }
 
     public void zipGitlet() {
         File zipFile = Utils.join(_cwdPath, "gitlet.zip");
         try (ZipOutputStream zippedGitlet = new ZipOutputStream(new FileOutputStream(zipFile))) {
-            for (File f : _cwd.listFiles()) {
-                if (f.getName().equals("gitlet.zip")) {
-                    continue; // Skip the gitlet.zip file itself
-                }
-                ZipEntry entry = new ZipEntry(f.getName());
-                zippedGitlet.putNextEntry(entry);
-                byte[] contents = Utils.readContents(f);
-                zippedGitlet.write(contents);
-                zippedGitlet.closeEntry();
-            }
+            zipDirectory(zippedGitlet, _cwd, "");
         } catch (IOException e) {
             throw Utils.error("Failed while attempting to zip .gitlet: " + e.getMessage());
         }
     }
 
+    /** Adds the files under DIR to ZIP, naming each entry by its path
+     *  below DIR prefixed with PREFIX. */
+    private void zipDirectory(ZipOutputStream zip, File dir, String prefix)
+            throws IOException {
+        for (File f : dir.listFiles()) {
+            if (f.getName().equals("gitlet.zip")) {
+                continue; // Skip the gitlet.zip file itself
+            }
+            if (f.isDirectory()) {
+                zipDirectory(zip, f, prefix + f.getName() + "/");
+                continue;
+            }
+            ZipEntry entry = new ZipEntry(prefix + f.getName());
+            zip.putNextEntry(entry);
+            byte[] contents = Utils.readContents(f);
+            zip.write(contents);
+            zip.closeEntry();
+        }
+    }
+
 
     /**
      * The staging area in this Gitlet repository.
@@ -941,11 +1683,8 @@ public class Gitlet implements Serializable {
     /** Directory pathway of this Gitlet repository. */
     private String _cwdPath;
 
-    /**
-     * HashMap containing all commits made in this program.
-     * It maps SHA-1 identifier to its corresponding commit.
-     */
-    private HashMap<String, Commit> _commits;
+    /** The commits and file contents of this repository. */
+    private ObjectStore _objects;
 
     /**
      * HashMap containing all branches made in this program. It maps
@@ -955,6 +1694,24 @@ public class Gitlet implements Serializable {
 
     private HashMap<String, Remote> _remotes;
 
+    /** The journal of this repository's state, once opened. */
+    private Journal _journal;
+
+    /** The branch files of this repository. */
+    private Refs _refs;
+
+    /** The branches as they were last read from or written to _refs. */
+    private final HashMap<String, String> _savedRefs = new HashMap<>();
+
+    /** True once every branch has been read into _branches. */
+    private boolean _allBranches;
+
+    /** Commits on the boundary of a shallow history, once read. */
+    private HashSet<String> _shallow;
+
+    /** The commit graph of this repository, once needed. */
+    private CommitGraph _graph;
+
     /** Used to check if a Gitlet repository has already been initiated. */
     private boolean _gitletExists;
 
@@ -963,10 +1720,49 @@ public class Gitlet implements Serializable {
 
     private boolean _mergeConflictFound = false;
 
+    /** Recorded conflict resolutions, if enabled and in use. */
+    private ResolutionCache _rerere;
+
     /** Directory where this Gitlet repo is located. */
     private String _currDir;
 
-    /** Holds all valid Gitlet commands. */
-    private ArrayList<String> _commands = new ArrayList<>();
+    /** Settings of this repository, loaded on first use. */
+    private Config _config;
+
+    /** Patterns of the files to ignore, loaded on first use. */
+    private IgnoreMatcher _ignore;
+
+    /** The files of the working directory, found on first use. */
+    private WorkingTree _tree;
+
+    /** The patterns of the sparse checkout, if any, loaded on first
+     *  use. */
+    private Optional<IgnoreMatcher> _sparse;
+
+    /** Name of the file, in the .gitlet directory, of the patterns of
+     *  the sparse checkout. */
+    static final String SPARSE_FILE = "sparse-checkout";
+
+    /** Number of hex digits of the commit IDs blame prints. */
+    private static final int BLAME_ABBREV = 8;
+
+    /** All valid Gitlet commands. */
+    private static final List<String> COMMANDS = Arrays.asList("init",
+            "add", "commit", "rm", "branch", "checkout", "merge", "status",
+            "log", "global-log", "reset", "rm-branch", "find",
+            "add-remote", "rm-remote", "push", "fetch", "pull", "config",
+            "serve", "gc", "blame", "watch", "sparse-checkout", "fast-import",
+            "fast-export");
+
+    /** Commands that change the staging area, the current branch, the
+     *  working directory or the files of the .gitlet directory beside
+     *  the branches (such as the shallow list and the configuration
+     *  fetch writes), and so run holding the RepositoryLock. Other
+     *  commands either only read or only move branches, which Refs
+     *  updates safely on its own. */
+    static final Set<String> LOCKING_COMMANDS = Set.of("add", "commit",
+            "rm", "checkout", "merge", "reset", "add-remote", "rm-remote",
+            "fetch", "push", "pull", "config", "gc", "sparse-checkout",
+            "fast-import");
 
 }
@@ -0,0 +1,266 @@
+package gitlet;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/** An HTTP server publishing one Gitlet repository to HttpTransport
+ *  clients. See HttpTransport for the protocol. Clients are not
+ *  authenticated: anyone who can reach the port can read every object
+ *  and move every branch. So by default the server listens only on the
+ *  loopback address.
+ *  @author Israel Rodriguez
+ */
+class GitletServer {
+
+    /** The address served on unless another is asked for. */
+    static final String LOOPBACK = "127.0.0.1";
+
+    /** Number of requests served at once. */
+    static final int THREADS = 4;
+
+    /** A server for the repository whose .gitlet directory is DIR. */
+    GitletServer(File dir) {
+        _repo = new RemoteRepository(dir);
+    }
+
+    /** Starts serving on PORT of ADDRESS (a port of 0 picks a free one)
+     *  and returns the port actually used. */
+    int start(String address, int port) throws IOException {
+        _server = HttpServer.create(new InetSocketAddress(address, port), 0);
+        _server.createContext("/refs", this::refs);
+        _server.createContext("/upload-pack", this::uploadPack);
+        _server.createContext("/upload-blobs", this::uploadBlobs);
+        _server.createContext("/receive-pack", this::receivePack);
+        _executor = Executors.newFixedThreadPool(THREADS);
+        _server.setExecutor(_executor);
+        _server.start();
+        return _server.getAddress().getPort();
+    }
+
+    /** Stops serving. */
+    void stop() {
+        _server.stop(0);
+        _executor.shutdown();
+    }
+
+    /** Answers EXCHANGE with the list of branches. */
+    private void refs(HttpExchange exchange) throws IOException {
+        StringBuilder body = new StringBuilder();
+        for (Map.Entry<String, String> e
+                : new TreeMap<>(_repo.refs()).entrySet()) {
+            body.append(e.getValue()).append(' ').append(e.getKey())
+                .append('\n');
+        }
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        String accept = exchange.getRequestHeaders()
+                .getFirst("Accept-Encoding");
+        if (accept != null && accept.contains("gzip")) {
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out =
+                         new GZIPOutputStream(exchange.getResponseBody())) {
+                out.write(bytes);
+            }
+        } else {
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    /** Answers EXCHANGE, a request for a branch, with a pack of the
+     *  commits the client lacks. */
+    private void uploadPack(HttpExchange exchange) throws IOException {
+        String branch = null;
+        Set<String> haves = new HashSet<>();
+        Set<String> shallow = new HashSet<>();
+        int depth = 0;
+        boolean blobs = true;
+        try {
+            for (String line : requestText(exchange).split("\n")) {
+                if (line.startsWith("want-ref ")) {
+                    branch = line.substring("want-ref ".length());
+                } else if (line.startsWith("have ")) {
+                    haves.add(line.substring("have ".length()));
+                } else if (line.startsWith("shallow ")) {
+                    shallow.add(line.substring("shallow ".length()));
+                } else if (line.equals("filter blob:none")) {
+                    blobs = false;
+                } else if (line.startsWith("depth ")) {
+                    depth = Integer.parseInt(
+                            line.substring("depth ".length()));
+                }
+            }
+        } catch (NumberFormatException e) {
+            error(exchange, 400, "Incorrect operands.");
+            return;
+        }
+        if (!allIds(haves) || !allIds(shallow)) {
+            error(exchange, 400, "Incorrect operands.");
+            return;
+        }
+        String id = branch == null ? null : _repo.refs().get(branch);
+        if (id == null) {
+            error(exchange, 404, "That remote does not have that branch.");
+            return;
+        }
+        Set<String> boundary = new HashSet<>();
+        List<String> missing;
+        if (depth <= 0 && shallow.isEmpty()) {
+            missing = Transfer.missingCommits(_repo.objects(), List.of(id),
+                    haves);
+        } else {
+            Set<String> has = Transfer.reachable(_repo.objects(), haves,
+                    shallow);
+            missing = Transfer.missingCommits(_repo.objects(), List.of(id),
+                    has::contains, shallow,
+                    depth <= 0 ? Integer.MAX_VALUE : depth, boundary);
+        }
+        exchange.getResponseHeaders().set(HttpTransport.REF_HEADER, id);
+        if (!boundary.isEmpty()) {
+            exchange.getResponseHeaders().set(HttpTransport.SHALLOW_HEADER,
+                    String.join(" ", boundary));
+        }
+        exchange.getResponseHeaders().set("Content-Type",
+                HttpTransport.PACK_TYPE);
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out =
+                     new BufferedOutputStream(exchange.getResponseBody())) {
+            Pack.write(out, _repo.objects(), missing, boundary, blobs);
+        }
+    }
+
+    /** Answers EXCHANGE, a request for the contents of blobs, with a
+     *  pack of those this repository has. */
+    private void uploadBlobs(HttpExchange exchange) throws IOException {
+        List<String> wants = new ArrayList<>();
+        for (String line : requestText(exchange).split("\n")) {
+            if (line.startsWith("want ")) {
+                wants.add(line.substring("want ".length()));
+            }
+        }
+        if (!allIds(wants)) {
+            error(exchange, 400, "Incorrect operands.");
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type",
+                HttpTransport.PACK_TYPE);
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out =
+                     new BufferedOutputStream(exchange.getResponseBody())) {
+            Pack.writeBlobs(out, _repo.objects(), wants);
+        }
+    }
+
+    /** Stores the pack sent in EXCHANGE and moves the branch it names,
+     *  provided the new commit is in the store once the pack is. */
+    private void receivePack(HttpExchange exchange) throws IOException {
+        Map<String, String> query = query(exchange);
+        String branch = query.get("branch");
+        String newId = query.get("new");
+        String old = query.get("old");
+        if (branch == null || !ObjectId.isId(newId)
+                || !(old == null || old.isEmpty() || ObjectId.isId(old))) {
+            error(exchange, 400, "Incorrect operands.");
+            return;
+        }
+        try (InputStream in = exchange.getRequestBody()) {
+            Pack.read(in, _repo.objects());
+            if (!_repo.objects().hasCommit(newId)) {
+                throw Utils.error("No commit with that id exists.");
+            }
+            _repo.updateBranch(branch,
+                    old == null || old.isEmpty() ? null : old, newId);
+        } catch (GitletException e) {
+            error(exchange, 409, e.getMessage());
+            return;
+        }
+        byte[] ok = "ok\n".getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, ok.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(ok);
+        }
+    }
+
+    /** Returns true iff every one of IDS is a well-formed object ID.
+     *  IDs from a client name files in the store, so no other may be
+     *  looked up. */
+    private static boolean allIds(Collection<String> ids) {
+        for (String id : ids) {
+            if (!ObjectId.isId(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns the body of the request in EXCHANGE as text. */
+    private static String requestText(HttpExchange exchange)
+            throws IOException {
+        String encoding = exchange.getRequestHeaders()
+                .getFirst("Content-Encoding");
+        try (InputStream raw = exchange.getRequestBody();
+             InputStream in = "gzip".equalsIgnoreCase(encoding)
+                     ? new GZIPInputStream(raw) : raw) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /** Returns the query parameters of the request in EXCHANGE. */
+    private static Map<String, String> query(HttpExchange exchange) {
+        HashMap<String, String> result = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw != null) {
+            for (String pair : raw.split("&")) {
+                int eq = pair.indexOf('=');
+                if (eq > 0) {
+                    result.put(pair.substring(0, eq),
+                            URLDecoder.decode(pair.substring(eq + 1),
+                                    StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Answers EXCHANGE with STATUS and MESSAGE. */
+    private static void error(HttpExchange exchange, int status,
+                              String message) throws IOException {
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /** The repository served. */
+    private final RemoteRepository _repo;
+
+    /** The underlying server, once started. */
+    private HttpServer _server;
+
+    /** Threads handling requests. */
+    private ExecutorService _executor;
+}
@@ -0,0 +1,265 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/** A Transport to a repository published by GitletServer at an http://
+ *  or https:// URL.
+ *
+ *  The protocol has four requests, relative to the URL:
+ *    GET  refs          lists the branches, one "ID NAME" line each;
+ *    POST upload-pack   takes a "want-ref BRANCH" line and "have ID"
+ *                       lines and answers with a Pack of the commits of
+ *                       BRANCH that are missing, naming the head of
+ *                       BRANCH in the REF_HEADER response header. For a
+ *                       shallow fetch it also takes a "depth N" line and
+ *                       a "shallow ID" line for each boundary commit of
+ *                       the client, and names the new boundary commits
+ *                       in the SHALLOW_HEADER response header. A "filter
+ *                       blob:none" line leaves all blobs out of the pack;
+ *    POST upload-blobs  takes "want ID" lines and answers with a Pack of
+ *                       the contents of the blobs with those IDs;
+ *    POST receive-pack  takes a Pack and the query parameters BRANCH,
+ *                       OLD and NEW, and moves BRANCH from OLD to NEW.
+ *  Text bodies are gzip-compressed; packs are compressed already. All
+ *  requests share one HttpClient, which keeps its connection to the
+ *  server open between them, and a fetch takes a single round trip.
+ *  @author Israel Rodriguez
+ */
+class HttpTransport implements Transport {
+
+    /** Content type of a pack. */
+    static final String PACK_TYPE = "application/x-gitlet-pack";
+
+    /** Response header naming the commit a fetched branch points to. */
+    static final String REF_HEADER = "X-Gitlet-Ref";
+
+    /** Response header listing, space-separated, the commits of a
+     *  shallow fetch whose parents were not sent. */
+    static final String SHALLOW_HEADER = "X-Gitlet-Shallow";
+
+    /** A transport to the repository at URL. */
+    HttpTransport(String url) {
+        _url = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+        _client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    @Override
+    public Map<String, String> refs() {
+        if (_refs == null) {
+            _refs = parseRefs(text(send(refsRequest(),
+                    HttpResponse.BodyHandlers.ofInputStream())));
+        }
+        return _refs;
+    }
+
+    /** Fetches BRANCH in a single round trip: the server resolves the
+     *  branch name itself and names the commit it resolved to in the
+     *  REF_HEADER of its response, ahead of the pack. */
+    @Override
+    public String fetch(String branch, Set<String> haves, int depth,
+                        Set<String> shallow, boolean blobs,
+                        ObjectStore dest) {
+        StringBuilder body = new StringBuilder();
+        body.append("want-ref ").append(branch).append('\n');
+        for (String have : haves) {
+            body.append("have ").append(have).append('\n');
+        }
+        if (depth > 0) {
+            body.append("depth ").append(depth).append('\n');
+        }
+        for (String id : shallow) {
+            body.append("shallow ").append(id).append('\n');
+        }
+        if (!blobs) {
+            body.append("filter blob:none\n");
+        }
+        HttpResponse<InputStream> response =
+                requestPack("upload-pack", body.toString(), dest);
+        for (String id : response.headers().firstValue(SHALLOW_HEADER)
+                .orElse("").split(" ")) {
+            if (!id.isEmpty()) {
+                shallow.add(id);
+            }
+        }
+        return response.headers().firstValue(REF_HEADER).orElseThrow(
+            () -> Utils.error("Remote did not name the fetched commit."));
+    }
+
+    /** Fetches the blobs with IDS in a single round trip. */
+    @Override
+    public void fetchBlobs(Collection<String> ids, ObjectStore dest) {
+        StringBuilder body = new StringBuilder();
+        for (String id : ids) {
+            body.append("want ").append(id).append('\n');
+        }
+        requestPack("upload-blobs", body.toString(), dest);
+    }
+
+    /** Posts BODY to PATH and stores the objects of the pack that is
+     *  sent back in DEST. Returns the response, whose body has been
+     *  read. */
+    private HttpResponse<InputStream> requestPack(String path, String body,
+                                                  ObjectStore dest) {
+        HttpRequest request = HttpRequest.newBuilder(uri(path))
+                .header("Content-Type", "text/plain")
+                .header("Content-Encoding", "gzip")
+                .header("Accept", PACK_TYPE)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(gzip(body)))
+                .build();
+        HttpResponse<InputStream> response = send(request,
+                HttpResponse.BodyHandlers.ofInputStream());
+        try (InputStream in = new BufferedInputStream(response.body())) {
+            Pack.read(in, dest);
+        } catch (IOException e) {
+            throw Utils.error("Transfer failed: %s", e.getMessage());
+        }
+        return response;
+    }
+
+    @Override
+    public void push(ObjectStore source, String id, String branch,
+                     String expected) {
+        List<String> missing = Transfer.missingCommits(source, List.of(id),
+                Set.copyOf(refs().values()));
+        File pack = Utils.join(source.directory(),
+                "outgoing-" + System.nanoTime() + ".pack");
+        try {
+            try (OutputStream out = new BufferedOutputStream(
+                    new FileOutputStream(pack))) {
+                Pack.write(out, source, missing, Set.of(), true);
+            }
+            String query = "branch=" + encode(branch)
+                    + "&old=" + (expected == null ? "" : expected)
+                    + "&new=" + id;
+            HttpRequest request = HttpRequest.newBuilder(
+                    uri("receive-pack?" + query))
+                    .header("Content-Type", PACK_TYPE)
+                    .POST(HttpRequest.BodyPublishers.ofFile(pack.toPath()))
+                    .build();
+            send(request, HttpResponse.BodyHandlers.ofInputStream());
+        } catch (IOException e) {
+            throw Utils.error("Transfer failed: %s", e.getMessage());
+        } finally {
+            pack.delete();
+        }
+        _refs = null;
+    }
+
+    /** Returns the request for the list of branches. */
+    private HttpRequest refsRequest() {
+        return HttpRequest.newBuilder(uri("refs"))
+                .header("Accept-Encoding", "gzip")
+                .GET().build();
+    }
+
+    /** Sends REQUEST, returning its response, which has been checked for
+     *  success, with a body read by HANDLER. */
+    private <T> HttpResponse<T> send(HttpRequest request,
+                                     HttpResponse.BodyHandler<T> handler) {
+        try {
+            return checked(_client.send(request, handler));
+        } catch (IOException e) {
+            throw Utils.error("Remote directory not found.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Utils.error("Transfer interrupted.");
+        }
+    }
+
+    /** Returns RESPONSE if it succeeded, and otherwise throws a
+     *  GitletException carrying the message the server sent. */
+    private static <T> HttpResponse<T> checked(HttpResponse<T> response) {
+        if (response.statusCode() == 200) {
+            return response;
+        }
+        String message = "Remote error " + response.statusCode() + ".";
+        if (response.body() instanceof InputStream) {
+            String text = text(response);
+            if (!text.isBlank()) {
+                message = text.strip();
+            }
+        }
+        throw Utils.error("%s", message);
+    }
+
+    /** Returns the body of RESPONSE, an InputStream, as text, undoing any
+     *  gzip content encoding. */
+    private static String text(HttpResponse<?> response) {
+        boolean gzipped = response.headers().firstValue("Content-Encoding")
+                .map(v -> v.equalsIgnoreCase("gzip")).orElse(false);
+        try (InputStream raw = (InputStream) response.body();
+             InputStream in = gzipped ? new GZIPInputStream(raw) : raw) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw Utils.error("Transfer failed: %s", e.getMessage());
+        }
+    }
+
+    /** Returns the branches listed in TEXT, a refs advertisement. */
+    static Map<String, String> parseRefs(String text) {
+        HashMap<String, String> result = new HashMap<>();
+        for (String line : text.split("\n")) {
+            int space = line.indexOf(' ');
+            if (space > 0) {
+                result.put(line.substring(space + 1),
+                        line.substring(0, space));
+            }
+        }
+        return result;
+    }
+
+    /** Returns TEXT compressed with gzip. */
+    static byte[] gzip(String text) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw Utils.error("Internal error compressing request.");
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Returns the URI of PATH relative to the remote's URL. */
+    private URI uri(String path) {
+        return URI.create(_url + "/" + path);
+    }
+
+    /** Returns NAME encoded for use in a query string. */
+    private static String encode(String name) {
+        return URLEncoder.encode(name, StandardCharsets.UTF_8);
+    }
+
+    /** URL of the remote repository, without a trailing slash. */
+    private final String _url;
+
+    /** The client used for all requests, which keeps its connections
+     *  to the server alive between them. */
+    private final HttpClient _client;
+
+    /** The remote's branches, once known. */
+    private Map<String, String> _refs;
+}
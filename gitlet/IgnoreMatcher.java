@@ -0,0 +1,255 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/** The patterns of a .gitletignore file, naming the untracked files
+ *  that status, add . and the checks for untracked files in the way
+ *  pass over. The patterns of a sparse checkout, naming the files to
+ *  have in the working directory, are written and matched the same way.
+ *
+ *  Each line of the file is a pattern, except for blank lines and lines
+ *  starting with "#". In a pattern, "*" matches any run of characters,
+ *  "?" any one character, "[...]" any one of the characters listed (or
+ *  not listed, after "[!"), and "\" makes the next character literal. A
+ *  leading "/" is dropped, since Gitlet tracks only the files at the
+ *  top of the working directory. A pattern ending in "/" names
+ *  directories, which Gitlet never tracks, and is skipped. A pattern
+ *  starting with "!" names files to keep even though another pattern
+ *  ignores (or selects) them.
+ *
+ *  The patterns are compiled once, when the file is read, into tables
+ *  that match a name with a few lookups rather than by trying each
+ *  pattern in turn: patterns without wildcards go in a set of names,
+ *  patterns of the form "*SUFFIX" in a set of suffixes, and the rest in
+ *  a trie on the literal text before their first wildcard. A trie node
+ *  ending a pattern of the form "PREFIX*" matches every name that
+ *  reaches it, and any other patterns ending there are joined into a
+ *  single regular expression for the remainder of the name.
+ *  @author Israel Rodriguez
+ */
+class IgnoreMatcher {
+
+    /** Name of the file of patterns in the working directory. */
+    static final String FILE = ".gitletignore";
+
+    /** Returns the matcher for the patterns in the file F, which ignores
+     *  nothing if F does not exist. */
+    static IgnoreMatcher load(File f) {
+        if (!f.isFile()) {
+            return new IgnoreMatcher(List.of());
+        }
+        return new IgnoreMatcher(List.of(
+                Utils.readContentsAsString(f).split("\r?\n")));
+    }
+
+    /** A matcher for the patterns LINES, as they appear in a
+     *  .gitletignore file. */
+    IgnoreMatcher(List<String> lines) {
+        List<String> ignore = new ArrayList<>();
+        List<String> keep = new ArrayList<>();
+        for (String line : lines) {
+            String pattern = line.strip();
+            if (pattern.isEmpty() || pattern.startsWith("#")) {
+                continue;
+            }
+            List<String> into = ignore;
+            if (pattern.startsWith("!")) {
+                into = keep;
+                pattern = pattern.substring(1);
+            }
+            if (pattern.startsWith("/")) {
+                pattern = pattern.substring(1);
+            }
+            if (!pattern.isEmpty() && !pattern.endsWith("/")) {
+                into.add(pattern);
+            }
+        }
+        _ignore = new Rules(ignore);
+        _keep = new Rules(keep);
+    }
+
+    /** Returns true iff nothing is ignored. */
+    boolean isEmpty() {
+        return _ignore.isEmpty();
+    }
+
+    /** Returns true iff the file NAME is ignored. */
+    boolean ignored(String name) {
+        return matches(name);
+    }
+
+    /** Returns true iff the file NAME matches a pattern and no pattern
+     *  starting with "!". */
+    boolean matches(String name) {
+        return _ignore.matches(name) && !_keep.matches(name);
+    }
+
+    /** A compiled set of patterns. */
+    private static class Rules {
+
+        /** The rules matching PATTERNS. */
+        Rules(List<String> patterns) {
+            Set<Integer> lengths = new TreeSet<>();
+            HashMap<Node, List<String>> globs = new HashMap<>();
+            for (String pattern : patterns) {
+                int wild = firstWildcard(pattern, 0);
+                if (wild < 0) {
+                    _names.add(pattern);
+                } else if (wild == 0 && pattern.charAt(0) == '*'
+                           && firstWildcard(pattern, 1) < 0) {
+                    _suffixes.add(pattern.substring(1));
+                    lengths.add(pattern.length() - 1);
+                } else {
+                    Node node = _root;
+                    for (int i = 0; i < wild; i += 1) {
+                        node = node._children.computeIfAbsent(
+                                pattern.charAt(i), c -> new Node());
+                    }
+                    String rest = pattern.substring(wild);
+                    if (rest.equals("*")) {
+                        node._all = true;
+                    } else {
+                        globs.computeIfAbsent(node, n -> new ArrayList<>())
+                                .add(toRegex(rest));
+                    }
+                }
+            }
+            _suffixLengths = lengths.stream().mapToInt(i -> i).toArray();
+            for (Node node : globs.keySet()) {
+                node._rest = Pattern.compile(
+                        String.join("|", globs.get(node)));
+            }
+            _empty = patterns.isEmpty();
+        }
+
+        /** Returns true iff there are no patterns. */
+        boolean isEmpty() {
+            return _empty;
+        }
+
+        /** Returns true iff some pattern matches NAME. */
+        boolean matches(String name) {
+            if (_empty) {
+                return false;
+            }
+            if (_names.contains(name)) {
+                return true;
+            }
+            int n = name.length();
+            for (int length : _suffixLengths) {
+                if (length <= n
+                        && _suffixes.contains(name.substring(n - length))) {
+                    return true;
+                }
+            }
+            Node node = _root;
+            for (int i = 0; node != null; i += 1) {
+                if (node._all) {
+                    return true;
+                }
+                if (node._rest != null
+                        && node._rest.matcher(name).region(i, n).matches()) {
+                    return true;
+                }
+                if (i == n) {
+                    break;
+                }
+                node = node._children.get(name.charAt(i));
+            }
+            return false;
+        }
+
+        /** Names matched exactly. */
+        private final Set<String> _names = new HashSet<>();
+
+        /** Literal suffixes of the patterns "*SUFFIX". */
+        private final Set<String> _suffixes = new HashSet<>();
+
+        /** The distinct lengths of _suffixes, ascending. */
+        private final int[] _suffixLengths;
+
+        /** Root of the trie of literal prefixes. */
+        private final Node _root = new Node();
+
+        /** True iff there are no patterns. */
+        private final boolean _empty;
+    }
+
+    /** A node of the trie of the literal prefixes of patterns. */
+    private static class Node {
+
+        /** Nodes for the prefixes one character longer. */
+        private final HashMap<Character, Node> _children = new HashMap<>();
+
+        /** True iff every name with this prefix matches. */
+        private boolean _all;
+
+        /** The patterns with this prefix, as one regular expression for
+         *  the rest of a name, or null if there are none. */
+        private Pattern _rest;
+    }
+
+    /** Returns the index of the first wildcard in PATTERN at or after
+     *  START, or -1 if there is none. An escaped character counts as
+     *  one, so that the literal prefix in the trie is all plain text. */
+    private static int firstWildcard(String pattern, int start) {
+        for (int i = start; i < pattern.length(); i += 1) {
+            if ("*?[\\".indexOf(pattern.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** Returns the regular expression matching what the glob GLOB
+     *  matches. */
+    private static String toRegex(String glob) {
+        StringBuilder result = new StringBuilder("(?:");
+        for (int i = 0; i < glob.length(); i += 1) {
+            char c = glob.charAt(i);
+            if (c == '*') {
+                result.append(".*");
+            } else if (c == '?') {
+                result.append('.');
+            } else if (c == '\\' && i + 1 < glob.length()) {
+                i += 1;
+                result.append(Pattern.quote(String.valueOf(glob.charAt(i))));
+            } else if (c == '[' && glob.indexOf(']', i + 2) > 0) {
+                int end = glob.indexOf(']', i + 2);
+                String members = glob.substring(i + 1, end);
+                result.append('[');
+                if (members.startsWith("!")) {
+                    result.append('^');
+                    members = members.substring(1);
+                }
+                for (char m : members.toCharArray()) {
+                    if (m == '-') {
+                        result.append('-');
+                    } else if (Character.isLetterOrDigit(m)) {
+                        result.append(m);
+                    } else {
+                        result.append('\\').append(m);
+                    }
+                }
+                result.append(']');
+                i = end;
+            } else {
+                result.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return result.append(')').toString();
+    }
+
+    /** Patterns of the files to ignore. */
+    private final Rules _ignore;
+
+    /** Patterns of the files to keep all the same. */
+    private final Rules _keep;
+}
@@ -0,0 +1,439 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/** The write-ahead journal of a repository's state files and branches.
+ *
+ *  A change to the state of a repository is a batch: the new contents
+ *  of some state files and the moves of some branches. A batch is
+ *  appended to the file JOURNAL, one checksummed record per change and
+ *  a COMMIT record to end it, before any of it is applied, so that a
+ *  batch interrupted part way through being applied is applied in full
+ *  when the repository is next opened, and a batch whose records never
+ *  fully reached the journal is not applied at all. Once the applied
+ *  files are on disk, the journal is emptied (a checkpoint).
+ *
+ *  When the journal is forced to disk depends on the Fsync policy:
+ *  never (NONE), which survives the process dying but not the machine;
+ *  after every batch (OP); or once for each group of up to GROUP_SIZE
+ *  batches (BATCH), whose application is deferred until then, so that
+ *  a command or import making many changes pays for a single sync.
+ *
+ *  A record is its length, the CRC-32 of its body, and the body: a
+ *  type byte, then for FILE the file name and contents, for REF the
+ *  branch name and its expected and new IDs (empty for none), and for
+ *  COMMIT nothing.
+ *  @author Israel Rodriguez
+ */
+class Journal {
+
+    /** When the journal is forced to disk. */
+    enum Fsync {
+        /** Never: batches survive the process dying, not the machine. */
+        NONE,
+        /** Once for each group of batches. */
+        BATCH,
+        /** After every batch. */
+        OP;
+
+        /** Returns the policy named NAME, in any case, or DEFAULTVALUE if
+         *  NAME is null. */
+        static Fsync parse(String name, Fsync defaultValue) {
+            if (name == null) {
+                return defaultValue;
+            }
+            try {
+                return valueOf(name.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw Utils.error("Unknown fsync policy: %s", name);
+            }
+        }
+    }
+
+    /** Name of the journal file in the .gitlet directory. */
+    static final String JOURNAL = "journal";
+
+    /** Setting selecting the Fsync policy. */
+    static final String FSYNC_KEY = "journal.fsync";
+
+    /** Largest number of batches committed under the BATCH policy before
+     *  the journal is forced and they are applied. */
+    static final int GROUP_SIZE = 64;
+
+    /** Record type of the new contents of a state file. */
+    static final byte FILE = 'F';
+
+    /** Record type of a branch move. */
+    static final byte REF = 'R';
+
+    /** Record type ending a batch. */
+    static final byte COMMIT = 'C';
+
+    /** The journal of the repository whose .gitlet directory is DIR and
+     *  whose branches are REFS, synced according to POLICY. */
+    Journal(File dir, Refs refs, Fsync policy) {
+        _dir = dir;
+        _refs = refs;
+        _policy = policy;
+        _file = Utils.join(dir, JOURNAL);
+    }
+
+    /** Returns a new, empty batch. */
+    Batch begin() {
+        return new Batch();
+    }
+
+    /** A set of changes applied all together or not at all. */
+    class Batch {
+
+        /** Sets the state file NAME to CONTENTS. */
+        void write(String name, byte[] contents) {
+            _changes.add(new Change(FILE, name, contents, null, null));
+        }
+
+        /** Moves the branch NAME from EXPECTED to NEWID, either of
+         *  which is null for no branch. */
+        void ref(String name, String expected, String newId) {
+            _changes.add(new Change(REF, name, null, expected, newId));
+        }
+
+        /** Appends this batch to the journal and applies it, now or when
+         *  its group is complete, according to the policy. Returns the
+         *  number of bytes appended. */
+        int commit() {
+            if (_changes.isEmpty()) {
+                return 0;
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            for (Change c : _changes) {
+                c.encode(bytes);
+            }
+            new Change(COMMIT, "", null, null, null).encode(bytes);
+            append(bytes.toByteArray());
+            _pending.add(this);
+            if (_policy == Fsync.OP) {
+                force();
+            }
+            if (_policy != Fsync.BATCH || _pending.size() >= GROUP_SIZE) {
+                flush();
+            }
+            return bytes.size();
+        }
+
+        /** Changes in this batch, in order. */
+        private final List<Change> _changes = new ArrayList<>();
+    }
+
+    /** Forces the journal to disk if the policy asks for it and applies
+     *  all batches committed so far. */
+    void flush() {
+        if (_pending.isEmpty()) {
+            return;
+        }
+        if (_policy == Fsync.BATCH) {
+            force();
+        }
+        List<Batch> pending = new ArrayList<>(_pending);
+        _pending.clear();
+        for (Batch b : pending) {
+            apply(b._changes, false);
+        }
+    }
+
+    /** Applies all batches, then checkpoints: once the files they
+     *  changed are on disk, empties the journal. If a batch cannot be
+     *  applied, the journal is kept for recovery. */
+    void close() {
+        flush();
+        checkpoint();
+        if (_channel != null) {
+            try {
+                _channel.close();
+            } catch (IOException e) {
+                /* Nothing is lost: the journal has been emptied. */
+            }
+            _channel = null;
+        }
+    }
+
+    /** Applies the complete batches left in the journal by a process
+     *  that stopped before checkpointing, ignores any incomplete batch
+     *  at its end, and checkpoints. The caller holds the
+     *  RepositoryLock. */
+    void recover() {
+        if (!_file.isFile() || _file.length() == 0) {
+            return;
+        }
+        Trace.read(_file, _file.length());
+        List<Change> batch = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(_file)))) {
+            while (true) {
+                Change c = Change.decode(in, _file.length());
+                if (c == null) {
+                    break;
+                } else if (c._type == COMMIT) {
+                    apply(batch, true);
+                    batch.clear();
+                } else {
+                    batch.add(c);
+                }
+            }
+        } catch (IOException e) {
+            throw Utils.error("Could not read journal: %s", e.getMessage());
+        }
+        checkpoint();
+    }
+
+    /** Applies CHANGES, a committed batch. Branches are moved first, and
+     *  only from the values the batch expects. When REPLAYING a batch
+     *  that may already have been applied, a branch already at its new
+     *  value is left alone, and if some branch is at neither value,
+     *  another process has moved it since, so the batch is dropped. */
+    private void apply(List<Change> changes, boolean replaying) {
+        if (replaying) {
+            for (Change c : changes) {
+                if (c._type == REF) {
+                    String current = _refs.get(c._name);
+                    if (!Objects.equals(current, c._expected)
+                            && !Objects.equals(current, c._newId)) {
+                        return;
+                    }
+                }
+            }
+        }
+        for (Change c : changes) {
+            if (c._type == REF) {
+                if (!replaying
+                        || !Objects.equals(_refs.get(c._name), c._newId)) {
+                    _refs.update(c._name, c._expected, c._newId);
+                }
+                _touched.add(_refs.file(c._name));
+                if (c._newId == null) {
+                    _touched.add(_refs.packedFile());
+                }
+            }
+        }
+        for (Change c : changes) {
+            if (c._type == FILE) {
+                File f = Utils.join(_dir, c._name);
+                Utils.atomicWriteContents(f, c._contents);
+                _touched.add(f);
+            }
+        }
+    }
+
+    /** Writes RECORDS to the end of the journal. */
+    private void append(byte[] records) {
+        try {
+            if (_channel == null) {
+                _channel = FileChannel.open(_file.toPath(),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.APPEND);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(records);
+            while (buffer.hasRemaining()) {
+                _channel.write(buffer);
+            }
+            Trace.write(_file, records.length);
+        } catch (IOException e) {
+            throw Utils.error("Could not write journal: %s", e.getMessage());
+        }
+    }
+
+    /** Forces the journal to disk. */
+    private void force() {
+        try {
+            if (_channel != null) {
+                _channel.force(false);
+                Trace.count("fsyncs");
+            }
+        } catch (IOException e) {
+            throw Utils.error("Could not sync journal: %s", e.getMessage());
+        }
+    }
+
+    /** Forces the files changed by applied batches to disk, unless the
+     *  policy is NONE, and then empties the journal. */
+    private void checkpoint() {
+        if (_policy != Fsync.NONE) {
+            Set<File> dirs = new LinkedHashSet<>();
+            for (File f : _touched) {
+                sync(f);
+                dirs.add(f.getParentFile());
+            }
+            for (File d : dirs) {
+                sync(d);
+            }
+        }
+        _touched.clear();
+        try (FileChannel channel = FileChannel.open(_file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.truncate(0);
+            if (_policy != Fsync.NONE) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            throw Utils.error("Could not checkpoint journal: %s",
+                    e.getMessage());
+        }
+    }
+
+    /** Forces the file or directory F to disk, if it exists and the
+     *  platform allows. */
+    private static void sync(File f) {
+        if (!f.exists()) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(f.toPath(),
+                StandardOpenOption.READ)) {
+            channel.force(true);
+            Trace.count("fsyncs");
+        } catch (IOException e) {
+            /* Some platforms cannot sync directories. */
+        }
+    }
+
+    /** One record of the journal. */
+    private static class Change {
+
+        /** A record of TYPE for the file or branch NAME, with new file
+         *  CONTENTS or the EXPECTED and NEWID of a branch. */
+        Change(byte type, String name, byte[] contents, String expected,
+               String newId) {
+            _type = type;
+            _name = name;
+            _contents = contents;
+            _expected = expected;
+            _newId = newId;
+        }
+
+        /** Appends this record to OUT. */
+        void encode(ByteArrayOutputStream out) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            try (DataOutputStream data = new DataOutputStream(body)) {
+                data.writeByte(_type);
+                if (_type == FILE) {
+                    data.writeUTF(_name);
+                    data.writeInt(_contents.length);
+                    data.write(_contents);
+                } else if (_type == REF) {
+                    data.writeUTF(_name);
+                    data.writeUTF(_expected == null ? "" : _expected);
+                    data.writeUTF(_newId == null ? "" : _newId);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            byte[] bytes = body.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            DataOutputStream data = new DataOutputStream(out);
+            try {
+                data.writeInt(bytes.length);
+                data.writeInt((int) crc.getValue());
+                data.write(bytes);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /** Reads the next record from IN, a journal of SIZE bytes.
+         *  Returns null at the end of the journal or at a record that is
+         *  torn or fails its checksum, which only the last, interrupted
+         *  append can leave. */
+        static Change decode(DataInputStream in, long size)
+                throws IOException {
+            byte[] bytes;
+            int checksum;
+            try {
+                int length = in.readInt();
+                checksum = in.readInt();
+                if (length <= 0 || length > size) {
+                    return null;
+                }
+                bytes = new byte[length];
+                in.readFully(bytes);
+            } catch (EOFException e) {
+                return null;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            if ((int) crc.getValue() != checksum) {
+                return null;
+            }
+            DataInputStream data =
+                    new DataInputStream(new ByteArrayInputStream(bytes));
+            byte type = data.readByte();
+            if (type == FILE) {
+                String name = data.readUTF();
+                byte[] contents = new byte[data.readInt()];
+                data.readFully(contents);
+                return new Change(type, name, contents, null, null);
+            } else if (type == REF) {
+                String name = data.readUTF();
+                String expected = data.readUTF();
+                String newId = data.readUTF();
+                return new Change(type, name, null,
+                        expected.isEmpty() ? null : expected,
+                        newId.isEmpty() ? null : newId);
+            } else if (type == COMMIT) {
+                return new Change(type, "", null, null, null);
+            }
+            return null;
+        }
+
+        /** Record type. */
+        private final byte _type;
+
+        /** Name of the state file or branch. */
+        private final String _name;
+
+        /** New contents of a state file. */
+        private final byte[] _contents;
+
+        /** ID a branch is expected to hold, or null for none. */
+        private final String _expected;
+
+        /** ID a branch is moved to, or null to delete it. */
+        private final String _newId;
+    }
+
+    /** The .gitlet directory. */
+    private final File _dir;
+
+    /** The branches of the repository. */
+    private final Refs _refs;
+
+    /** When the journal is forced to disk. */
+    private final Fsync _policy;
+
+    /** The journal file. */
+    private final File _file;
+
+    /** Open channel appending to the journal, once opened. */
+    private FileChannel _channel;
+
+    /** Batches appended to the journal but not yet applied. */
+    private final List<Batch> _pending = new ArrayList<>();
+
+    /** Files changed by applied batches since the last checkpoint. */
+    private final Set<File> _touched = new LinkedHashSet<>();
+}
@@ -0,0 +1,87 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/** Measures the cost of each Journal.Fsync policy. Usage:
+ *      java gitlet.JournalBenchmark [COMMITS]
+ *  For each policy, makes COMMITS commits (default 500) in a new
+ *  repository in two ways: as separate commands, each of which opens
+ *  and closes the repository as Main does, and as one batch, in which a
+ *  single open repository makes them all, as an import would. Reports
+ *  one line per policy and way.
+ *  @author Israel Rodriguez
+ */
+public class JournalBenchmark {
+
+    /** Runs the benchmark with ARGS as described above. */
+    public static void main(String... args) throws IOException {
+        int commits = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        File root = Files.createTempDirectory("gitlet-journal").toFile();
+        try {
+            for (Journal.Fsync policy : Journal.Fsync.values()) {
+                String name = policy.name().toLowerCase();
+                File dir = new File(root, name + "-commands");
+                init(dir, name);
+                long start = System.nanoTime();
+                for (int i = 0; i < commits; i += 1) {
+                    int n = i;
+                    write(dir, n);
+                    TransportBenchmark.run(dir, g -> g.add("f.txt"));
+                    TransportBenchmark.run(dir,
+                        g -> g.commit("Commit " + n, null));
+                }
+                report(name, "commands", commits, start);
+
+                dir = new File(root, name + "-batch");
+                init(dir, name);
+                start = System.nanoTime();
+                Gitlet g = new Gitlet(dir.getPath());
+                for (int i = 0; i < commits; i += 1) {
+                    write(dir, i);
+                    g.add("f.txt");
+                    g.commit("Commit " + i, null);
+                }
+                g.close();
+                report(name, "batch", commits, start);
+            }
+        } finally {
+            delete(root);
+        }
+    }
+
+    /** Creates a repository in DIR whose fsync policy is POLICY. */
+    private static void init(File dir, String policy) {
+        dir.mkdirs();
+        TransportBenchmark.run(dir, Gitlet::init);
+        TransportBenchmark.run(dir,
+            g -> g.config(Journal.FSYNC_KEY, policy));
+    }
+
+    /** Writes version I of the one file changed in DIR. */
+    private static void write(File dir, int i) {
+        Utils.writeContents(new File(dir, "f.txt"), "version " + i + "\n");
+    }
+
+    /** Reports how long COUNT commits made as WAY under POLICY took
+     *  since START. */
+    private static void report(String policy, String way, int count,
+                               long start) {
+        double millis = (System.nanoTime() - start) / 1e6;
+        System.out.printf("fsync=%s %s commits=%d ms=%.1f commits/s=%.0f%n",
+                policy, way, count, millis,
+                count * 1000.0 / Math.max(millis, 1e-3));
+    }
+
+    /** Deletes F and everything under it. */
+    private static void delete(File f) {
+        File[] children = f.listFiles();
+        if (children != null) {
+            for (File c : children) {
+                delete(c);
+            }
+        }
+        f.delete();
+    }
+}
@@ -0,0 +1,94 @@
+package gitlet;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static gitlet.UnitTest.assertEquals;
+import static gitlet.UnitTest.assertTrue;
+
+/** Tests of Journal recovery after a process dies part way through.
+ *  @author Israel Rodriguez
+ */
+class JournalTest {
+
+    /** A commit ID. */
+    private static final String ONE = "1".repeat(40);
+
+    /** Another commit ID. */
+    private static final String TWO = "2".repeat(40);
+
+    /** A batch that reached the journal in full but was never applied
+     *  is applied when the journal is next opened. */
+    static void testCompleteBatchIsReplayed() {
+        File dir = UnitTest.tempDirectory();
+        try {
+            Journal crashed = new Journal(dir, new Refs(dir),
+                    Journal.Fsync.BATCH);
+            commit(crashed, "one", null, ONE);
+            assertTrue("batch applied before the group completed",
+                    !Utils.join(dir, "state").exists());
+
+            recover(dir);
+            assertEquals("state file", "one", state(dir));
+            assertEquals("branch", ONE, new Refs(dir).get("master"));
+            assertEquals("journal length after checkpoint", 0L,
+                    Utils.join(dir, Journal.JOURNAL).length());
+        } finally {
+            UnitTest.delete(dir);
+        }
+    }
+
+    /** A batch whose last record fails its checksum, or that was cut
+     *  short, is discarded, and the complete batch before it is still
+     *  applied. */
+    static void testTornBatchIsDiscarded() {
+        File dir = UnitTest.tempDirectory();
+        try {
+            Journal crashed = new Journal(dir, new Refs(dir),
+                    Journal.Fsync.BATCH);
+            commit(crashed, "one", null, ONE);
+            File journal = Utils.join(dir, Journal.JOURNAL);
+            commit(crashed, "two", ONE, TWO);
+            byte[] bytes = Utils.readContents(journal);
+            bytes[bytes.length - 1] ^= 1;
+            Utils.writeContents(journal, bytes);
+
+            recover(dir);
+            assertEquals("state file", "one", state(dir));
+            assertEquals("branch", ONE, new Refs(dir).get("master"));
+
+            commit(new Journal(dir, new Refs(dir), Journal.Fsync.BATCH),
+                    "two", ONE, TWO);
+            bytes = Utils.readContents(journal);
+            Utils.writeContents(journal,
+                    Arrays.copyOf(bytes, bytes.length - 3));
+            recover(dir);
+            assertEquals("state file after a batch cut short", "one",
+                    state(dir));
+            assertEquals("branch after a batch cut short", ONE,
+                    new Refs(dir).get("master"));
+        } finally {
+            UnitTest.delete(dir);
+        }
+    }
+
+    /** Appends to JOURNAL, without applying it, a batch setting the state
+     *  file to CONTENTS and moving master from EXPECTED to NEWID. */
+    private static void commit(Journal journal, String contents,
+                               String expected, String newId) {
+        Journal.Batch batch = journal.begin();
+        batch.write("state", contents.getBytes());
+        batch.ref("master", expected, newId);
+        batch.commit();
+    }
+
+    /** Opens the journal in DIR, as a process starting up does. */
+    private static void recover(File dir) {
+        new Journal(dir, new Refs(dir), Journal.Fsync.BATCH).recover();
+    }
+
+    /** Returns the contents of the state file in DIR. */
+    private static String state(File dir) {
+        return Utils.readContentsAsString(Utils.join(dir, "state"));
+    }
+}
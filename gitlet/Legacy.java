@@ -0,0 +1,479 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamField;
+import java.io.Serializable;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/** The migration of repositories that older versions of Gitlet wrote
+ *  into the form kept now.
+ *
+ *  Such a repository keeps all of its commits, with the contents of
+ *  their files, in the one file COMMITS, its branches in BRANCHES and
+ *  its staging area in STAGE, all written with Java serialization under
+ *  the names of classes such as gitlet.Commit that now have fields of
+ *  other types, so they cannot be read into them. Each class named in
+ *  LEGACY_CLASSES is instead read into a nested class here that keeps
+ *  the fields it had then. The IDs of commits and blobs were made
+ *  differently, too, so every commit is made again, parents first,
+ *  with the IDs made now, and the branches are pointed at the new
+ *  commits.
+ *
+ *  A repository is migrated once, the first time it is opened, under
+ *  its RepositoryLock. COMMITS is deleted last, so a migration that
+ *  stops part way through is begun again, and each step can be done
+ *  twice.
+ *  @author Israel Rodriguez
+ */
+class Legacy {
+
+    /** Name, in the .gitlet directory, of the file of the commits of a
+     *  repository not yet migrated, whose presence marks it as one. */
+    static final String COMMITS = "commits";
+
+    /** Name of the file of its branches. */
+    static final String BRANCHES = "branches";
+
+    /** Name of the file of its staging area. */
+    static final String STAGE = "stage";
+
+    /** Migrates the repository whose .gitlet directory is DIR, whose
+     *  objects are OBJECTS and branches REFS, if an older Gitlet wrote
+     *  it, taking its lock if this process does not hold it. */
+    static void migrate(File dir, ObjectStore objects, Refs refs) {
+        if (!Utils.join(dir, COMMITS).isFile()) {
+            return;
+        }
+        if (RepositoryLock.isHeld(dir)) {
+            new Legacy(dir, objects, refs).migrate();
+            return;
+        }
+        try (RepositoryLock lock = RepositoryLock.acquire(dir)) {
+            if (Utils.join(dir, COMMITS).isFile()) {
+                new Legacy(dir, objects, refs).migrate();
+            }
+        }
+    }
+
+    /** Returns the object read from FILE, which an older Gitlet wrote,
+     *  cast to EXPECTEDCLASS. Throws IllegalArgumentException in case
+     *  of problems, as Utils.readObject does. */
+    static <T extends Serializable> T readObject(File file,
+                                                 Class<T> expectedClass) {
+        try (ObjectInputStream in = new Input(new FileInputStream(file))) {
+            T result = expectedClass.cast(in.readObject());
+            Trace.read(file, file.length());
+            return result;
+        } catch (IOException | ClassCastException
+                 | ClassNotFoundException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** A migration of the repository whose .gitlet directory is DIR
+     *  into OBJECTS and REFS. */
+    private Legacy(File dir, ObjectStore objects, Refs refs) {
+        _dir = dir;
+        _objects = objects;
+        _refs = refs;
+    }
+
+    /** Migrates the repository: its commits, then its branches and its
+     *  staging area, and then the rest of its state. */
+    @SuppressWarnings("unchecked")
+    private void migrate() {
+        ObjectId.use(ObjectId.Algorithm.SHA1);
+        File commitsFile = Utils.join(_dir, COMMITS);
+        _commits = read(commitsFile, HashMap.class);
+        for (String id : _commits.keySet()) {
+            migrateCommit(id);
+        }
+
+        File branchesFile = Utils.join(_dir, BRANCHES);
+        if (branchesFile.isFile()) {
+            HashMap<String, Branch> branches =
+                    read(branchesFile, HashMap.class);
+            for (Branch b : branches.values()) {
+                _refs.update(b.getName(), _refs.get(b.getName()),
+                        migratedId(b.getID()));
+            }
+            branchesFile.delete();
+        }
+
+        File stageFile = Utils.join(_dir, STAGE);
+        byte[] stage = stageFile.isFile() ? Utils.readContents(stageFile)
+                : null;
+        if (stage == null || isSerialized(stage)) {
+            gitlet.StagingArea result = new gitlet.StagingArea();
+            if (stage != null) {
+                StagingArea old = read(stageFile, StagingArea.class);
+                migrateFiles(old._stagedForAdd, result.forAddition());
+                migrateFiles(old._stagedForRem, result.forRemoval());
+            }
+            for (gitlet.Blob b : result.forAddition().values()) {
+                b.store(_objects);
+            }
+            Utils.atomicWriteContents(stageFile, result.toBytes());
+        }
+
+        writeIfMissing("remotes", new HashMap<String, Remote>());
+        writeIfMissing("gitletExists", true);
+        writeIfMissing("initHappened", true);
+        for (String name : OBSOLETE) {
+            Utils.join(_dir, name).delete();
+        }
+        commitsFile.delete();
+    }
+
+    /** Returns the object of EXPECTEDCLASS an older Gitlet wrote to
+     *  FILE of this repository, failing with a message saying so if it
+     *  cannot be read. */
+    private <T extends Serializable> T read(File file,
+                                           Class<T> expectedClass) {
+        try {
+            return readObject(file, expectedClass);
+        } catch (IllegalArgumentException e) {
+            throw Utils.error("Cannot read %s, written by an older version "
+                    + "of Gitlet: %s", file.getName(), e.getMessage());
+        }
+    }
+
+    /** Makes again the commit whose old ID is ID, after the commits it
+     *  descends from, unless that has been done. */
+    private void migrateCommit(String id) {
+        ArrayDeque<String> pending = new ArrayDeque<>();
+        pending.push(id);
+        while (!pending.isEmpty()) {
+            String next = pending.peek();
+            if (_migrated.containsKey(next)) {
+                pending.pop();
+                continue;
+            }
+            Commit old = _commits.get(next);
+            if (old == null) {
+                throw Utils.error("Corrupt repository: missing commit %s.",
+                        next);
+            }
+            boolean ready = true;
+            for (String parent : new String[] {old._parent,
+                                               old._secondParent}) {
+                if (parent != null && !parent.isEmpty()
+                        && !_migrated.containsKey(parent)) {
+                    pending.push(parent);
+                    ready = false;
+                }
+            }
+            if (ready) {
+                pending.pop();
+                gitlet.Commit made = remake(old);
+                _objects.writeCommit(made);
+                _migrated.put(next, made.getSHA());
+            }
+        }
+    }
+
+    /** Returns the commit made now for OLD, whose parents have been
+     *  made again. */
+    private gitlet.Commit remake(Commit old) {
+        HashMap<String, gitlet.Blob> files = new HashMap<>();
+        HashMap<String, gitlet.Blob> parentFiles = new HashMap<>();
+        migrateFiles(old._files, files);
+        migrateFiles(old._parentFiles, parentFiles);
+        String parent = migratedId(old._parent);
+        long time = time(old._timestamp);
+        if (old._secondParent != null) {
+            return new gitlet.MergeCommit(old._message, files, parentFiles,
+                    parent, migratedId(old._secondParent), old._timestamp,
+                    time);
+        }
+        return new gitlet.Commit(old._message, files, parentFiles, parent,
+                old._timestamp, time);
+    }
+
+    /** Puts into RESULT a blob made now for each of FILES, which may be
+     *  null, under the same name. */
+    private static void migrateFiles(Map<String, Blob> files,
+                                     Map<String, gitlet.Blob> result) {
+        if (files == null) {
+            return;
+        }
+        for (Map.Entry<String, Blob> e : files.entrySet()) {
+            byte[] contents = e.getValue()._contents;
+            result.put(e.getKey(), new gitlet.Blob(e.getKey(),
+                    contents == null ? new byte[0] : contents));
+        }
+    }
+
+    /** Returns the ID made now of the commit whose old ID is ID, or ""
+     *  if ID is null or empty, as the parent of the initial commit is. */
+    private String migratedId(String id) {
+        if (id == null || id.isEmpty()) {
+            return "";
+        }
+        String result = _migrated.get(id);
+        if (result == null) {
+            throw Utils.error("Corrupt repository: missing commit %s.", id);
+        }
+        return result;
+    }
+
+    /** Returns the time TIMESTAMP, written as commits were, stands for,
+     *  in milliseconds since the epoch, or 0 if it cannot be read. */
+    private static long time(String timestamp) {
+        try {
+            return new SimpleDateFormat("EEE MMM d kk:mm:ss yyyy Z")
+                    .parse(timestamp).getTime();
+        } catch (ParseException | NullPointerException e) {
+            return 0;
+        }
+    }
+
+    /** Writes VALUE to the file NAME unless the repository has it. */
+    private void writeIfMissing(String name, Serializable value) {
+        File file = Utils.join(_dir, name);
+        if (!file.isFile()) {
+            Utils.atomicWriteContents(file, Utils.serialize(value));
+        }
+    }
+
+    /** Returns true iff BYTES were written with Java serialization. */
+    private static boolean isSerialized(byte[] bytes) {
+        return bytes.length >= 2 && (bytes[0] & 0xff) == 0xac
+                && (bytes[1] & 0xff) == 0xed;
+    }
+
+    /** A commit as an older Gitlet kept it. */
+    static class Commit implements Serializable {
+
+        /** As the class was. */
+        private static final long serialVersionUID = 0;
+
+        /** Log message of this commit. */
+        private String _message;
+
+        /** Mapping between the files in this commit and their contents. */
+        private HashMap<String, Blob> _files;
+
+        /** Mapping between the files in this commit's parent
+         * and their contents. */
+        private HashMap<String, Blob> _parentFiles;
+
+        /** This commit's ancestors. */
+        private Set<String> _ancestors;
+
+        /** Denotes the time at which this commit was made. */
+        private String _timestamp;
+
+        /** SHA-1 identifier for this commit's parent. */
+        private String _parent;
+
+        /** SHA-1 ID of this commit's merge parent. */
+        private String _secondParent;
+
+        /** SHA-1 identifier for this commit. */
+        private String _sha;
+    }
+
+    /** A commit as Gitlet kept it before commits recorded their
+     *  ancestors and merges, which is read as a Commit. */
+    static class EarlyCommit implements Serializable {
+
+        /** As the class was. */
+        private static final long serialVersionUID = 0;
+
+        /** Returns this commit as a Commit, with no merge parent. */
+        private Object readResolve() {
+            Commit result = new Commit();
+            result._message = _message;
+            result._files = _files;
+            result._parentFiles = _parentFiles;
+            result._timestamp = _timestamp;
+            result._parent = _parent;
+            result._sha = _sha;
+            return result;
+        }
+
+        /** Log message of this commit. */
+        private String _message;
+
+        /** Mapping between the files in this commit and their contents. */
+        private HashMap<String, Blob> _files;
+
+        /** Mapping between the files in this commit's parent
+         * and their contents. */
+        private HashMap<String, Blob> _parentFiles;
+
+        /** Denotes the time at which this commit was made. */
+        private String _timestamp;
+
+        /** SHA-1 identifier for this commit's parent. */
+        private String _parent;
+
+        /** SHA-1 identifier for this commit. */
+        private String _sha;
+    }
+
+    /** A merge commit as an older Gitlet kept it. */
+    static class MergeCommit extends Commit {
+
+        /** As the class was. */
+        private static final long serialVersionUID = 0;
+    }
+
+    /** A blob as an older Gitlet kept it, contents and all. */
+    static class Blob implements Serializable {
+
+        /** As the class was. */
+        private static final long serialVersionUID = 0;
+
+        /** The contents of this blob represented as a string. */
+        private String _bytes;
+
+        /** The contents of this blob as a byte array. */
+        private byte[] _contents;
+
+        /** The SHA-1 ID of this blob. */
+        private String _sha;
+
+        /** The location of this blob. */
+        private File _location;
+
+        /** Name of this blob. */
+        private String _fileName;
+    }
+
+    /** A staging area as an older Gitlet kept it. */
+    static class StagingArea implements Serializable {
+
+        /** As the class was. */
+        private static final long serialVersionUID = 0;
+
+        /** Files staged for addition. */
+        private HashMap<String, Blob> _stagedForAdd;
+
+        /** Files staged for removal. */
+        private HashMap<String, Blob> _stagedForRem;
+
+        /** The files staged for addition, sorted. */
+        private TreeMap<String, Blob> _sortedAdd;
+
+        /** The files staged for removal, sorted. */
+        private TreeMap<String, Blob> _sortedRem;
+    }
+
+    /** A branch as an older Gitlet kept it. */
+    static class Branch implements Serializable {
+
+        /** As the class was. */
+        private static final long serialVersionUID = 0;
+
+        /** Returns the name of the branch. */
+        String getName() {
+            return _name;
+        }
+
+        /** Returns the ID of the commit this branch points to. */
+        String getID() {
+            return _id;
+        }
+
+        /** Name of branch. */
+        private String _name;
+
+        /** SHA-1 ID of the commit this branch points to. */
+        private String _id;
+    }
+
+    /** A stream that reads the classes in LEGACY_CLASSES as the nested
+     *  classes that stand in for them. */
+    private static class Input extends ObjectInputStream {
+
+        /** A stream reading from IN. */
+        Input(InputStream in) throws IOException {
+            super(in);
+        }
+
+        /** Returns the descriptor of the next class in the stream or,
+         *  for a class that has changed shape, that of the class here
+         *  whose fields are those written. */
+        @Override
+        protected ObjectStreamClass readClassDescriptor()
+            throws IOException, ClassNotFoundException {
+            ObjectStreamClass desc = super.readClassDescriptor();
+            List<Class<?>> candidates = LEGACY_CLASSES.get(desc.getName());
+            if (candidates == null) {
+                return desc;
+            }
+            for (Class<?> legacy : candidates) {
+                ObjectStreamClass result = ObjectStreamClass.lookup(legacy);
+                if (sameFields(desc, result)) {
+                    return result;
+                }
+            }
+            throw new InvalidClassException(desc.getName(),
+                    "written by an unknown version of Gitlet");
+        }
+
+        /** Returns true iff A and B have fields of the same names and
+         *  types, which are therefore written in the same order. */
+        private static boolean sameFields(ObjectStreamClass a,
+                                          ObjectStreamClass b) {
+            ObjectStreamField[] x = a.getFields();
+            ObjectStreamField[] y = b.getFields();
+            if (x.length != y.length) {
+                return false;
+            }
+            for (int i = 0; i < x.length; i += 1) {
+                if (!x[i].getName().equals(y[i].getName())
+                        || x[i].getTypeCode() != y[i].getTypeCode()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /** Maps the name of each class that has changed shape to the
+     *  classes here keeping the fields it has had. */
+    private static final Map<String, List<Class<?>>> LEGACY_CLASSES =
+            Map.of("gitlet.Branch", List.of(Branch.class),
+                   "gitlet.Commit", List.of(Commit.class,
+                                            EarlyCommit.class),
+                   "gitlet.MergeCommit", List.of(MergeCommit.class),
+                   "gitlet.Blob", List.of(Blob.class),
+                   "gitlet.StagingArea", List.of(StagingArea.class));
+
+    /** Files of an older repository that are no longer kept: what they
+     *  held is now found from the branches. */
+    private static final String[] OBSOLETE = {
+        "HEAD", "headCommit", "commands"
+    };
+
+    /** The .gitlet directory of the repository migrated. */
+    private final File _dir;
+
+    /** The store its commits are migrated into. */
+    private final ObjectStore _objects;
+
+    /** Its branches. */
+    private final Refs _refs;
+
+    /** Its commits as kept before, by their old IDs. */
+    private HashMap<String, Commit> _commits;
+
+    /** Maps the old ID of each commit made again to its ID now. */
+    private final HashMap<String, String> _migrated = new HashMap<>();
+}
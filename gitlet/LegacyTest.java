@@ -0,0 +1,93 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static gitlet.UnitTest.assertEquals;
+import static gitlet.UnitTest.assertTrue;
+import static gitlet.UnitTest.branch;
+import static gitlet.UnitTest.run;
+
+/** Tests of opening repositories that older versions of Gitlet wrote.
+ *  @author Israel Rodriguez
+ */
+class LegacyTest {
+
+    /** A repository an older Gitlet wrote, with commits of files, is
+     *  migrated when first opened: its history is kept, made again with
+     *  the IDs made now, and the files of the old form are gone. */
+    static void testLegacyRepositoryIsMigrated() throws IOException {
+        File root = UnitTest.tempDirectory();
+        try {
+            copy(new File(FIXTURES, "setupCheckout_0"), root);
+            run(root, g -> { });
+            File dir = new File(root, ".gitlet");
+            for (String name : List.of("commits", "branches", "HEAD",
+                                       "headCommit")) {
+                assertTrue(name + " kept", !new File(dir, name).exists());
+            }
+            ObjectStore objects = new RemoteRepository(root).objects();
+            Commit head = objects.readCommit(branch(root, "master"));
+            assertEquals("head", "version 2 of wug.txt", head.getMessage());
+            assertEquals("head files", "This is a wug.\n",
+                    head.getFiles().get("wug.txt").getBytes());
+            Commit parent = objects.readCommit(head.parent());
+            assertEquals("parent", "version 1 of wug.txt",
+                    parent.getMessage());
+            assertEquals("initial commit", new Commit().getSHA(),
+                    parent.parent());
+
+            run(root, g -> g.checkout(parent.getSHA(), "--", "wug.txt"));
+            assertEquals("checked out file", "This is a wug.\n",
+                    Utils.readContentsAsString(new File(root, "wug.txt")));
+            UnitTest.commitFile(root, "g.txt", "new\n", "After");
+            assertEquals("commit after migration", head.getSHA(),
+                    objects.readCommit(branch(root, "master")).parent());
+        } finally {
+            UnitTest.delete(root);
+        }
+    }
+
+    /** A repository an older Gitlet wrote with nothing but its initial
+     *  commit, and files since dropped, such as the list of commands,
+     *  is migrated too. */
+    static void testLegacyInitialCommitIsMigrated() throws IOException {
+        File root = UnitTest.tempDirectory();
+        try {
+            copy(new File(FIXTURES, ".gitlet"), new File(root, ".gitlet"));
+            run(root, g -> { });
+            assertEquals("master", new Commit().getSHA(),
+                    branch(root, "master"));
+            assertTrue("commands kept",
+                    !new File(root, ".gitlet/commands").exists());
+            UnitTest.commitFile(root, "f.txt", "one\n", "One");
+        } finally {
+            UnitTest.delete(root);
+        }
+    }
+
+    /** Copies the directory FROM, and all it holds, to TO. */
+    private static void copy(File from, File to) throws IOException {
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(from.toPath())) {
+            paths = walk.collect(Collectors.toList());
+        }
+        for (Path p : paths) {
+            Path dest = to.toPath().resolve(from.toPath().relativize(p));
+            if (Files.isDirectory(p)) {
+                Files.createDirectories(dest);
+            } else {
+                Files.copy(p, dest);
+            }
+        }
+    }
+
+    /** The directory of the repositories written by older Gitlets that
+     *  the tests use, relative to the directory the tests run in. */
+    private static final File FIXTURES = new File("../testing");
+}
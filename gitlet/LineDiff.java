@@ -0,0 +1,158 @@
+package gitlet;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/** Line-by-line comparison of two versions of a file, by patience
+ *  diff: lines common to the start or end of both are matched, then the
+ *  longest run, in order in both, of the lines that occur exactly once
+ *  in each, and the same is done again between each pair of lines so
+ *  matched. Where no line is unique, as in a run of repeated lines, a
+ *  longest common subsequence is matched instead, if the run is short
+ *  enough for that to be cheap. Lines left unmatched are taken as
+ *  changed.
+ *  @author Israel Rodriguez
+ */
+class LineDiff {
+
+    /** Returns the lines of the contents TEXT, without their line
+     *  terminators. A last line without a terminator is a line; an empty
+     *  text has none. */
+    static String[] lines(String text) {
+        if (text == null || text.isEmpty()) {
+            return new String[0];
+        }
+        String[] result = text.split("\n", -1);
+        if (text.endsWith("\n")) {
+            result = Arrays.copyOf(result, result.length - 1);
+        }
+        return result;
+    }
+
+    /** Returns, for each of the lines B, the index of the line of A it
+     *  matches, or -1 if it has no match. Matched lines are in the same
+     *  order in A as in B. */
+    static int[] match(String[] a, String[] b) {
+        int[] result = new int[b.length];
+        Arrays.fill(result, -1);
+        ArrayDeque<int[]> work = new ArrayDeque<>();
+        work.push(new int[] {0, a.length, 0, b.length});
+        while (!work.isEmpty()) {
+            int[] range = work.pop();
+            int aLo = range[0], aHi = range[1], bLo = range[2], bHi = range[3];
+            while (aLo < aHi && bLo < bHi && a[aLo].equals(b[bLo])) {
+                result[bLo++] = aLo++;
+            }
+            while (aLo < aHi && bLo < bHi && a[aHi - 1].equals(b[bHi - 1])) {
+                result[--bHi] = --aHi;
+            }
+            if (aLo == aHi || bLo == bHi) {
+                continue;
+            }
+            int[][] anchors = uniqueCommonLines(a, aLo, aHi, b, bLo, bHi);
+            if (anchors.length == 0) {
+                if ((long) (aHi - aLo) * (bHi - bLo) <= MAX_LCS_CELLS) {
+                    longestCommonLines(a, aLo, aHi, b, bLo, bHi, result);
+                }
+                continue;
+            }
+            int prevA = aLo, prevB = bLo;
+            for (int[] anchor : anchors) {
+                result[anchor[1]] = anchor[0];
+                work.push(new int[] {prevA, anchor[0], prevB, anchor[1]});
+                prevA = anchor[0] + 1;
+                prevB = anchor[1] + 1;
+            }
+            work.push(new int[] {prevA, aHi, prevB, bHi});
+        }
+        return result;
+    }
+
+    /** Sets RESULT[J] to I for the pairs {I, J} of a longest common
+     *  subsequence of A[ALO..AHI) and B[BLO..BHI). */
+    private static void longestCommonLines(String[] a, int aLo, int aHi,
+                                           String[] b, int bLo, int bHi,
+                                           int[] result) {
+        int n = aHi - aLo, m = bHi - bLo;
+        int[][] lengths = new int[n + 1][m + 1];
+        for (int i = n - 1; i >= 0; i -= 1) {
+            for (int j = m - 1; j >= 0; j -= 1) {
+                lengths[i][j] = a[aLo + i].equals(b[bLo + j])
+                    ? lengths[i + 1][j + 1] + 1
+                    : Math.max(lengths[i + 1][j], lengths[i][j + 1]);
+            }
+        }
+        for (int i = 0, j = 0; i < n && j < m;) {
+            if (a[aLo + i].equals(b[bLo + j])) {
+                result[bLo + j] = aLo + i;
+                i += 1;
+                j += 1;
+            } else if (lengths[i + 1][j] >= lengths[i][j + 1]) {
+                i += 1;
+            } else {
+                j += 1;
+            }
+        }
+    }
+
+    /** Returns the longest sequence of pairs {I, J}, increasing in both,
+     *  such that A[I] equals B[J] and occurs once in each of A[ALO..AHI)
+     *  and B[BLO..BHI). */
+    private static int[][] uniqueCommonLines(String[] a, int aLo, int aHi,
+                                             String[] b, int bLo, int bHi) {
+        HashMap<String, int[]> counts = new HashMap<>();
+        for (int i = aLo; i < aHi; i += 1) {
+            int[] c = counts.computeIfAbsent(a[i], k -> new int[4]);
+            c[0] += 1;
+            c[1] = i;
+        }
+        for (int j = bLo; j < bHi; j += 1) {
+            int[] c = counts.get(b[j]);
+            if (c != null) {
+                c[2] += 1;
+                c[3] = j;
+            }
+        }
+        int n = 0;
+        int[] as = new int[bHi - bLo];
+        int[] bs = new int[bHi - bLo];
+        for (int j = bLo; j < bHi; j += 1) {
+            int[] c = counts.get(b[j]);
+            if (c != null && c[0] == 1 && c[2] == 1) {
+                as[n] = c[1];
+                bs[n] = j;
+                n += 1;
+            }
+        }
+
+        // Longest increasing run of as, by patience sorting.
+        int[] tops = new int[n];
+        int[] previous = new int[n];
+        int piles = 0;
+        for (int k = 0; k < n; k += 1) {
+            int lo = 0, hi = piles;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (as[tops[mid]] < as[k]) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            previous[k] = lo > 0 ? tops[lo - 1] : -1;
+            tops[lo] = k;
+            piles = Math.max(piles, lo + 1);
+        }
+        int[][] result = new int[piles][];
+        for (int k = piles == 0 ? -1 : tops[piles - 1], i = piles - 1; k >= 0;
+             k = previous[k], i -= 1) {
+            result[i] = new int[] {as[k], bs[k]};
+        }
+        return result;
+    }
+
+    /** Largest product of the numbers of lines in two runs for which
+     *  longestCommonLines is used. */
+    private static final long MAX_LCS_CELLS = 1 << 16;
+}
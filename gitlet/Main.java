@@ -1,22 +1,65 @@
 package gitlet;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 /** Driver class for Gitlet, the tiny stupid version-control system.
  *  @author Israel Rodriguez
  */
 public class Main {
 
     /** Usage: java gitlet.Main ARGS, where ARGS contains
-     *  <COMMAND> <OPERAND> .... */
+     *  [--trace] <COMMAND> <OPERAND> .... */
     public static void main(String... args) {
-        Gitlet g = new Gitlet(System.getProperty("user.dir"));
         String input1 = null; String input2 = null;
         String input3 = null; String input4 = null;
+        boolean trace = args.length > 0 && args[0].equals(Trace.OPTION);
+        if (trace) {
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
         try {
             input1 = args[0];
         } catch (ArrayIndexOutOfBoundsException e) {
             System.out.println("Please enter a command.");
             System.exit(0);
         }
+        int depth = 0;
+        boolean blobless = false;
+        ObjectId.Algorithm format = ObjectId.Algorithm.SHA1;
+        if (input1.equals("init") && args.length == 2
+                && args[1].startsWith(FORMAT_OPTION)) {
+            try {
+                format = ObjectId.Algorithm.parse(
+                        args[1].substring(FORMAT_OPTION.length()));
+            } catch (GitletException ge) {
+                System.out.println(ge.getMessage());
+                System.exit(0);
+            }
+            args = new String[] {input1};
+        }
+        if (input1.equals("fetch") || input1.equals("pull")) {
+            ArrayList<String> operands = new ArrayList<>(Arrays.asList(args));
+            try {
+                depth = depthOption(operands);
+                blobless = operands.remove("--filter=blob:none");
+            } catch (GitletException ge) {
+                System.out.println(ge.getMessage());
+                System.exit(0);
+            }
+            args = operands.toArray(new String[0]);
+        }
+        String bind = GitletServer.LOOPBACK;
+        if (input1.equals("serve")) {
+            ArrayList<String> operands = new ArrayList<>(Arrays.asList(args));
+            for (int i = 1; i < operands.size(); i += 1) {
+                if (operands.get(i).startsWith(BIND_OPTION)) {
+                    bind = operands.remove(i).substring(BIND_OPTION.length());
+                    break;
+                }
+            }
+            args = operands.toArray(new String[0]);
+        }
         if (args.length > 1) {
             input2 = args[1];
         }
@@ -26,11 +69,33 @@ public class Main {
         if (args.length > 3) {
             input4 = args[3];
         }
+        String dir = System.getProperty("user.dir");
+        Trace.start(trace, input1,
+                Arrays.copyOfRange(args, 1, args.length));
+        boolean failed = false;
+        RepositoryLock lock = null;
+        Gitlet g = null;
+        Trace.Phase command = null;
         try {
+            if (Gitlet.LOCKING_COMMANDS.contains(input1)) {
+                Trace.Phase locking = Trace.phase("lock");
+                try {
+                    lock = RepositoryLock.acquire(Utils.join(dir, ".gitlet"));
+                } finally {
+                    locking.close();
+                }
+            }
+            Trace.Phase loading = Trace.phase("load");
+            try {
+                g = new Gitlet(dir);
+            } finally {
+                loading.close();
+            }
+            command = Trace.phase("command");
             if (!g.commands().contains(input1)) {
                 throw Utils.error("No command with that name exists.");
             } else if (input1.equals("init")) {
-                g.init();
+                g.init(format);
             } else if (input1.equals("add")) {
                 g.add(input2);
             } else if (input1.equals("commit")) {
@@ -42,7 +107,23 @@ public class Main {
             } else if (input1.equals("find")) {
                 g.find(input2);
             } else if (input1.equals("log")) {
-                g.log();
+                if (input2 == null) {
+                    g.log();
+                } else if (input2.equals("--") && input3 != null
+                        && args.length == 3) {
+                    g.log(input3, false);
+                } else if (input2.equals("--full-history")
+                        && "--".equals(input3) && input4 != null
+                        && args.length == 4) {
+                    g.log(input4, true);
+                } else {
+                    throw Utils.error("Incorrect operands.");
+                }
+            } else if (input1.equals("blame")) {
+                if (input2 == null || args.length != 2) {
+                    throw Utils.error("Incorrect operands.");
+                }
+                g.blame(input2);
             } else if (input1.equals("global-log")) {
                 g.globalLog();
             } else if (input1.equals("checkout")) {
@@ -68,13 +149,99 @@ public class Main {
             } else if (input1.equals("push")) {
                 g.push(input2, input3);
             } else if (input1.equals("fetch")) {
-                g.fetch(input2, input3);
+                g.fetch(input2, input3, depth, blobless);
             } else if (input1.equals("pull")) {
-                g.pull(input2, input3);
+                g.pull(input2, input3, depth, blobless);
+            } else if (input1.equals("config")) {
+                g.config(input2, input3);
+            } else if (input1.equals("sparse-checkout")) {
+                if (!"set".equals(input2) && args.length != 2) {
+                    throw Utils.error("Incorrect operands.");
+                }
+                g.sparseCheckout(input2,
+                        Arrays.asList(args).subList(Math.min(2, args.length),
+                                args.length));
+            } else if (input1.equals("fast-import")) {
+                if (args.length > 2) {
+                    throw Utils.error("Incorrect operands.");
+                }
+                g.fastImport(input2);
+            } else if (input1.equals("fast-export")) {
+                if (args.length > 2) {
+                    throw Utils.error("Incorrect operands.");
+                }
+                g.fastExport(input2);
+            } else if (input1.equals("watch")) {
+                g.watch();
+            } else if (input1.equals("serve")) {
+                if (args.length > 2) {
+                    throw Utils.error("Incorrect operands.");
+                }
+                g.serve(bind, input2);
+            } else if (input1.equals("gc")) {
+                if (input2 != null && !input2.equals("--auto")) {
+                    throw Utils.error("Incorrect operands.");
+                }
+                g.gc(input2 != null);
             }
         } catch (GitletException ge) {
             System.out.println(ge.getMessage());
+            failed = true;
+        } finally {
+            if (command != null) {
+                command.close();
+            }
+            Trace.Phase closing = Trace.phase("close");
+            try {
+                if (g != null) {
+                    g.close();
+                }
+            } catch (GitletException ge) {
+                System.out.println(ge.getMessage());
+                failed = true;
+            } finally {
+                closing.close();
+            }
+            if (lock != null) {
+                lock.close();
+            }
+        }
+        Trace.finish(failed);
+        if (failed) {
             System.exit(0);
         }
     }
+
+    /** Removes a "--depth N" or "--depth=N" option from ARGS and returns
+     *  N, which must be positive, or 0 if there is no such option. */
+    static int depthOption(List<String> args) {
+        for (int i = 1; i < args.size(); i += 1) {
+            String arg = args.get(i);
+            String value;
+            if (arg.equals("--depth") && i + 1 < args.size()) {
+                value = args.remove(i + 1);
+            } else if (arg.startsWith("--depth=")) {
+                value = arg.substring("--depth=".length());
+            } else {
+                continue;
+            }
+            args.remove(i);
+            try {
+                int depth = Integer.parseInt(value);
+                if (depth > 0) {
+                    return depth;
+                }
+            } catch (NumberFormatException e) {
+                /* Reported below. */
+            }
+            throw Utils.error("Incorrect operands.");
+        }
+        return 0;
+    }
+
+    /** Option of serve choosing the address to listen on. */
+    private static final String BIND_OPTION = "--bind=";
+
+    /** Option of init choosing the hash function of the repository. */
+    private static final String FORMAT_OPTION = "--object-format=";
 }
@@ -1,5 +1,6 @@
 package gitlet;
 
+import java.util.Calendar;
 import java.util.HashMap;
 
 public class MergeCommit extends Commit {
@@ -10,6 +11,23 @@ public class MergeCommit extends Commit {
 
     }
 
+    /** Creates a merge commit as above, but made at the time WHEN. */
+    MergeCommit(String message, HashMap<String, Blob> files,
+                HashMap<String, Blob> pfiles, String parent,
+                String secondParent, Calendar when) {
+        super(message, files, pfiles, parent, when);
+        setSecondParent(secondParent);
+    }
+
+    /** Creates a merge commit as above, but with the TIMESTAMP and TIME
+     *  of a merge made before. */
+    MergeCommit(String message, HashMap<String, Blob> files,
+                HashMap<String, Blob> pfiles, String parent,
+                String secondParent, String timestamp, long time) {
+        super(message, files, pfiles, parent, timestamp, time);
+        setSecondParent(secondParent);
+    }
+
     /** Returns the contents of this commit as a String formatted
      * as a log entry. */
     public String toString() {
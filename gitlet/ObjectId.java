@@ -0,0 +1,273 @@
+package gitlet;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/** The ID of a Gitlet object: the hash of its contents, held as the raw
+ *  bytes of the digest rather than as a hexadecimal String, which takes
+ *  four times the space and must be hashed character by character to be
+ *  looked up. ObjectIds are immutable, compare in the same order as their
+ *  hexadecimal numerals, and are written as those numerals wherever an ID
+ *  is shown or stored as text.
+ *
+ *  The hash function is that of the current repository, one of the
+ *  Algorithms below, chosen when the repository is created.
+ *  @author Israel Rodriguez
+ */
+final class ObjectId implements Comparable<ObjectId>, Serializable {
+
+    /** For serializing purposes. */
+    private static final long serialVersionUID = 0;
+
+    /** Setting naming the hash function of a repository, which is fixed
+     *  when it is created. */
+    static final String FORMAT_KEY = "core.objectFormat";
+
+    /** The hash functions objects may be named by. */
+    enum Algorithm {
+        /** SHA-1, with 20-byte IDs; the default. */
+        SHA1("SHA-1", 20),
+        /** SHA-256, with 32-byte IDs. */
+        SHA256("SHA-256", 32);
+
+        /** The function called NAME by the JDK, producing digests of
+         *  LENGTH bytes. */
+        Algorithm(String name, int length) {
+            _name = name;
+            _length = length;
+            _digest = ThreadLocal.withInitial(this::newDigest);
+        }
+
+        /** Returns the algorithm called NAME in a repository's
+         *  settings, such as "sha256". */
+        static Algorithm parse(String name) {
+            for (Algorithm a : values()) {
+                if (a.toString().equals(name)) {
+                    return a;
+                }
+            }
+            throw Utils.error("Unknown object format: %s", name);
+        }
+
+        /** Returns the length of an ID as a hexadecimal numeral. */
+        int hexLength() {
+            return 2 * _length;
+        }
+
+        /** Returns a digest for this function, reset and owned by the
+         *  current thread, so that it is made once per thread rather
+         *  than once per hash. */
+        MessageDigest digest() {
+            MessageDigest md = _digest.get();
+            md.reset();
+            return md;
+        }
+
+        /** Returns a new digest for this function, for a hash taken a
+         *  piece at a time while other hashes are taken. */
+        MessageDigest newDigest() {
+            try {
+                return MessageDigest.getInstance(_name);
+            } catch (NoSuchAlgorithmException excp) {
+                throw new IllegalArgumentException(
+                        "System does not support " + _name);
+            }
+        }
+
+        /** Returns the name of this function in a repository's
+         *  settings. */
+        @Override
+        public String toString() {
+            return name().toLowerCase();
+        }
+
+        /** Name of this function in the JDK. */
+        private final String _name;
+
+        /** Length of an ID, in bytes. */
+        private final int _length;
+
+        /** Digest of each thread. */
+        private final ThreadLocal<MessageDigest> _digest;
+    }
+
+    /** Returns the hash function of the current repository. */
+    static Algorithm algorithm() {
+        return _algorithm;
+    }
+
+    /** Has IDs made from now on with the hash function ALGORITHM. */
+    static void use(Algorithm algorithm) {
+        _algorithm = algorithm;
+    }
+
+    /** Returns the ID hashed from the concatenation of VALS, which may be
+     *  any mixture of byte arrays and Strings, the latter taken in
+     *  UTF-8. */
+    static ObjectId hash(Object... vals) {
+        MessageDigest md = _algorithm.digest();
+        long hashed = 0;
+        for (Object val : vals) {
+            byte[] bytes;
+            if (val instanceof byte[]) {
+                bytes = (byte[]) val;
+            } else if (val instanceof String) {
+                bytes = ((String) val).getBytes(StandardCharsets.UTF_8);
+            } else {
+                throw new IllegalArgumentException("improper type to hash");
+            }
+            md.update(bytes);
+            hashed += bytes.length;
+        }
+        Trace.hash(hashed);
+        return new ObjectId(md.digest());
+    }
+
+    /** Returns the ID hashed from HEADER, taken in UTF-8, followed by
+     *  the bytes read from IN to its end, a buffer at a time. */
+    static ObjectId hash(String header, InputStream in) throws IOException {
+        MessageDigest md = begin(header);
+        long hashed = header.getBytes(StandardCharsets.UTF_8).length;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+            md.update(buffer, 0, n);
+            hashed += n;
+        }
+        return finish(md, hashed);
+    }
+
+    /** Returns a new digest of the current hash function that has
+     *  hashed HEADER, taken in UTF-8, for hashing what follows it a piece
+     *  at a time. */
+    static MessageDigest begin(String header) {
+        MessageDigest md = _algorithm.newDigest();
+        md.update(header.getBytes(StandardCharsets.UTF_8));
+        return md;
+    }
+
+    /** Returns the ID MD, from begin, gives for the HASHED bytes it has
+     *  been given. */
+    static ObjectId finish(MessageDigest md, long hashed) {
+        Trace.hash(hashed);
+        return new ObjectId(md.digest());
+    }
+
+    /** Returns the ID whose hexadecimal numeral is HEX, or null if HEX is
+     *  null or empty, as the missing parent of the initial commit is
+     *  written. */
+    static ObjectId parse(String hex) {
+        if (hex == null || hex.isEmpty()) {
+            return null;
+        }
+        if (!isId(hex)) {
+            throw new IllegalArgumentException("not an object ID: " + hex);
+        }
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i += 1) {
+            bytes[i] = (byte) ((Character.digit(hex.charAt(2 * i), 16) << 4)
+                    | Character.digit(hex.charAt(2 * i + 1), 16));
+        }
+        return new ObjectId(bytes);
+    }
+
+    /** Returns true iff S is the full hexadecimal numeral of an ID, in
+     *  lower case, under either hash function. */
+    static boolean isId(String s) {
+        if (s == null || (s.length() != Algorithm.SHA1.hexLength()
+                && s.length() != Algorithm.SHA256.hexLength())) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i += 1) {
+            char c = s.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns the hexadecimal numeral of ID, or "" if ID is null. */
+    static String hex(ObjectId id) {
+        return id == null ? "" : id.toString();
+    }
+
+    /** Writes ID, which may be null, to OUT as its length in bytes
+     *  followed by its bytes. */
+    static void write(DataOutput out, ObjectId id) throws IOException {
+        if (id == null) {
+            out.writeByte(0);
+        } else {
+            out.writeByte(id._bytes.length);
+            out.write(id._bytes);
+        }
+    }
+
+    /** Returns the ID, or null, written to IN by write. */
+    static ObjectId read(DataInput in) throws IOException {
+        int length = in.readUnsignedByte();
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new ObjectId(bytes);
+    }
+
+    /** The ID whose digest is BYTES, which the caller no longer
+     *  changes. */
+    private ObjectId(byte[] bytes) {
+        _bytes = bytes;
+    }
+
+    /** Returns the hexadecimal numeral of this ID. */
+    @Override
+    public String toString() {
+        byte[] chars = new byte[2 * _bytes.length];
+        for (int i = 0; i < _bytes.length; i += 1) {
+            chars[2 * i] = (byte) HEX[(_bytes[i] >> 4) & 0xf];
+            chars[2 * i + 1] = (byte) HEX[_bytes[i] & 0xf];
+        }
+        return new String(chars, StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof ObjectId
+                && Arrays.equals(_bytes, ((ObjectId) obj)._bytes);
+    }
+
+    /** Returns the first four bytes of this ID, which, being part of a
+     *  cryptographic hash, are as well distributed as any function of
+     *  the rest would be. */
+    @Override
+    public int hashCode() {
+        return ((_bytes[0] & 0xff) << 24) | ((_bytes[1] & 0xff) << 16)
+                | ((_bytes[2] & 0xff) << 8) | (_bytes[3] & 0xff);
+    }
+
+    /** Compares the bytes of this ID with those of OTHER as unsigned
+     *  numbers, which orders IDs as their numerals are ordered. */
+    @Override
+    public int compareTo(ObjectId other) {
+        return Arrays.compareUnsigned(_bytes, other._bytes);
+    }
+
+    /** Size of the buffer streams are hashed through. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Hexadecimal digits, by value. */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /** Hash function of the current repository. */
+    private static Algorithm _algorithm = Algorithm.SHA1;
+
+    /** Digest naming the object. */
+    private final byte[] _bytes;
+}
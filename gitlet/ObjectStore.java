@@ -0,0 +1,779 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/** The object database of a Gitlet repository. Every commit and every
+ *  version of a file's contents is stored in a file of its own, named
+ *  by its ID under the repository's hash function (SHA-1, or SHA-256
+ *  if chosen at init; see ObjectId), so that commands only read the
+ *  objects they use. Each kind of object has a directory of its own:
+ *
+ *    commits   serialized commits
+ *    info      the CommitInfo of each commit, which walks of history
+ *              read in place of the commit
+ *    blobs     the contents of blobs smaller than CHUNKED_SIZE
+ *    chunked   the chunk lists of larger blobs
+ *    chunks    the chunks of those lists, named by their own IDs
+ *
+ *  In each, the object with an ID is the file named by all but the
+ *  first FANOUT hexadecimal digits of the ID, in the subdirectory named
+ *  by those digits, so that no directory grows too large to search.
+ *  A batch of writes (see beginBatch) goes first to a directory
+ *  incoming-N beside these, laid out the same way, and is moved into
+ *  them when it ends.
+ *
+ *  The contents of a blob of at least CHUNKED_SIZE bytes are not kept
+ *  whole. The Chunker splits them into chunks, and the blob is kept as
+ *  the list of its chunks. Versions of a large file that differ in a few places
+ *  share most of their chunks, which are stored once, so storing a
+ *  new version writes only the chunks that changed. Such contents are
+ *  written out to the working directory a chunk at a time by copyBlob.
+ *
+ *  A store filled by a blobless fetch is partial: it has commits whose
+ *  blob contents it lacks. Their contents are fetched from the
+ *  repositories the store was filled from, its promisors, when they
+ *  are first read, or ahead of time in batches with prefetch.
+ *  @author Israel Rodriguez
+ */
+class ObjectStore {
+
+    /** Number of leading hexadecimal digits of an ID used to name
+     *  fan-out directories. */
+    static final int FANOUT = 2;
+
+    /** Least size, in bytes, of the blob contents stored as chunks. */
+    static final int CHUNKED_SIZE = 1 << 20;
+
+    /** An object store kept in the directory DIR. */
+    ObjectStore(File dir) {
+        _dir = dir;
+        _commitDir = Utils.join(dir, "commits");
+        _blobDir = Utils.join(dir, "blobs");
+        _infoDir = Utils.join(dir, "info");
+        _chunkedDir = Utils.join(dir, "chunked");
+        _chunkDir = Utils.join(dir, "chunks");
+    }
+
+    /** Returns true iff the commit with ID is in this store. */
+    boolean hasCommit(String id) {
+        return ObjectId.isId(id) && (_cache.containsKey(ObjectId.parse(id))
+                || stored(commitFile(id)));
+    }
+
+    /** Returns the commit with ID, or null if it is not in this store
+     *  or ID is not a full ID. */
+    Commit readCommit(String id) {
+        return ObjectId.isId(id) ? readCommit(ObjectId.parse(id)) : null;
+    }
+
+    /** Returns the commit with ID, or null if it is not in this store.
+     *  The blobs of the returned commit read their contents from this
+     *  store on demand. */
+    Commit readCommit(ObjectId id) {
+        Commit result = _cache.get(id);
+        if (result == null) {
+            File f = commitFile(id.toString());
+            if (!f.isFile()) {
+                return null;
+            }
+            result = Utils.readObject(f, Commit.class);
+            Trace.count("commits loaded");
+            for (Blob b : result.getFiles().values()) {
+                b.attach(this);
+            }
+            for (Blob b : result.getParentFiles().values()) {
+                b.attach(this);
+            }
+            _cache.put(id, result);
+        }
+        return result;
+    }
+
+    /** Stores the commit C along with the contents of all the files it
+     *  tracks. Does nothing if C is already stored. */
+    void writeCommit(Commit c) {
+        if (hasCommit(c.getSHA())) {
+            return;
+        }
+        for (Blob b : c.getFiles().values()) {
+            b.store(this);
+        }
+        for (Blob b : c.getParentFiles().values()) {
+            b.store(this);
+        }
+        writeCommitBytes(c.getSHA(), Utils.serialize(c));
+        _cache.put(c.id(), c);
+        if (_batch != null) {
+            _unindexed.add(c);
+        } else {
+            writeInfo(c);
+        }
+    }
+
+    /** Begins a batch of writes, for storing many objects at once, as
+     *  fast-import does. Until endBatch, objects are written whole, with
+     *  no temporary file each, into a directory of the batch's own laid
+     *  out as the store is, where no other command looks for them, and
+     *  commits are written without their CommitInfos. */
+    void beginBatch() {
+        _batch = new File(_dir, "incoming-" + System.nanoTime());
+        _batched = new HashSet<>();
+        _unindexed = new ArrayList<>();
+    }
+
+    /** Ends the batch begun by beginBatch. If KEEP, moves the objects it
+     *  wrote into the store, a whole fan-out directory at a time where
+     *  the store has none of that name yet, each commit after the blobs
+     *  it names, and then stores the CommitInfos of its commits, in the
+     *  order they were written. Otherwise, discards them. */
+    void endBatch(boolean keep) {
+        File batch = _batch;
+        List<Commit> unindexed = _unindexed;
+        _batch = null;
+        _batched = null;
+        _unindexed = null;
+        try {
+            if (keep) {
+                for (File dir : new File[] {
+                        _chunkDir, _chunkedDir, _blobDir, _commitDir }) {
+                    moveObjects(new File(batch, dir.getName()), dir);
+                }
+                for (Commit c : unindexed) {
+                    writeInfo(c);
+                }
+            }
+        } finally {
+            delete(batch);
+        }
+    }
+
+    /** Moves the objects in the fan-out directories of FROM into those
+     *  of TO, moving each directory whole if TO has none of its name,
+     *  and otherwise each of the objects TO lacks. */
+    private static void moveObjects(File from, File to) {
+        String[] fanout = from.list();
+        if (fanout == null) {
+            return;
+        }
+        Arrays.sort(fanout);
+        to.mkdirs();
+        try {
+            for (String prefix : fanout) {
+                File source = new File(from, prefix);
+                File dest = new File(to, prefix);
+                if (!dest.exists()) {
+                    Files.move(source.toPath(), dest.toPath(),
+                            StandardCopyOption.ATOMIC_MOVE);
+                    continue;
+                }
+                for (String rest : source.list()) {
+                    File f = new File(dest, rest);
+                    if (!f.isFile()) {
+                        Files.move(new File(source, rest).toPath(),
+                                f.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                    }
+                }
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Could not store objects: %s",
+                    excp.getMessage());
+        }
+    }
+
+    /** Deletes F and everything under it, if it exists. */
+    private static void delete(File f) {
+        File[] children = f.listFiles();
+        if (children != null) {
+            for (File c : children) {
+                delete(c);
+            }
+        }
+        f.delete();
+    }
+
+    /** Writes CONTENTS as the object file F, atomically, unless it is
+     *  already stored. During a batch, writes them instead into the
+     *  corresponding file of the batch's directory. */
+    private void writeObject(File f, byte[] contents) {
+        if (stored(f)) {
+            return;
+        }
+        if (_batch == null) {
+            f.getParentFile().mkdirs();
+            Utils.atomicWriteContents(f, contents);
+            return;
+        }
+        File dest = new File(_batch,
+                _dir.toPath().relativize(f.toPath()).toString());
+        if (_batched.add(f.getParentFile())) {
+            dest.getParentFile().mkdirs();
+        }
+        Utils.writeContents(dest, contents);
+        _batched.add(f);
+    }
+
+    /** Returns true iff the object file F is in this store, or written
+     *  in the current batch. */
+    private boolean stored(File f) {
+        return f.isFile() || _batch != null && _batched.contains(f);
+    }
+
+    /** Returns the CommitInfo of the commit with ID, or null if the
+     *  commit is not in this store. Reads it from beside the commit,
+     *  or, for a commit stored without one, as by a fetch, computes it
+     *  from the commit and its parent and stores it. */
+    CommitInfo readInfo(ObjectId id) {
+        File f = infoFile(id.toString());
+        if (f.isFile()) {
+            Trace.count("commit infos loaded");
+            return CommitInfo.fromBytes(Utils.readContents(f));
+        }
+        Commit c = readCommit(id);
+        return c == null ? null : writeInfo(c);
+    }
+
+    /** Stores and returns the CommitInfo of the commit C. */
+    private CommitInfo writeInfo(Commit c) {
+        Commit parent = c.parentId() == null ? null : readCommit(c.parentId());
+        CommitInfo info = CommitInfo.of(c, parent);
+        File f = infoFile(c.getSHA());
+        f.getParentFile().mkdirs();
+        Utils.atomicWriteContents(f, info.toBytes());
+        return info;
+    }
+
+    /** Returns true iff the contents of the blob with ID are in this
+     *  store. */
+    boolean hasBlob(String id) {
+        return isId(id)
+                && (stored(blobFile(id)) || stored(chunkedFile(id)));
+    }
+
+    /** Returns the contents of the blob with ID, or null if they are
+     *  not in this store and none of its promisors has them. */
+    byte[] readBlob(String id) {
+        if (!hasBlob(id) && !promisors().isEmpty()) {
+            fetchBlobs(List.of(id));
+        }
+        File f = blobFile(id);
+        if (f.isFile()) {
+            Trace.count("blobs loaded");
+            return Utils.readContents(f);
+        }
+        Chunk[] chunks = readChunks(id);
+        if (chunks == null) {
+            return null;
+        }
+        Trace.count("blobs loaded");
+        ByteArrayOutputStream result = new ByteArrayOutputStream(
+                (int) Math.min(Integer.MAX_VALUE - 8, Chunk.length(chunks)));
+        try {
+            copyChunks(chunks, result);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return result.toByteArray();
+    }
+
+    /** Writes the contents of the blob with ID to the file DEST, reading
+     *  chunked contents one chunk at a time rather than whole. Returns
+     *  false, leaving DEST alone, if the contents are not in this store
+     *  and none of its promisors has them. */
+    boolean copyBlob(String id, File dest) {
+        if (!hasBlob(id) && !promisors().isEmpty()) {
+            fetchBlobs(List.of(id));
+        }
+        File f = blobFile(id);
+        try {
+            if (f.isFile()) {
+                Trace.count("blobs loaded");
+                Files.copy(f.toPath(), dest.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+                Trace.read(f, f.length());
+                Trace.write(dest, f.length());
+                return true;
+            }
+            Chunk[] chunks = readChunks(id);
+            if (chunks == null) {
+                return false;
+            }
+            Trace.count("blobs loaded");
+            try (OutputStream out = new BufferedOutputStream(
+                    Files.newOutputStream(dest.toPath()))) {
+                copyChunks(chunks, out);
+            }
+            Trace.write(dest, Chunk.length(chunks));
+            return true;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Writes the contents of CHUNKS to OUT, in order. */
+    private void copyChunks(Chunk[] chunks, OutputStream out)
+        throws IOException {
+        for (Chunk chunk : chunks) {
+            File f = chunkFile(chunk._id.toString());
+            if (!f.isFile()) {
+                throw Utils.error("Missing chunk %s.", chunk._id);
+            }
+            Trace.count("chunks loaded");
+            out.write(Utils.readContents(f));
+        }
+    }
+
+    /** Has the contents of blobs that are missing from this store read
+     *  from the transports that PROMISORS supplies, which it is asked
+     *  for the first time a blob is missing. */
+    void setPromisors(Supplier<List<Transport>> promisors) {
+        _promisors = promisors;
+    }
+
+    /** Fetches from the promisors of this store, in one batch, the
+     *  contents of those of BLOBS that it lacks. */
+    void prefetch(Collection<Blob> blobs) {
+        if (promisors().isEmpty()) {
+            return;
+        }
+        Set<String> missing = new TreeSet<>();
+        for (Blob b : blobs) {
+            if (!hasBlob(b.getSha())) {
+                missing.add(b.getSha());
+            }
+        }
+        if (!missing.isEmpty()) {
+            fetchBlobs(missing);
+        }
+    }
+
+    /** Stores CONTENTS as the contents of the blob with ID, unless they
+     *  are already stored. */
+    void writeBlob(String id, byte[] contents) {
+        checkId(id);
+        if (hasBlob(id)) {
+            return;
+        }
+        if (contents.length >= CHUNKED_SIZE) {
+            try {
+                writeChunks(ObjectId.parse(id),
+                        new ByteArrayInputStream(contents), null, 0);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            return;
+        }
+        writeObject(blobFile(id), contents);
+    }
+
+    /** Stores the contents read from IN, to its end, as the contents of
+     *  a blob, unless they are already stored, and returns the blob's
+     *  ID: the hash of HEADER followed by the contents. Contents of at
+     *  least CHUNKED_SIZE bytes are hashed and split into chunks as they
+     *  are read, a chunk at a time, so that they are never all held in
+     *  memory. */
+    ObjectId writeBlob(String header, InputStream in) throws IOException {
+        byte[] first = in.readNBytes(CHUNKED_SIZE);
+        if (first.length < CHUNKED_SIZE) {
+            ObjectId id = ObjectId.hash(header, first);
+            writeBlob(id.toString(), first);
+            return id;
+        }
+        return writeChunks(null, new SequenceInputStream(
+                new ByteArrayInputStream(first), in),
+                ObjectId.begin(header),
+                header.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    /** Splits the contents read from IN, to its end, into chunks,
+     *  writing only the chunks not already stored, and stores the list
+     *  of them as the contents of the blob with ID. If ID is null, the
+     *  blob's ID is instead the one MD gives once it has hashed the
+     *  contents, chunk by chunk, after the HASHED bytes it has already
+     *  been given. Returns the blob's ID. */
+    private ObjectId writeChunks(ObjectId id, InputStream in,
+                                 MessageDigest md, long hashed)
+        throws IOException {
+        ByteArrayOutputStream list = new ByteArrayOutputStream();
+        int count = 0;
+        byte[] buffer = new byte[2 * Chunker.MAX_SIZE];
+        int start = 0, end = 0;
+        boolean more = true;
+        try (DataOutputStream out = new DataOutputStream(list)) {
+            while (true) {
+                if (more && end - start < Chunker.MAX_SIZE) {
+                    System.arraycopy(buffer, start, buffer, 0, end - start);
+                    end -= start;
+                    start = 0;
+                    end += in.readNBytes(buffer, end, buffer.length - end);
+                    more = end == buffer.length;
+                }
+                if (start == end) {
+                    break;
+                }
+                int cut = Chunker.cut(buffer, start, end);
+                if (md != null) {
+                    md.update(buffer, start, cut - start);
+                    hashed += cut - start;
+                }
+                byte[] chunk = Arrays.copyOfRange(buffer, start, cut);
+                ObjectId chunkId = ObjectId.hash(chunk);
+                File f = chunkFile(chunkId.toString());
+                if (!stored(f)) {
+                    writeObject(f, chunk);
+                    Trace.count("chunks written");
+                }
+                out.writeInt(chunk.length);
+                ObjectId.write(out, chunkId);
+                count += 1;
+                start = cut;
+            }
+        }
+        if (id == null) {
+            id = ObjectId.finish(md, hashed);
+            if (hasBlob(id.toString())) {
+                return id;
+            }
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(CHUNKED_VERSION);
+            out.writeInt(count);
+            list.writeTo(out);
+        }
+        writeObject(chunkedFile(id.toString()), bytes.toByteArray());
+        return id;
+    }
+
+    /** Returns the chunks of the contents of the blob with ID, or null
+     *  if it is not stored as chunks. */
+    private Chunk[] readChunks(String id) {
+        if (!isId(id) || !chunkedFile(id).isFile()) {
+            return null;
+        }
+        File f = chunkedFile(id);
+        try (DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(Utils.readContents(f)))) {
+            if (in.readByte() != CHUNKED_VERSION) {
+                throw Utils.error("Unknown chunk list format.");
+            }
+            Chunk[] result = new Chunk[in.readInt()];
+            for (int i = 0; i < result.length; i += 1) {
+                int length = in.readInt();
+                result[i] = new Chunk(ObjectId.read(in), length);
+            }
+            return result;
+        } catch (IOException excp) {
+            throw Utils.error("Corrupt chunk list.");
+        }
+    }
+
+    /** Fetches the contents of the blobs with IDS from the promisors of
+     *  this store, asking each in turn for those still missing. */
+    private void fetchBlobs(Collection<String> ids) {
+        Set<String> missing = new TreeSet<>(ids);
+        for (Transport promisor : promisors()) {
+            promisor.fetchBlobs(missing, this);
+            missing.removeIf(this::hasBlob);
+            if (missing.isEmpty()) {
+                break;
+            }
+        }
+    }
+
+    /** Returns the promisors of this store, which are none if it is
+     *  complete. */
+    private List<Transport> promisors() {
+        if (_promisorList == null) {
+            _promisorList = _promisors == null ? List.of() : _promisors.get();
+        }
+        return _promisorList;
+    }
+
+    /** Returns the serialized form of the commit with ID, as stored. */
+    byte[] readCommitBytes(String id) {
+        return Utils.readContents(commitFile(id));
+    }
+
+    /** Stores BYTES, the serialized form of a commit, as the commit with
+     *  ID, unless it is already stored. */
+    void writeCommitBytes(String id, byte[] bytes) {
+        checkId(id);
+        writeObject(commitFile(id), bytes);
+    }
+
+    /** Returns the IDs of all commits in this store, in lexicographic
+     *  order. */
+    List<String> commitIds() {
+        return ids(_commitDir);
+    }
+
+    /** Returns the IDs of all blobs whose contents are in this store, in
+     *  lexicographic order. */
+    List<String> blobIds() {
+        TreeSet<String> result = new TreeSet<>(ids(_blobDir));
+        result.addAll(ids(_chunkedDir));
+        return new ArrayList<>(result);
+    }
+
+    /** Returns the IDs of the objects stored under DIR, in
+     *  lexicographic order. */
+    private static List<String> ids(File dir) {
+        ArrayList<String> result = new ArrayList<>();
+        String[] fanout = dir.list();
+        if (fanout == null) {
+            return result;
+        }
+        Arrays.sort(fanout);
+        for (String prefix : fanout) {
+            List<String> names =
+                    Utils.plainFilenamesIn(Utils.join(dir, prefix));
+            if (names != null) {
+                for (String rest : names) {
+                    if (!rest.startsWith(".")) {
+                        result.add(prefix + rest);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Deletes the commit with ID if it was last written before CUTOFF,
+     *  in milliseconds since the epoch. Returns true iff it did. */
+    boolean pruneCommit(String id, long cutoff) {
+        if (prune(commitFile(id), cutoff)) {
+            prune(infoFile(id), Long.MAX_VALUE);
+            _cache.remove(ObjectId.parse(id));
+            return true;
+        }
+        return false;
+    }
+
+    /** Deletes the contents of the blob with ID if they were last
+     *  written before CUTOFF, in milliseconds since the epoch. Returns
+     *  true iff it did. */
+    boolean pruneBlob(String id, long cutoff) {
+        return prune(blobFile(id), cutoff) || prune(chunkedFile(id), cutoff);
+    }
+
+    /** Deletes the chunks that no stored blob refers to and that were
+     *  last written before CUTOFF, in milliseconds since the epoch.
+     *  Returns the number deleted. */
+    int pruneChunks(long cutoff) {
+        List<String> chunkIds = ids(_chunkDir);
+        if (chunkIds.isEmpty()) {
+            return 0;
+        }
+        Set<String> live = new HashSet<>();
+        for (String id : ids(_chunkedDir)) {
+            for (Chunk chunk : readChunks(id)) {
+                live.add(chunk._id.toString());
+            }
+        }
+        int result = 0;
+        for (String id : chunkIds) {
+            if (!live.contains(id) && prune(chunkFile(id), cutoff)) {
+                result += 1;
+            }
+        }
+        return result;
+    }
+
+    /** Deletes F, and its fan-out directory if that is left empty, if F
+     *  was last modified before CUTOFF. Returns true iff F was
+     *  deleted. */
+    private static boolean prune(File f, long cutoff) {
+        if (f.lastModified() >= cutoff || !f.delete()) {
+            return false;
+        }
+        f.getParentFile().delete();
+        return true;
+    }
+
+    /** Returns the number of objects in the fan-out directory named
+     *  PREFIX and their total size in bytes, which is a sample of about
+     *  1/256 of the whole store. */
+    long[] sample(String prefix) {
+        long[] result = new long[2];
+        for (File dir : new File[] {_commitDir, _blobDir, _chunkDir}) {
+            File[] files = Utils.join(dir, prefix).listFiles();
+            if (files != null) {
+                for (File f : files) {
+                    result[0] += 1;
+                    result[1] += f.length();
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Returns the ID of a commit whose ID starts with PREFIX, or null
+     *  if there is none. */
+    String resolveCommit(String prefix) {
+        if (prefix == null || !prefix.matches("[0-9a-f]+")) {
+            return null;
+        }
+        if (prefix.length() == ObjectId.algorithm().hexLength()) {
+            return hasCommit(prefix) ? prefix : null;
+        }
+        if (prefix.length() < FANOUT) {
+            for (String id : commitIds()) {
+                if (id.startsWith(prefix)) {
+                    return id;
+                }
+            }
+            return null;
+        }
+        String dir = prefix.substring(0, FANOUT);
+        List<String> names =
+                Utils.plainFilenamesIn(Utils.join(_commitDir, dir));
+        if (names != null) {
+            for (String rest : names) {
+                if ((dir + rest).startsWith(prefix)) {
+                    return dir + rest;
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Returns the directory holding this store. */
+    File directory() {
+        return _dir;
+    }
+
+    /** Returns the file holding the commit with ID. */
+    File commitFile(String id) {
+        return Utils.join(_commitDir, id.substring(0, FANOUT),
+                id.substring(FANOUT));
+    }
+
+    /** Returns the file holding the CommitInfo of the commit with ID. */
+    File infoFile(String id) {
+        return Utils.join(_infoDir, id.substring(0, FANOUT),
+                id.substring(FANOUT));
+    }
+
+    /** Returns the file holding the contents of the blob with ID. */
+    File blobFile(String id) {
+        return Utils.join(_blobDir, id.substring(0, FANOUT),
+                id.substring(FANOUT));
+    }
+
+    /** Returns the file holding the list of the chunks of the contents
+     *  of the blob with ID. */
+    private File chunkedFile(String id) {
+        return Utils.join(_chunkedDir, id.substring(0, FANOUT),
+                id.substring(FANOUT));
+    }
+
+    /** Returns the file holding the chunk with ID. */
+    private File chunkFile(String id) {
+        return Utils.join(_chunkDir, id.substring(0, FANOUT),
+                id.substring(FANOUT));
+    }
+
+    /** Throws a GitletException unless ID is a well-formed object ID,
+     *  which names a file in this store and nowhere else. */
+    private static void checkId(String id) {
+        if (!ObjectId.isId(id)) {
+            throw Utils.error("Invalid object ID %s.", id);
+        }
+    }
+
+    /** Returns true iff ID is a well-formed object ID, as ObjectId.isId
+     *  says, and so names a file in this store and nowhere else. */
+    private static boolean isId(String id) {
+        return ObjectId.isId(id);
+    }
+
+    /** Directory holding this store. */
+    private File _dir;
+
+    /** Directory holding commits. */
+    private File _commitDir;
+
+    /** Directory holding blob contents. */
+    private File _blobDir;
+
+    /** Directory holding the CommitInfo of commits. */
+    private File _infoDir;
+
+    /** Directory holding the chunk lists of chunked blob contents. */
+    private File _chunkedDir;
+
+    /** Directory holding chunks. */
+    private File _chunkDir;
+
+    /** Supplies the transports to fetch missing blobs from, or null. */
+    private Supplier<List<Transport>> _promisors;
+
+    /** The transports _promisors supplied, once asked for. */
+    private List<Transport> _promisorList;
+
+    /** Directory of the current batch of writes, or null if there is
+     *  none. */
+    private File _batch;
+
+    /** The object files, and the directories, written in the current
+     *  batch, as they will be named in the store. */
+    private Set<File> _batched;
+
+    /** The commits written in the current batch, in order, whose
+     *  CommitInfos are not yet stored. */
+    private List<Commit> _unindexed;
+
+    /** Version of the stored form of chunk lists. */
+    private static final byte CHUNKED_VERSION = 1;
+
+    /** A chunk of chunked blob contents. */
+    private static class Chunk {
+
+        /** The chunk with ID, of LENGTH bytes. */
+        Chunk(ObjectId id, int length) {
+            _id = id;
+            _length = length;
+        }
+
+        /** Returns the total length of CHUNKS, in bytes. */
+        static long length(Chunk[] chunks) {
+            long result = 0;
+            for (Chunk chunk : chunks) {
+                result += chunk._length;
+            }
+            return result;
+        }
+
+        /** ID of the chunk, the hash of its contents. */
+        private final ObjectId _id;
+
+        /** Length of the chunk in bytes. */
+        private final int _length;
+    }
+
+    /** Commits read or written so far, by ID. */
+    private final ConcurrentHashMap<ObjectId, Commit> _cache =
+            new ConcurrentHashMap<>();
+}
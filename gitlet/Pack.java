@@ -0,0 +1,412 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/** A pack: a single compressed stream carrying a set of commits and
+ *  the file contents they need from one repository to another.
+ *
+ *  The stream starts with MAGIC, the format VERSION, and the number of
+ *  entries. Each entry is a type byte followed by the object's ID and
+ *  its data: a serialized commit (COMMIT), the contents of a file
+ *  (BLOB), or a Delta against the contents of another blob that the
+ *  receiver already has or received earlier in the pack (DELTA). Blobs
+ *  precede the commits that use them and parents precede children, so
+ *  the receiver can store the entries in a single pass. The stream ends
+ *  with the SHA-1 digest of everything before it, which the receiver
+ *  checks before storing anything.
+ *
+ *  A pack may come from anyone who can reach a server, or from any
+ *  server a repository fetches from, so the receiver trusts nothing in
+ *  it: every ID must be a well-formed ObjectId, no entry may claim more
+ *  than MAX_ENTRY bytes, and every commit and blob must hash to its
+ *  ID before it is stored.
+ *  @author Israel Rodriguez
+ */
+class Pack {
+
+    /** First bytes of every pack. */
+    static final int MAGIC = 0x474c504b;
+
+    /** Version of the pack format. */
+    static final int VERSION = 1;
+
+    /** Entry type of a commit. */
+    static final byte COMMIT = 'C';
+
+    /** Entry type of a blob stored whole. */
+    static final byte BLOB = 'B';
+
+    /** Entry type of a blob stored as a delta. */
+    static final byte DELTA = 'D';
+
+    /** Greatest length, in bytes, of the data of an entry. */
+    static final int MAX_ENTRY = 1 << 30;
+
+    /** Writes to OUT a pack of the commits COMMITS, taken from SOURCE
+     *  and ordered parents first, along with the blobs they refer to
+     *  that the receiver does not have. The receiver is assumed to have
+     *  every commit that is a parent of one of COMMITS but not among
+     *  them, and hence the blobs of those commits, except for the
+     *  parents of the commits in BOUNDARY, the boundary of a shallow
+     *  history. If BLOBS is false, no blobs are written at all: the
+     *  receiver fetches their contents later, as it needs them. Returns
+     *  the number of entries written. */
+    static int write(OutputStream out, ObjectStore source,
+                     List<String> commits, Set<String> boundary,
+                     boolean blobs) throws IOException {
+        Set<String> sending = new HashSet<>(commits);
+        Set<String> known = new HashSet<>();
+        for (String id : commits) {
+            if (boundary.contains(id)) {
+                continue;
+            }
+            for (String parent : Transfer.parents(source.readCommit(id))) {
+                if (!sending.contains(parent)) {
+                    Commit p = source.readCommit(parent);
+                    if (p != null) {
+                        for (Blob b : p.getFiles().values()) {
+                            known.add(b.getSha());
+                        }
+                    }
+                }
+            }
+        }
+
+        List<String[]> entries = new ArrayList<>();
+        for (String id : commits) {
+            Commit c = source.readCommit(id);
+            Commit parent = boundary.contains(id) ? null
+                    : source.readCommit(c.parent());
+            for (Map.Entry<String, Blob> e : c.getFiles().entrySet()) {
+                String blob = e.getValue().getSha();
+                if (blobs && known.add(blob)) {
+                    Blob base = parent == null ? null
+                            : parent.getFiles().get(e.getKey());
+                    entries.add(new String[] {blob,
+                        base == null ? null : base.getSha()});
+                }
+            }
+            entries.add(new String[] {id});
+        }
+        writeEntries(out, source, entries);
+        return entries.size();
+    }
+
+    /** Writes to OUT a pack of the contents of those of the blobs with
+     *  IDS that SOURCE has. Returns the number of entries written. */
+    static int writeBlobs(OutputStream out, ObjectStore source,
+                          Collection<String> ids) throws IOException {
+        List<String[]> entries = new ArrayList<>();
+        for (String id : new TreeSet<>(ids)) {
+            if (source.hasBlob(id)) {
+                entries.add(new String[] {id, null});
+            }
+        }
+        writeEntries(out, source, entries);
+        return entries.size();
+    }
+
+    /** Writes to OUT a pack of ENTRIES, objects of SOURCE: commit IDs
+     *  alone, and pairs of a blob ID and the ID of the blob to write it
+     *  as a delta against, or null. */
+    private static void writeEntries(OutputStream out, ObjectStore source,
+                                     List<String[]> entries)
+            throws IOException {
+        Events.Transfer event = new Events.Transfer();
+        event.begin();
+        MessageDigest md = digest();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        DeflaterOutputStream deflating =
+                new DeflaterOutputStream(out, deflater, 1 << 16);
+        DigestOutputStream digesting = new DigestOutputStream(deflating, md);
+        DataOutputStream data = new DataOutputStream(digesting);
+        try {
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            data.writeInt(entries.size());
+            for (String[] entry : entries) {
+                if (entry.length == 1) {
+                    data.writeByte(COMMIT);
+                    data.writeUTF(entry[0]);
+                    writeBytes(data, source.readCommitBytes(entry[0]));
+                    Trace.count("commits sent");
+                } else {
+                    writeBlob(data, source, entry[0], entry[1]);
+                    Trace.count("blobs sent");
+                }
+            }
+            data.flush();
+            digesting.on(false);
+            data.write(md.digest());
+            data.flush();
+            deflating.finish();
+        } finally {
+            deflater.end();
+        }
+        if (event.shouldCommit()) {
+            event.direction = "send";
+            for (String[] entry : entries) {
+                if (entry.length == 1) {
+                    event.commits += 1;
+                    event.last = entry[0];
+                } else {
+                    event.blobs += 1;
+                }
+            }
+            event.bytes = data.size();
+            event.commit();
+        }
+    }
+
+    /** Reads a pack from IN and stores the objects it contains in DEST.
+     *  The pack is spooled to a file in DEST's directory first, so that
+     *  nothing is stored unless the whole pack arrived intact. Returns
+     *  the IDs of the commits received, in the order they were sent.
+     *  Throws a GitletException if the pack is malformed. */
+    static List<String> read(InputStream in, ObjectStore dest)
+            throws IOException {
+        File pack = Utils.join(dest.directory(),
+                "incoming-" + System.nanoTime() + ".pack");
+        try {
+            dest.directory().mkdirs();
+            Files.copy(in, pack.toPath());
+            return read(pack, dest);
+        } finally {
+            pack.delete();
+        }
+    }
+
+    /** Reads the pack in the file PACK and stores the objects it
+     *  contains in DEST, once its checksum shows it to be intact.
+     *  Returns the IDs of the commits received, in the order they were
+     *  sent. Throws a GitletException if the pack is malformed. */
+    static List<String> read(File pack, ObjectStore dest)
+            throws IOException {
+        try (InputStream in = new BufferedInputStream(
+                new FileInputStream(pack))) {
+            parse(in, null);
+        }
+        try (InputStream in = new BufferedInputStream(
+                new FileInputStream(pack))) {
+            return parse(in, dest);
+        }
+    }
+
+    /** Reads a pack from IN. If DEST is null, only checks that the pack
+     *  is well formed and matches its checksum; otherwise stores each
+     *  object in DEST as it is read, trusting the pack to have been
+     *  checked. Returns the IDs of the commits in the pack, in the order
+     *  they were sent. */
+    private static List<String> parse(InputStream in, ObjectStore dest)
+            throws IOException {
+        Events.Transfer event = new Events.Transfer();
+        boolean checking = dest == null;
+        if (!checking) {
+            event.begin();
+        }
+        MessageDigest md = digest();
+        Inflater inflater = new Inflater();
+        DigestInputStream digesting = new DigestInputStream(
+                new InflaterInputStream(in, inflater, 1 << 16), md);
+        digesting.on(checking);
+        DataInputStream data = new DataInputStream(digesting);
+        List<String> commits = new ArrayList<>();
+        long bytes = 0;
+        try {
+            if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+                throw Utils.error("Not a gitlet pack.");
+            }
+            int count = data.readInt();
+            for (int i = 0; i < count; i += 1) {
+                byte type = data.readByte();
+                String id = readId(data);
+                if (type == COMMIT) {
+                    byte[] commit = readBytes(data);
+                    if (checking) {
+                        checkCommit(id, commit);
+                    } else {
+                        dest.writeCommitBytes(id, commit);
+                    }
+                    commits.add(id);
+                    bytes += commit.length;
+                } else if (type == BLOB) {
+                    byte[] blob = readBytes(data);
+                    if (checking) {
+                        checkBlob(id, blob);
+                    } else {
+                        dest.writeBlob(id, blob);
+                    }
+                    bytes += blob.length;
+                } else if (type == DELTA) {
+                    String baseId = readId(data);
+                    byte[] delta = readBytes(data);
+                    if (!checking) {
+                        byte[] base = dest.readBlob(baseId);
+                        if (base == null) {
+                            throw Utils.error("Missing delta base %s.",
+                                    baseId);
+                        }
+                        byte[] blob = Delta.apply(base, delta);
+                        checkBlob(id, blob);
+                        dest.writeBlob(id, blob);
+                    }
+                    bytes += delta.length;
+                } else {
+                    throw Utils.error("Corrupt pack.");
+                }
+            }
+            if (checking) {
+                digesting.on(false);
+                byte[] expected = md.digest();
+                byte[] trailer = new byte[expected.length];
+                data.readFully(trailer);
+                if (!Arrays.equals(expected, trailer)) {
+                    throw Utils.error("Pack checksum mismatch.");
+                }
+            } else if (event.shouldCommit()) {
+                event.direction = "receive";
+                event.commits = commits.size();
+                event.blobs = count - commits.size();
+                event.bytes = bytes;
+                event.last = commits.isEmpty() ? null
+                        : commits.get(commits.size() - 1);
+                event.commit();
+            }
+        } catch (EOFException excp) {
+            throw Utils.error("Truncated pack.");
+        } finally {
+            inflater.end();
+        }
+        return commits;
+    }
+
+    /** Writes the blob with ID from SOURCE to DATA, as a delta against
+     *  the blob with BASEID if that is not null and the delta is
+     *  usefully smaller than the contents. */
+    private static void writeBlob(DataOutputStream data, ObjectStore source,
+                                  String id, String baseId)
+            throws IOException {
+        byte[] contents = source.readBlob(id);
+        if (baseId != null && !baseId.equals(id)) {
+            byte[] base = source.readBlob(baseId);
+            if (base != null) {
+                byte[] delta = Delta.create(base, contents);
+                if (delta.length < contents.length * 3 / 4) {
+                    data.writeByte(DELTA);
+                    data.writeUTF(id);
+                    data.writeUTF(baseId);
+                    writeBytes(data, delta);
+                    return;
+                }
+            }
+        }
+        data.writeByte(BLOB);
+        data.writeUTF(id);
+        writeBytes(data, contents);
+    }
+
+    /** Writes the length of BYTES followed by BYTES to DATA. */
+    private static void writeBytes(DataOutputStream data, byte[] bytes)
+            throws IOException {
+        data.writeInt(bytes.length);
+        data.write(bytes);
+    }
+
+    /** Reads a length-prefixed array of bytes from DATA, of at most
+     *  MAX_ENTRY bytes. The array grows as the bytes arrive, so a length
+     *  the pack does not hold costs no more than the bytes it does. */
+    private static byte[] readBytes(DataInputStream data)
+            throws IOException {
+        int length = data.readInt();
+        if (length < 0 || length > MAX_ENTRY) {
+            throw Utils.error("Corrupt pack.");
+        }
+        byte[] result = data.readNBytes(length);
+        if (result.length != length) {
+            throw new EOFException();
+        }
+        return result;
+    }
+
+    /** Reads an object ID from DATA, and throws a GitletException unless
+     *  it is well formed. */
+    private static String readId(DataInputStream data) throws IOException {
+        String result = data.readUTF();
+        if (!ObjectId.isId(result)) {
+            throw Utils.error("Corrupt pack.");
+        }
+        return result;
+    }
+
+    /** Throws a GitletException unless CONTENTS hash to ID, the ID of
+     *  the blob they are sent as. */
+    private static void checkBlob(String id, byte[] contents) {
+        if (!ObjectId.hash(Blob.HEADER, contents).toString().equals(id)) {
+            throw Utils.error("Pack object %s does not match its ID.", id);
+        }
+    }
+
+    /** Throws a GitletException unless BYTES are a serialized commit
+     *  whose ID, both as recorded in it and as computed afresh from its
+     *  contents, is ID. Only the classes a commit is made of are read. */
+    private static void checkCommit(String id, byte[] bytes) {
+        Commit c;
+        try (ObjectInputStream in =
+                 new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            in.setObjectInputFilter(COMMIT_CLASSES);
+            c = (Commit) in.readObject();
+        } catch (IOException | ClassNotFoundException | ClassCastException
+                 | IllegalArgumentException excp) {
+            throw Utils.error("Pack object %s is not a commit.", id);
+        }
+        boolean recorded = id.equals(c.getSHA());
+        c.setSHA();
+        if (!recorded || !id.equals(c.getSHA())) {
+            throw Utils.error("Pack object %s does not match its ID.", id);
+        }
+    }
+
+    /** Returns a new SHA-1 message digest. */
+    private static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not support SHA-1");
+        }
+    }
+
+    /** The classes a serialized commit may be made of. */
+    private static final ObjectInputFilter COMMIT_CLASSES =
+        ObjectInputFilter.Config.createFilter(
+            "maxdepth=20;gitlet.Commit;gitlet.MergeCommit;gitlet.Blob;"
+            + "gitlet.ObjectId;java.io.File;java.util.HashMap;"
+            + "java.util.Map$Entry;java.lang.*;!*");
+}
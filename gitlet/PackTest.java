@@ -0,0 +1,199 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import static gitlet.UnitTest.assertEquals;
+import static gitlet.UnitTest.assertFails;
+import static gitlet.UnitTest.assertTrue;
+import static gitlet.UnitTest.branch;
+import static gitlet.UnitTest.commitFile;
+import static gitlet.UnitTest.run;
+
+/** Tests of Pack.
+ *  @author Israel Rodriguez
+ */
+class PackTest {
+
+    /** An intact pack is stored whole. */
+    static void testIntactPackIsStored() throws IOException {
+        withPack((pack, dest, head) -> {
+            List<String> commits = Pack.read(stream(pack), dest);
+            assertEquals("commits received", List.of(head), commits);
+            assertTrue("commit not stored", dest.hasCommit(head));
+        });
+    }
+
+    /** A pack whose checksum does not match stores nothing. */
+    static void testBadChecksumStoresNothing() throws IOException {
+        withPack((pack, dest, head) -> {
+            pack[pack.length - 1] ^= 1;
+            String msg = assertFails("corrupt pack accepted",
+                () -> read(pack, dest));
+            assertEquals("error", "Pack checksum mismatch.", msg);
+            assertTrue("objects stored from a corrupt pack", empty(dest));
+        });
+    }
+
+    /** A pack cut short stores nothing. */
+    static void testTruncatedPackStoresNothing() throws IOException {
+        withPack((pack, dest, head) -> {
+            byte[] cut = Arrays.copyOf(pack, pack.length - 5);
+            String msg = assertFails("truncated pack accepted",
+                () -> read(cut, dest));
+            assertEquals("error", "Truncated pack.", msg);
+            assertTrue("objects stored from a truncated pack", empty(dest));
+        });
+    }
+
+    /** A pack naming an object by an ID that is not one, as a path out
+     *  of the store, is refused and writes nothing anywhere. */
+    static void testBadIdIsRejected() throws IOException {
+        withPack((pack, dest, head) -> {
+            File outside = new File(dest.directory().getParentFile(), "x");
+            String msg = assertFails("bad ID accepted", () -> read(
+                    forge(Pack.BLOB, "../../x", 1, new byte[] {'x'}), dest));
+            assertEquals("error", "Corrupt pack.", msg);
+            assertTrue("file written outside the store", !outside.exists());
+            assertTrue("objects stored from a bad pack", empty(dest));
+        });
+    }
+
+    /** Objects whose contents do not hash to the IDs they are sent as
+     *  are refused. */
+    static void testForgedObjectsAreRejected() throws IOException {
+        withPack((pack, dest, head) -> {
+            String id = "0".repeat(ObjectId.algorithm().hexLength());
+            String msg = assertFails("forged blob accepted", () -> read(
+                    forge(Pack.BLOB, id, 1, new byte[] {'x'}), dest));
+            assertEquals("error",
+                    "Pack object " + id + " does not match its ID.", msg);
+            byte[] commit = Utils.serialize(new Commit());
+            msg = assertFails("forged commit accepted", () -> read(
+                    forge(Pack.COMMIT, id, commit.length, commit), dest));
+            assertEquals("error",
+                    "Pack object " + id + " does not match its ID.", msg);
+            assertTrue("objects stored from a forged pack", empty(dest));
+        });
+    }
+
+    /** Entries claiming a negative length, or more than MAX_ENTRY bytes,
+     *  are refused, and one claiming more than the pack holds is found
+     *  to be cut short without allocating what it claims. */
+    static void testBadLengthIsRejected() throws IOException {
+        withPack((pack, dest, head) -> {
+            String id = "0".repeat(ObjectId.algorithm().hexLength());
+            for (int length : new int[] {-1, Pack.MAX_ENTRY + 1}) {
+                String msg = assertFails("length " + length + " accepted",
+                    () -> read(forge(Pack.BLOB, id, length, new byte[0]),
+                            dest));
+                assertEquals("error", "Corrupt pack.", msg);
+            }
+            String msg = assertFails("short entry accepted", () -> read(
+                    forge(Pack.BLOB, id, Integer.MAX_VALUE >> 1,
+                            new byte[10]), dest));
+            assertEquals("error", "Truncated pack.", msg);
+        });
+    }
+
+    /** Returns the uncompressed bytes of a pack, with a correct
+     *  checksum, of one entry of TYPE whose ID is ID and whose data,
+     *  said to be LENGTH bytes long, are DATA. */
+    private static byte[] forge(byte type, String id, int length,
+                                byte[] data) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(Pack.MAGIC);
+            out.writeInt(Pack.VERSION);
+            out.writeInt(1);
+            out.writeByte(type);
+            out.writeUTF(id);
+            out.writeInt(length);
+            out.write(data);
+            out.write(MessageDigest.getInstance("SHA-1")
+                    .digest(bytes.toByteArray()));
+            return bytes.toByteArray();
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** A test given the uncompressed bytes of a pack of the head commit
+     *  of a repository, an empty store to read it into, and the ID of
+     *  that commit. */
+    private interface PackCheck {
+        /** Runs the test on PACK, DEST and HEAD. */
+        void check(byte[] pack, ObjectStore dest, String head)
+                throws IOException;
+    }
+
+    /** Runs CHECK on a pack of a repository with one commit. */
+    private static void withPack(PackCheck check) throws IOException {
+        File root = UnitTest.tempDirectory();
+        try {
+            File source = new File(root, "source");
+            source.mkdirs();
+            run(source, Gitlet::init);
+            commitFile(source, "f.txt", "contents\n", "One");
+            String head = branch(source, "master");
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Pack.write(out, new RemoteRepository(source).objects(),
+                    List.of(head), Set.of(), true);
+            byte[] pack;
+            try (InputStream in = new InflaterInputStream(
+                    new ByteArrayInputStream(out.toByteArray()))) {
+                pack = in.readAllBytes();
+            }
+            check.check(pack, new ObjectStore(new File(root, "dest")), head);
+        } finally {
+            UnitTest.delete(root);
+        }
+    }
+
+    /** Reads the uncompressed PACK into DEST. */
+    private static void read(byte[] pack, ObjectStore dest) {
+        try {
+            Pack.read(stream(pack), dest);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Returns a stream of the uncompressed PACK, compressed. */
+    private static InputStream stream(byte[] pack) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflating = new DeflaterOutputStream(out)) {
+            deflating.write(pack);
+        }
+        return new ByteArrayInputStream(out.toByteArray());
+    }
+
+    /** Returns true iff DEST holds no files. */
+    private static boolean empty(ObjectStore dest) {
+        return count(dest.directory()) == 0;
+    }
+
+    /** Returns the number of files under DIR. */
+    private static int count(File dir) {
+        int result = 0;
+        File[] children = dir.listFiles();
+        if (children != null) {
+            for (File c : children) {
+                result += c.isDirectory() ? count(c) : 1;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,118 @@
+package gitlet;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+/** Bloom filters of the paths a commit changed, which answer "did this
+ *  commit change PATH?" with either "no" or "maybe". A filter is a byte
+ *  array, of BITS_PER_PATH bits for each path but at least MIN_BYTES
+ *  bytes, in which each path sets the HASHES bits chosen by double
+ *  hashing two 32-bit murmur3 hashes of its UTF-8 bytes. With these
+ *  settings about 1 query in 100 for a path the commit did not change
+ *  answers "maybe".
+ *
+ *  A commit that changed more than MAX_PATHS paths has the full filter,
+ *  of one byte with every bit set, which answers "maybe" for every
+ *  path. So does a commit whose parent is missing, since what it
+ *  changed is unknown. A commit that changed nothing has the empty
+ *  filter, which answers "no" for every path.
+ *  @author Israel Rodriguez
+ */
+class PathFilter {
+
+    /** Bits of filter per path. */
+    static final int BITS_PER_PATH = 10;
+
+    /** Number of bits each path sets. */
+    static final int HASHES = 7;
+
+    /** Smallest filter of a commit that changed something, in bytes. */
+    static final int MIN_BYTES = 8;
+
+    /** Most paths a filter records individually. */
+    static final int MAX_PATHS = 512;
+
+    /** The filter answering "maybe" for every path. */
+    static final byte[] FULL = {(byte) 0xff};
+
+    /** Returns the filter of PATHS. */
+    static byte[] build(Collection<String> paths) {
+        if (paths.isEmpty()) {
+            return new byte[0];
+        }
+        if (paths.size() > MAX_PATHS) {
+            return FULL;
+        }
+        byte[] filter = new byte[Math.max(MIN_BYTES,
+                (paths.size() * BITS_PER_PATH + 7) / 8)];
+        long bits = 8L * filter.length;
+        for (String path : paths) {
+            byte[] key = path.getBytes(StandardCharsets.UTF_8);
+            int h1 = murmur3(SEED1, key);
+            int h2 = murmur3(SEED2, key);
+            for (int i = 0; i < HASHES; i += 1) {
+                int bit = (int) (Integer.toUnsignedLong(h1 + i * h2) % bits);
+                filter[bit / 8] |= 1 << (bit % 8);
+            }
+        }
+        return filter;
+    }
+
+    /** Returns false if the commit whose filter is FILTER certainly did
+     *  not change PATH, and true if it may have. */
+    static boolean mayContain(byte[] filter, String path) {
+        if (filter.length == 0) {
+            return false;
+        }
+        long bits = 8L * filter.length;
+        byte[] key = path.getBytes(StandardCharsets.UTF_8);
+        int h1 = murmur3(SEED1, key);
+        int h2 = murmur3(SEED2, key);
+        for (int i = 0; i < HASHES; i += 1) {
+            int bit = (int) (Integer.toUnsignedLong(h1 + i * h2) % bits);
+            if ((filter[bit / 8] & (1 << (bit % 8))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns the 32-bit murmur3 hash of DATA with SEED. */
+    private static int murmur3(int seed, byte[] data) {
+        final int c1 = 0xcc9e2d51;
+        final int c2 = 0x1b873593;
+        int h = seed;
+        int end = data.length & ~3;
+        for (int i = 0; i < end; i += 4) {
+            int k = (data[i] & 0xff) | ((data[i + 1] & 0xff) << 8)
+                    | ((data[i + 2] & 0xff) << 16) | (data[i + 3] << 24);
+            k *= c1;
+            k = Integer.rotateLeft(k, 15);
+            k *= c2;
+            h ^= k;
+            h = Integer.rotateLeft(h, 13);
+            h = h * 5 + 0xe6546b64;
+        }
+        int tail = data.length & 3;
+        if (tail > 0) {
+            int k = 0;
+            for (int i = tail - 1; i >= 0; i -= 1) {
+                k ^= (data[end + i] & 0xff) << (8 * i);
+            }
+            k *= c1;
+            k = Integer.rotateLeft(k, 15);
+            k *= c2;
+            h ^= k;
+        }
+        h ^= data.length;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /** Seeds of the two hashes of a path. */
+    private static final int SEED1 = 0x293ae76f, SEED2 = 0x7e646e2c;
+}
@@ -0,0 +1,430 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+/** The branches of a repository. Most are kept together in the file
+ *  PACKED of the .gitlet directory, one line "ID NAME" per branch,
+ *  sorted by name, which is searched in place by bisection rather than
+ *  read whole. A branch updated since it was packed has a loose file
+ *  of its own under HEADS, named by the branch (so that the branch
+ *  R/master is the file HEADS/R/master) and holding the ID of the
+ *  commit it points to, which overrides its line in PACKED. Packing
+ *  moves the loose branches into PACKED.
+ *
+ *  A branch is changed by compare-and-swap, without locking the rest
+ *  of the repository: the new value is written to the branch's lock
+ *  file, which is created only if no other process has created it,
+ *  the branch is checked to still hold the value the caller expects,
+ *  and the lock file is then renamed over the branch file in a single
+ *  atomic step. Updates of different branches, by different processes,
+ *  never wait for each other, except to delete packed branches, which
+ *  rewrites PACKED under its own lock file.
+ *  @author Israel Rodriguez
+ */
+class Refs {
+
+    /** Directory, relative to the .gitlet directory, of branch files. */
+    static final String HEADS = "refs/heads";
+
+    /** Name, in the .gitlet directory, of the file of packed branches. */
+    static final String PACKED = "packed-refs";
+
+    /** Suffix of the lock file of a branch. */
+    static final String LOCK_SUFFIX = ".lock";
+
+    /** Milliseconds to wait for another process to release the lock
+     *  on a branch before giving up. */
+    static final long LOCK_TIMEOUT = 5000;
+
+    /** The branches of the repository whose .gitlet directory is DIR. */
+    Refs(File dir) {
+        _dir = dir;
+        _heads = Utils.join(dir, HEADS);
+        _packed = Utils.join(dir, PACKED);
+    }
+
+    /** Returns every branch, mapping its name to the ID of the commit it
+     *  points to, in order of name. */
+    Map<String, String> all() {
+        TreeMap<String, String> result = new TreeMap<>();
+        list("", result::put);
+        return result;
+    }
+
+    /** Calls ACTION with the name of each branch whose name starts with
+     *  PREFIX and the ID of the commit it points to, in order of name.
+     *  Only the lines of PACKED with that prefix are read, and only the
+     *  loose files in the directory the prefix names. */
+    void list(String prefix, BiConsumer<String, String> action) {
+        TreeMap<String, String> loose = new TreeMap<>();
+        int slash = prefix.lastIndexOf('/') + 1;
+        collect(new File(_heads, prefix.substring(0, slash)),
+                prefix.substring(0, slash), loose);
+        Iterator<Map.Entry<String, String>> looseIter =
+                loose.tailMap(prefix).entrySet().iterator();
+        Map.Entry<String, String> next = nextWithPrefix(looseIter, prefix);
+        ByteBuffer packed = mapPacked();
+        for (int i = search(packed, prefix); i < packed.limit();
+             i = lineEnd(packed, i) + 1) {
+            String name = name(packed, i);
+            if (!name.startsWith(prefix)) {
+                break;
+            }
+            while (next != null && next.getKey().compareTo(name) < 0) {
+                action.accept(next.getKey(), next.getValue());
+                next = nextWithPrefix(looseIter, prefix);
+            }
+            if (next != null && next.getKey().equals(name)) {
+                action.accept(name, next.getValue());
+                next = nextWithPrefix(looseIter, prefix);
+            } else {
+                action.accept(name, id(packed, i));
+            }
+        }
+        for (; next != null; next = nextWithPrefix(looseIter, prefix)) {
+            action.accept(next.getKey(), next.getValue());
+        }
+    }
+
+    /** Returns the ID of the commit the branch NAME points to, or null
+     *  if there is no such branch. */
+    String get(String name) {
+        if (!valid(name)) {
+            return null;
+        }
+        String result = read(file(name));
+        if (result == null) {
+            ByteBuffer packed = mapPacked();
+            int i = search(packed, name);
+            if (i < packed.limit() && name(packed, i).equals(name)) {
+                result = id(packed, i);
+            }
+        }
+        return result;
+    }
+
+    /** Points the branch NAME at the commit NEWID, creating the branch
+     *  if needed, or deletes it if NEWID is null, provided that it still
+     *  points at EXPECTED (or does not exist, if EXPECTED is null).
+     *  Otherwise, throws a GitletException and changes nothing. */
+    void update(String name, String expected, String newId) {
+        File ref = file(name);
+        File lock = new File(ref.getPath() + LOCK_SUFFIX);
+        lock(name, lock);
+        try {
+            String current = get(name);
+            if (!Objects.equals(current, expected)) {
+                throw Utils.error("Branch %s was changed by another process.",
+                        name);
+            }
+            if (newId == null) {
+                ref.delete();
+                if (current != null) {
+                    unpack(name);
+                }
+            } else {
+                if (current == null) {
+                    checkNesting(name);
+                }
+                Utils.writeContents(lock, newId);
+                Files.move(lock.toPath(), ref.toPath(),
+                        StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw Utils.error("Could not update branch %s: %s", name,
+                    e.getMessage());
+        } finally {
+            lock.delete();
+        }
+        if (newId == null) {
+            pruneEmpty(ref.getParentFile());
+        }
+    }
+
+    /** Moves every loose branch into PACKED, and returns the number
+     *  moved. A loose file is removed only if, under its lock, it still
+     *  holds the value packed; otherwise it goes on overriding it. */
+    int pack() {
+        TreeMap<String, String> loose = new TreeMap<>();
+        collect(_heads, "", loose);
+        if (loose.isEmpty()) {
+            return 0;
+        }
+        File lock = new File(_packed.getPath() + LOCK_SUFFIX);
+        lock(PACKED, lock);
+        try {
+            TreeMap<String, String> all = new TreeMap<>();
+            list("", all::put);
+            writePacked(lock, all);
+        } finally {
+            lock.delete();
+        }
+        for (Map.Entry<String, String> e : loose.entrySet()) {
+            File ref = file(e.getKey());
+            File refLock = new File(ref.getPath() + LOCK_SUFFIX);
+            lock(e.getKey(), refLock);
+            try {
+                if (e.getValue().equals(read(ref))) {
+                    ref.delete();
+                }
+            } finally {
+                refLock.delete();
+            }
+            pruneEmpty(ref.getParentFile());
+        }
+        return loose.size();
+    }
+
+    /** Returns the file of the packed branches. */
+    File packedFile() {
+        return _packed;
+    }
+
+    /** Throws a GitletException if the new branch NAME would extend
+     *  the name of another branch, or another branch would extend it,
+     *  as the loose files of such branches could not both exist. */
+    private void checkNesting(String name) {
+        boolean[] found = new boolean[1];
+        list(name + "/", (other, id) -> found[0] = true);
+        for (int i = name.indexOf('/'); i >= 0 && !found[0];
+             i = name.indexOf('/', i + 1)) {
+            found[0] = get(name.substring(0, i)) != null;
+        }
+        if (found[0]) {
+            throw Utils.error("A branch name cannot extend another one.");
+        }
+    }
+
+    /** Deletes DIR, a directory of loose branch files, if it is empty,
+     *  and so on up to HEADS. */
+    private void pruneEmpty(File dir) {
+        for (File d = dir; !d.equals(_heads) && d.delete();
+             d = d.getParentFile()) {
+            continue;
+        }
+    }
+
+    /** Removes the branch NAME from PACKED, if it is there. */
+    private void unpack(String name) {
+        File lock = new File(_packed.getPath() + LOCK_SUFFIX);
+        lock(PACKED, lock);
+        try {
+            ByteBuffer packed = mapPacked();
+            int i = search(packed, name);
+            if (i < packed.limit() && name(packed, i).equals(name)) {
+                TreeMap<String, String> rest = new TreeMap<>();
+                for (int j = 0; j < packed.limit();
+                     j = lineEnd(packed, j) + 1) {
+                    rest.put(name(packed, j), id(packed, j));
+                }
+                rest.remove(name);
+                writePacked(lock, rest);
+            }
+        } finally {
+            lock.delete();
+        }
+    }
+
+    /** Writes BRANCHES to LOCK, the lock file of PACKED, and renames it
+     *  over PACKED. */
+    private void writePacked(File lock, TreeMap<String, String> branches) {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, String> e : branches.entrySet()) {
+            text.append(e.getValue()).append(' ').append(e.getKey())
+                    .append('\n');
+        }
+        try {
+            Utils.writeContents(lock, text.toString());
+            Files.move(lock.toPath(), _packed.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw Utils.error("Could not pack branches: %s", e.getMessage());
+        }
+    }
+
+    /** Returns the contents of PACKED, mapped rather than read, or an
+     *  empty buffer if there is no such file. */
+    private ByteBuffer mapPacked() {
+        try (FileChannel channel = FileChannel.open(_packed.toPath(),
+                StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+        } catch (NoSuchFileException e) {
+            return ByteBuffer.allocate(0);
+        } catch (IOException e) {
+            throw Utils.error("Could not read branches: %s", e.getMessage());
+        }
+    }
+
+    /** Returns the start of the first line of PACKED whose name is not
+     *  less than NAME, or the end of PACKED if there is none. Each step
+     *  of the bisection backs up from the middle of the range to the
+     *  start of its line. */
+    private static int search(ByteBuffer packed, String name) {
+        int lo = 0;
+        int hi = packed.limit();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            while (mid > lo && packed.get(mid - 1) != '\n') {
+                mid -= 1;
+            }
+            if (name(packed, mid).compareTo(name) < 0) {
+                lo = lineEnd(packed, mid) + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** Returns the offset of the newline ending the line of PACKED that
+     *  starts at START. */
+    private static int lineEnd(ByteBuffer packed, int start) {
+        int i = start;
+        while (i < packed.limit() && packed.get(i) != '\n') {
+            i += 1;
+        }
+        return i;
+    }
+
+    /** Returns the ID on the line of PACKED that starts at START. */
+    private static String id(ByteBuffer packed, int start) {
+        int i = start;
+        while (packed.get(i) != ' ') {
+            i += 1;
+        }
+        return text(packed, start, i);
+    }
+
+    /** Returns the name on the line of PACKED that starts at START. */
+    private static String name(ByteBuffer packed, int start) {
+        int i = start;
+        while (packed.get(i) != ' ') {
+            i += 1;
+        }
+        return text(packed, i + 1, lineEnd(packed, i));
+    }
+
+    /** Returns the text of PACKED from START to END. */
+    private static String text(ByteBuffer packed, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        packed.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Returns the next entry of ITER if its name starts with PREFIX,
+     *  or null. */
+    private static Map.Entry<String, String> nextWithPrefix(
+            Iterator<Map.Entry<String, String>> iter, String prefix) {
+        if (!iter.hasNext()) {
+            return null;
+        }
+        Map.Entry<String, String> result = iter.next();
+        return result.getKey().startsWith(prefix) ? result : null;
+    }
+
+    /** Creates LOCK, the lock file of the branch NAME, waiting up to
+     *  LOCK_TIMEOUT for another process holding it to finish. */
+    private void lock(String name, File lock) {
+        lock.getParentFile().mkdirs();
+        if (!lock.getParentFile().isDirectory()) {
+            throw Utils.error("A branch name cannot extend another one.");
+        }
+        long deadline = System.currentTimeMillis() + LOCK_TIMEOUT;
+        while (true) {
+            try {
+                Files.createFile(lock.toPath());
+                return;
+            } catch (FileAlreadyExistsException e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw Utils.error("Branch %s is locked by another "
+                            + "process; remove %s if none is running.",
+                            name, lock.getPath());
+                }
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw Utils.error("Interrupted.");
+                }
+            } catch (IOException e) {
+                throw Utils.error("Could not lock branch %s: %s", name,
+                        e.getMessage());
+            }
+        }
+    }
+
+    /** Adds to RESULT the branches stored in DIR, whose names start with
+     *  PREFIX. */
+    private static void collect(File dir, String prefix,
+                                Map<String, String> result) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File f : files) {
+            String name = f.getName();
+            if (f.isDirectory()) {
+                collect(f, prefix + name + "/", result);
+            } else if (!name.endsWith(LOCK_SUFFIX) && !name.startsWith(".")) {
+                String id = read(f);
+                if (id != null) {
+                    result.put(prefix + name, id);
+                }
+            }
+        }
+    }
+
+    /** Returns the ID held in the branch file F, or null if there is
+     *  none. */
+    private static String read(File f) {
+        if (!f.isFile()) {
+            return null;
+        }
+        try {
+            return Utils.readContentsAsString(f).trim();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /** Returns the file of the branch NAME. */
+    File file(String name) {
+        if (!valid(name)) {
+            throw Utils.error("Invalid branch name: %s", name);
+        }
+        return new File(_heads, name);
+    }
+
+    /** Returns true iff NAME can name a branch. */
+    private static boolean valid(String name) {
+        return !name.isEmpty() && !name.startsWith("/") && !name.endsWith("/")
+                && !name.contains("..") && !name.endsWith(LOCK_SUFFIX)
+                && name.indexOf('\n') < 0;
+    }
+
+    /** The .gitlet directory of the repository. */
+    private final File _dir;
+
+    /** Directory holding the loose branch files. */
+    private final File _heads;
+
+    /** The file of packed branches. */
+    private final File _packed;
+}
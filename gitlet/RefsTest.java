@@ -0,0 +1,73 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+
+import static gitlet.UnitTest.assertEquals;
+import static gitlet.UnitTest.assertFails;
+import static gitlet.UnitTest.assertTrue;
+import static gitlet.UnitTest.branch;
+import static gitlet.UnitTest.commitFile;
+import static gitlet.UnitTest.run;
+
+/** Tests of Refs with more than one process using a repository.
+ *  @author Israel Rodriguez
+ */
+class RefsTest {
+
+    /** A branch moved by another process is not overwritten by an
+     *  update expecting its old value: the losing update is refused. */
+    static void testLosingUpdateIsReported() throws IOException {
+        File root = UnitTest.tempDirectory();
+        try {
+            run(root, Gitlet::init);
+            commitFile(root, "f.txt", "one\n", "One");
+            String before = branch(root, "master");
+
+            Utils.writeContents(new File(root, "f.txt"), "two\n");
+            run(root, g -> g.add("f.txt"));
+            Gitlet stale = new Gitlet(root.getPath());
+            gitlet(root, "commit", "Two");
+            String after = branch(root, "master");
+            assertTrue("other process did not commit", !after.equals(before));
+
+            String msg = assertFails("stale update accepted",
+                () -> new Refs(new File(root, ".gitlet"))
+                        .update("master", before, before));
+            assertEquals("error",
+                    "Branch master was changed by another process.", msg);
+            msg = assertFails("stale commit accepted", () -> {
+                stale.commit("Stale", null);
+                stale.close();
+            });
+            assertEquals("error",
+                    "Branch master was changed by another process.", msg);
+            assertEquals("branch after losing updates", after,
+                    branch(root, "master"));
+            /* The losing batch stays in the journal; replaying it on the
+             * next open must not move the branch either. */
+            run(root, g -> { });
+            String head = branch(root, "master");
+            assertEquals("branch after recovery", "Two",
+                    new RemoteRepository(root).objects().readCommit(head)
+                            .getMessage());
+        } finally {
+            UnitTest.delete(root);
+        }
+    }
+
+    /** Runs gitlet with ARGS as a separate process in DIR, and fails
+     *  unless it prints nothing. */
+    private static void gitlet(File dir, String... args) throws IOException {
+        Process p = UnitTest.gitlet(dir, args).redirectErrorStream(true)
+                .start();
+        String output = new String(p.getInputStream().readAllBytes());
+        try {
+            p.waitFor();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+        assertEquals("output of gitlet " + String.join(" ", args), "",
+                output);
+    }
+}
@@ -0,0 +1,103 @@
+package gitlet;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/** A Transport to a repository in a local directory. Unlike a full
+ *  Gitlet, it reads nothing up front; the branches are read when they
+ *  are asked for and commits only as the transfer walks them.
+ *  @author Israel Rodriguez
+ */
+class RemoteRepository implements Transport {
+
+    /** The repository whose .gitlet directory is DIR, or whose working
+     *  directory is DIR. */
+    RemoteRepository(File dir) {
+        _dir = dir.getName().equals(".gitlet") ? dir
+                : Utils.join(dir, ".gitlet");
+        _objects = new ObjectStore(Utils.join(_dir, "objects"));
+        _refs = new Refs(_dir);
+        Legacy.migrate(_dir, _objects, _refs);
+    }
+
+    /** Returns the branches of this repository. This is its
+     *  advertisement of the commits it has. */
+    @Override
+    public Map<String, String> refs() {
+        return _refs.all();
+    }
+
+    @Override
+    public String fetch(String branch, Set<String> haves, int depth,
+                        Set<String> shallow, boolean blobs,
+                        ObjectStore dest) {
+        String id = refs().get(branch);
+        if (id == null) {
+            throw Utils.error("That remote does not have that branch.");
+        }
+        Set<String> boundary = new HashSet<>();
+        List<String> missing;
+        if (depth <= 0 && shallow.isEmpty()) {
+            missing = Transfer.missingCommits(_objects, List.of(id), haves,
+                    dest);
+        } else {
+            missing = Transfer.missingCommits(_objects, List.of(id),
+                    dest::hasCommit, shallow,
+                    depth <= 0 ? Integer.MAX_VALUE : depth, boundary);
+        }
+        Transfer.sendPack(_objects, missing, boundary, blobs, dest);
+        shallow.addAll(boundary);
+        return id;
+    }
+
+    @Override
+    public void fetchBlobs(Collection<String> ids, ObjectStore dest) {
+        for (String id : ids) {
+            byte[] contents = _objects.readBlob(id);
+            if (contents != null) {
+                dest.writeBlob(id, contents);
+            }
+        }
+    }
+
+    @Override
+    public void push(ObjectStore source, String id, String branch,
+                     String expected) {
+        List<String> missing = Transfer.missingCommits(source, List.of(id),
+                new HashSet<>(refs().values()), _objects);
+        Transfer.sendPack(source, missing, Set.of(), true, _objects);
+        updateBranch(branch, expected, id);
+    }
+
+    /** Atomically points the branch NAME of this repository at the
+     *  commit NEWID, creating the branch if needed, provided that it
+     *  still points at EXPECTED (or does not exist, if EXPECTED is
+     *  null). If NAME is the current branch of this repository, its
+     *  HEAD moves along with it, being the commit that branch points
+     *  to. */
+    void updateBranch(String name, String expected, String newId) {
+        if (!Objects.equals(_refs.get(name), expected)) {
+            throw Utils.error("Please pull down remote changes before pushing.");
+        }
+        _refs.update(name, expected, newId);
+    }
+
+    /** Returns the object store of this repository. */
+    ObjectStore objects() {
+        return _objects;
+    }
+
+    /** The .gitlet directory of this repository. */
+    private File _dir;
+
+    /** The branches of this repository. */
+    private Refs _refs;
+
+    /** The objects of this repository. */
+    private ObjectStore _objects;
+}
@@ -0,0 +1,243 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/** Pairs files deleted on one side of a merge with files added on
+ *  the same side, so that a rename can be merged as a modification
+ *  of the renamed file rather than a delete/modify conflict.
+ *
+ *  Each blob is summarized by a MinHash sketch of its byte shingles.
+ *  Sketches are cached per blob ID, which stands for the contents alone,
+ *  in the file SKETCHES of the .gitlet directory, and candidate pairs
+ *  are found by locality-sensitive
+ *  hashing of sketch bands, so detection never compares every
+ *  deleted file against every added file.
+ *  @author Israel Rodriguez
+ */
+class RenameDetector {
+
+    /** Name, in the .gitlet directory, of the sketch cache. */
+    static final String SKETCHES = "sketches";
+
+    /** Number of hash functions in each sketch. */
+    static final int SKETCH_SIZE = 64;
+
+    /** Number of sketch entries per LSH band. */
+    static final int BAND_ROWS = 2;
+
+    /** Length, in bytes, of a shingle. */
+    static final int SHINGLE = 4;
+
+    /** Minimum estimated similarity for two files to be paired. */
+    static final double THRESHOLD = 0.5;
+
+    /** A detector whose sketch cache is persisted in the file CACHE. */
+    @SuppressWarnings("unchecked")
+    RenameDetector(File cache) {
+        _cacheFile = cache;
+        if (cache.isFile()) {
+            try {
+                _sketches = Utils.readObject(cache, HashMap.class);
+            } catch (IllegalArgumentException e) {
+                _sketches = new HashMap<>();
+            }
+        } else {
+            _sketches = new HashMap<>();
+        }
+    }
+
+    /** Returns a mapping from the paths in DELETED to the paths in ADDED
+     *  they were renamed to. Identical contents are paired first; the
+     *  remaining files are paired with their most similar candidate
+     *  whose estimated similarity is at least THRESHOLD. Each path is
+     *  used in at most one pair. */
+    Map<String, String> detect(Map<String, Blob> deleted,
+                               Map<String, Blob> added) {
+        TreeMap<String, String> renames = new TreeMap<>();
+        if (deleted.isEmpty() || added.isEmpty()) {
+            return renames;
+        }
+        Set<String> usedAdds = new HashSet<>();
+
+        HashMap<String, String> addsByContent = new HashMap<>();
+        for (Map.Entry<String, Blob> e : new TreeMap<>(added).entrySet()) {
+            if (!isEmpty(e.getValue())) {
+                addsByContent.putIfAbsent(contentId(e.getValue()),
+                        e.getKey());
+            }
+        }
+        for (Map.Entry<String, Blob> e : new TreeMap<>(deleted).entrySet()) {
+            if (isEmpty(e.getValue())) {
+                continue;
+            }
+            String match = addsByContent.get(contentId(e.getValue()));
+            if (match != null && !usedAdds.contains(match)) {
+                renames.put(e.getKey(), match);
+                usedAdds.add(match);
+            }
+        }
+
+        HashMap<Long, List<String>> buckets = new HashMap<>();
+        for (Map.Entry<String, Blob> e : new TreeMap<>(added).entrySet()) {
+            if (usedAdds.contains(e.getKey()) || isEmpty(e.getValue())) {
+                continue;
+            }
+            int[] sketch = sketch(e.getValue());
+            for (int b = 0; b < SKETCH_SIZE / BAND_ROWS; b += 1) {
+                buckets.computeIfAbsent(bandKey(sketch, b),
+                        k -> new ArrayList<>()).add(e.getKey());
+            }
+        }
+        for (Map.Entry<String, Blob> e : new TreeMap<>(deleted).entrySet()) {
+            if (renames.containsKey(e.getKey()) || isEmpty(e.getValue())) {
+                continue;
+            }
+            int[] sketch = sketch(e.getValue());
+            Set<String> candidates = new HashSet<>();
+            for (int b = 0; b < SKETCH_SIZE / BAND_ROWS; b += 1) {
+                List<String> bucket = buckets.get(bandKey(sketch, b));
+                if (bucket != null) {
+                    candidates.addAll(bucket);
+                }
+            }
+            String best = null;
+            double bestScore = THRESHOLD;
+            for (String cand : candidates) {
+                if (usedAdds.contains(cand)) {
+                    continue;
+                }
+                double score = similarity(sketch, sketch(added.get(cand)));
+                if (score > bestScore || (score == bestScore
+                        && (best == null || cand.compareTo(best) < 0))) {
+                    best = cand;
+                    bestScore = score;
+                }
+            }
+            if (best != null) {
+                renames.put(e.getKey(), best);
+                usedAdds.add(best);
+            }
+        }
+        return renames;
+    }
+
+    /** Writes the sketch cache back to disk if it has changed. */
+    void save() {
+        if (_dirty) {
+            Utils.writeObject(_cacheFile, _sketches);
+            _dirty = false;
+        }
+    }
+
+    /** Drops from the sketch cache, and from its file, the sketches of
+     *  blobs whose IDs KEEP does not accept. */
+    void retain(Predicate<String> keep) {
+        _dirty |= _sketches.keySet().removeIf(id -> !keep.test(id));
+        save();
+    }
+
+    /** Returns the (cached) MinHash sketch of the contents of BLOB. */
+    int[] sketch(Blob blob) {
+        int[] result = _sketches.get(blob.getSha());
+        if (result == null) {
+            result = computeSketch(blob.getContents());
+            _sketches.put(blob.getSha(), result);
+            _dirty = true;
+        }
+        return result;
+    }
+
+    /** Returns the MinHash sketch of the shingles of DATA. The i-th
+     *  hash function is derived from two base hashes as h1 + i * h2. */
+    static int[] computeSketch(byte[] data) {
+        int[] mins = new int[SKETCH_SIZE];
+        Arrays.fill(mins, Integer.MAX_VALUE);
+        int last = Math.max(1, data.length - SHINGLE + 1);
+        for (int start = 0; start < last; start += 1) {
+            int h = 0x811c9dc5;
+            int end = Math.min(data.length, start + SHINGLE);
+            for (int i = start; i < end; i += 1) {
+                h = (h ^ (data[i] & 0xff)) * 0x01000193;
+            }
+            int h1 = mix(h);
+            int h2 = mix(h1 ^ 0x5bd1e995) | 1;
+            for (int i = 0; i < SKETCH_SIZE; i += 1) {
+                int v = h1 + i * h2;
+                if (v < mins[i]) {
+                    mins[i] = v;
+                }
+            }
+        }
+        return mins;
+    }
+
+    /** Returns the estimated Jaccard similarity of sketches A and B. */
+    static double similarity(int[] a, int[] b) {
+        int same = 0;
+        for (int i = 0; i < SKETCH_SIZE; i += 1) {
+            if (a[i] == b[i]) {
+                same += 1;
+            }
+        }
+        return (double) same / SKETCH_SIZE;
+    }
+
+    /** Returns true iff A and B have identical contents, regardless
+     *  of the file names they are stored under. */
+    static boolean sameContents(Blob a, Blob b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        return Arrays.equals(a.getContents(), b.getContents());
+    }
+
+    /** Returns a key for band number BAND of SKETCH. */
+    private static long bandKey(int[] sketch, int band) {
+        long h = band;
+        for (int i = band * BAND_ROWS; i < (band + 1) * BAND_ROWS; i += 1) {
+            h = h * 0x100000001b3L + sketch[i];
+        }
+        return h;
+    }
+
+    /** Returns a well-mixed version of H (the murmur3 finalizer). */
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /** Returns an ID for the contents of BLOB alone, which its blob ID
+     *  is. */
+    private static String contentId(Blob blob) {
+        return blob.getSha();
+    }
+
+    /** Returns true if BLOB has no contents; empty files are never
+     *  considered renames of one another. */
+    private static boolean isEmpty(Blob blob) {
+        return blob.getContents() == null || blob.getContents().length == 0;
+    }
+
+    /** Cached sketches, keyed by the ID of the blob, and so by the
+     *  contents, they summarize. */
+    private HashMap<String, int[]> _sketches;
+
+    /** File in which _sketches is persisted. */
+    private File _cacheFile;
+
+    /** True if _sketches has entries not yet saved. */
+    private boolean _dirty;
+}
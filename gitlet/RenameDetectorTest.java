@@ -0,0 +1,49 @@
+package gitlet;
+
+import java.io.File;
+import java.util.HashMap;
+
+import static gitlet.UnitTest.assertTrue;
+import static gitlet.UnitTest.commitFile;
+import static gitlet.UnitTest.run;
+
+/** Tests of the sketch cache of RenameDetector.
+ *  @author Israel Rodriguez
+ */
+class RenameDetectorTest {
+
+    /** Files of the same contents share one cached sketch, and gc drops
+     *  the sketches of blobs it has collected while keeping those of
+     *  reachable blobs. */
+    @SuppressWarnings("unchecked")
+    static void testGcDropsSketchesOfCollectedBlobs() {
+        File root = UnitTest.tempDirectory();
+        try {
+            run(root, Gitlet::init);
+            commitFile(root, "f.txt", "some contents of f\n", "One");
+            File cache = Utils.join(root, ".gitlet", RenameDetector.SKETCHES);
+            Blob kept = new Blob("f.txt", root.getPath());
+            Blob renamed = new Blob("g.txt",
+                    Utils.readContents(new File(root, "f.txt")));
+            Blob gone = new Blob("h.txt", "never committed\n".getBytes());
+            RenameDetector detector = new RenameDetector(cache);
+            detector.sketch(kept);
+            detector.sketch(renamed);
+            detector.sketch(gone);
+            detector.save();
+            HashMap<String, int[]> sketches =
+                    Utils.readObject(cache, HashMap.class);
+            assertTrue("equal contents sketched twice", sketches.size() == 2);
+
+            run(root, g -> g.config(GarbageCollector.EXPIRE_KEY, "0"));
+            run(root, g -> g.gc(false));
+            sketches = Utils.readObject(cache, HashMap.class);
+            assertTrue("reachable sketch dropped",
+                    sketches.containsKey(kept.getSha()));
+            assertTrue("collected sketch kept",
+                    !sketches.containsKey(gone.getSha()));
+        } finally {
+            UnitTest.delete(root);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/** Builds synthetic repositories, for measuring how Gitlet scales. The
+ *  repository built depends only on the generator's settings and the
+ *  number of commits asked for, so that the same seed always gives the
+ *  same history. Usage:
+ *      java gitlet.RepoGenerator DIR COMMITS [SHAPE [FILES [SIZE
+ *                                [EDITRATE [SEED]]]]]
+ *  builds a repository of COMMITS commits in DIR, with history of the
+ *  given SHAPE (linear, branches or criss-cross; default linear), over
+ *  FILES files (default 100) of a mean SIZE bytes (default 1024), each
+ *  commit changing a fraction EDITRATE of them (default 0.02).
+ *  @author Israel Rodriguez
+ */
+public class RepoGenerator {
+
+    /** The shapes of history a generator builds. */
+    enum Shape {
+        /** A single branch, master. */
+        LINEAR,
+        /** Master and up to BRANCHES topic branches forked from it,
+         *  with runs of commits made on each in turn. */
+        BRANCHES,
+        /** Master and a side branch that repeatedly merge each other's
+         *  previous tips, so that merges have two best common
+         *  ancestors. */
+        CRISS_CROSS;
+
+        /** Returns the shape called NAME, as written on a command
+         *  line. */
+        static Shape parse(String name) {
+            try {
+                return valueOf(name.toUpperCase().replace('-', '_'));
+            } catch (IllegalArgumentException e) {
+                throw Utils.error("Unknown history shape: %s", name);
+            }
+        }
+    }
+
+    /** The distributions of file sizes a generator draws from. */
+    enum Sizes {
+        /** Every file has the mean size. */
+        FIXED,
+        /** Sizes are exponentially distributed about the mean, so most
+         *  files are small and a few are several times larger. */
+        EXPONENTIAL
+    }
+
+    /** Maximum number of topic branches in a BRANCHES history. */
+    static final int BRANCHES = 16;
+
+    /** Mean number of commits made on a branch before switching to
+     *  another one, or between criss-cross merges. */
+    static final int RUN = 10;
+
+    /** Builds a repository as described in the class comment, from
+     *  ARGS. */
+    public static void main(String... args) {
+        if (args.length < 2) {
+            System.out.println("Usage: java gitlet.RepoGenerator DIR COMMITS"
+                    + " [SHAPE [FILES [SIZE [EDITRATE [SEED]]]]]");
+            System.exit(1);
+        }
+        File dir = new File(args[0]);
+        dir.mkdirs();
+        Shape shape = args.length > 2 ? Shape.parse(args[2]) : Shape.LINEAR;
+        int files = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+        int size = args.length > 4 ? Integer.parseInt(args[4]) : 1024;
+        double rate = args.length > 5 ? Double.parseDouble(args[5]) : 0.02;
+        long seed = args.length > 6 ? Long.parseLong(args[6]) : 0;
+        new RepoGenerator(seed, shape, files, size, Sizes.EXPONENTIAL, rate)
+            .generate(dir, Integer.parseInt(args[1]));
+    }
+
+    /** A generator of histories of the given SHAPE, drawing its choices
+     *  from SEED, over FILES files whose sizes follow SIZES about a mean
+     *  of MEANSIZE bytes. Each commit changes about EDITRATE of the
+     *  files, and at least one. */
+    RepoGenerator(long seed, Shape shape, int files, int meanSize,
+                  Sizes sizes, double editRate) {
+        _seed = seed;
+        _shape = shape;
+        _files = files;
+        _meanSize = meanSize;
+        _sizes = sizes;
+        _edits = Math.max(1, (int) Math.round(editRate * files));
+    }
+
+    /** Makes COMMITS commits, counting the one adding the files but not
+     *  the initial commit, in a new repository in DIR. Leaves master
+     *  checked out. */
+    void generate(File dir, int commits) {
+        _dir = dir;
+        _random = new Random(_seed);
+        _round = 0;
+        _size = new int[_files];
+        for (int i = 0; i < _files; i += 1) {
+            _size[i] = _sizes == Sizes.FIXED ? _meanSize
+                    : (int) (-Math.log(1 - _random.nextDouble()) * _meanSize);
+        }
+        Gitlet g = new Gitlet(dir.getPath());
+        try {
+            g.init();
+            for (int i = 0; i < _files; i += 1) {
+                g.add(write(i));
+            }
+            g.commit("Add files", null);
+            List<String> branches = new ArrayList<>();
+            branches.add("master");
+            if (_shape == Shape.CRISS_CROSS) {
+                g.branch(SIDE);
+            }
+            String current = "master";
+            int made = 1;
+            // Bit 1: master has commits SIDE lacks; bit 2: the converse.
+            int ahead = 0;
+            while (made < commits) {
+                if (_shape == Shape.BRANCHES && _random.nextInt(RUN) == 0) {
+                    if (branches.size() <= BRANCHES && _random.nextBoolean()) {
+                        current = switchTo(g, current, "master");
+                        String name = "topic" + branches.size();
+                        g.branch(name);
+                        branches.add(name);
+                    }
+                    current = switchTo(g, current,
+                            branches.get(_random.nextInt(branches.size())));
+                } else if (_shape == Shape.CRISS_CROSS
+                        && _random.nextInt(RUN) == 0) {
+                    String other = current.equals(SIDE) ? "master" : SIDE;
+                    if (ahead == 3 && commits - made >= 2) {
+                        crissCross(g, current);
+                        made += 2;
+                        ahead = 0;
+                        continue;
+                    }
+                    current = switchTo(g, current, other);
+                }
+                commit(g, current, made);
+                ahead |= current.equals(SIDE) ? 2 : 1;
+                made += 1;
+            }
+            switchTo(g, current, "master");
+        } finally {
+            g.close();
+        }
+    }
+
+    /** Makes commit number N, on the branch CURRENT. In CRISS_CROSS
+     *  histories of at least four files, the files are dealt into four
+     *  slots: between criss-cross merges, master changes only files of
+     *  one slot and SIDE only those of the next, and the next round
+     *  uses the other two. Since merge picks just one of the two
+     *  closest common ancestors, this is what keeps every merge free
+     *  of conflicts: the files that differ between the two are left
+     *  alone until both branches agree on them again. */
+    private void commit(Gitlet g, String current, int n) {
+        for (int i = 0; i < _edits; i += 1) {
+            if (_shape == Shape.CRISS_CROSS && _files >= 4) {
+                int slot = 2 * (_round % 2) + (current.equals(SIDE) ? 1 : 0);
+                g.add(write(4 * _random.nextInt((_files - slot + 3) / 4)
+                        + slot));
+            } else {
+                g.add(write(_random.nextInt(_files)));
+            }
+        }
+        g.commit("Commit " + n, null);
+    }
+
+    /** Merges master and SIDE into each other, each taking the other's
+     *  tip from before either merge, and leaves the branch CURRENT
+     *  checked out. Both must have commits the other lacks. */
+    private void crissCross(Gitlet g, String current) {
+        switchTo(g, current, SIDE);
+        g.branch(TIP);
+        g.merge("master");
+        switchTo(g, SIDE, "master");
+        g.merge(TIP);
+        g.rmBranch(TIP);
+        switchTo(g, "master", current);
+        _round += 1;
+    }
+
+    /** Checks out the branch TO, if it is not CURRENT, and returns
+     *  TO. */
+    private static String switchTo(Gitlet g, String current, String to) {
+        if (!to.equals(current)) {
+            g.checkoutBranch(to);
+        }
+        return to;
+    }
+
+    /** Gives file number I new contents and returns its name. */
+    private String write(int i) {
+        String name = "file" + i + ".txt";
+        Utils.writeContents(new File(_dir, name), contents(_size[i]));
+        return name;
+    }
+
+    /** Returns SIZE random printable bytes, in lines of 64. */
+    byte[] contents(int size) {
+        byte[] result = new byte[size];
+        for (int i = 0; i < size; i += 1) {
+            result[i] = i % 64 == 63 ? (byte) '\n'
+                    : (byte) (' ' + _random.nextInt(95));
+        }
+        return result;
+    }
+
+    /** Name of the branch merged with master in CRISS_CROSS histories. */
+    private static final String SIDE = "side";
+
+    /** Name of the branch marking a tip of master during a criss-cross
+     *  merge. */
+    private static final String TIP = "tip";
+
+    /** Seed of the choices made. */
+    private final long _seed;
+
+    /** Shape of the histories built. */
+    private final Shape _shape;
+
+    /** Number of files. */
+    private final int _files;
+
+    /** Mean size of the files, in bytes. */
+    private final int _meanSize;
+
+    /** Distribution of file sizes. */
+    private final Sizes _sizes;
+
+    /** Number of files each commit changes. */
+    private final int _edits;
+
+    /** Working directory of the repository being built. */
+    private File _dir;
+
+    /** Source of the choices made for the repository being built. */
+    private Random _random;
+
+    /** Number of criss-cross merges made in the repository being
+     *  built. */
+    private int _round;
+
+    /** Size of each file of the repository being built. */
+    private int[] _size;
+}
@@ -0,0 +1,103 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** An exclusive lock on the staging area and working state of a
+ *  repository, held by a command for as long as it reads and changes
+ *  them. The lock is an operating-system lock on the file LOCK of the
+ *  .gitlet directory, so it is released even if the process holding
+ *  it dies, and a second process asking for it waits until it is free.
+ *  Branches are not covered by this lock; see Refs.
+ *  @author Israel Rodriguez
+ */
+class RepositoryLock implements AutoCloseable {
+
+    /** Name of the lock file in the .gitlet directory. */
+    static final String LOCK = "lock";
+
+    /** Waits for and takes the lock of the repository whose .gitlet
+     *  directory is DIR. Returns null if there is no such directory. */
+    static RepositoryLock acquire(File dir) {
+        return open(dir, true);
+    }
+
+    /** Takes the lock of the repository whose .gitlet directory is DIR
+     *  if no other process holds it. Returns null if one does, or if
+     *  there is no such directory. */
+    static RepositoryLock tryAcquire(File dir) {
+        return open(dir, false);
+    }
+
+    /** Returns true iff this process holds the lock of the repository
+     *  whose .gitlet directory is DIR. */
+    static boolean isHeld(File dir) {
+        return HELD.contains(dir.getAbsoluteFile());
+    }
+
+    /** Takes the lock of the repository whose .gitlet directory is DIR,
+     *  waiting for it if WAIT, and otherwise returning null if it is
+     *  taken. Returns null if there is no such directory. */
+    private static RepositoryLock open(File dir, boolean wait) {
+        if (!dir.isDirectory()) {
+            return null;
+        }
+        try {
+            RandomAccessFile file =
+                    new RandomAccessFile(Utils.join(dir, LOCK), "rw");
+            try {
+                FileChannel channel = file.getChannel();
+                FileLock lock = wait ? channel.lock() : channel.tryLock();
+                if (lock == null) {
+                    file.close();
+                    return null;
+                }
+                return new RepositoryLock(dir.getAbsoluteFile(), file, lock);
+            } catch (IOException | RuntimeException e) {
+                file.close();
+                throw e;
+            }
+        } catch (IOException e) {
+            throw Utils.error("Could not lock the repository: %s",
+                    e.getMessage());
+        }
+    }
+
+    /** A lock LOCK held on FILE, the lock file of the .gitlet directory
+     *  DIR. */
+    private RepositoryLock(File dir, RandomAccessFile file, FileLock lock) {
+        _dir = dir;
+        _file = file;
+        _lock = lock;
+        HELD.add(dir);
+    }
+
+    /** Releases this lock. */
+    @Override
+    public void close() {
+        HELD.remove(_dir);
+        try {
+            _lock.release();
+            _file.close();
+        } catch (IOException e) {
+            /* Closing the file releases the lock in any case. */
+        }
+    }
+
+    /** The .gitlet directories whose locks this process holds. */
+    private static final Set<File> HELD = ConcurrentHashMap.newKeySet();
+
+    /** The .gitlet directory this lock is for. */
+    private final File _dir;
+
+    /** The open lock file. */
+    private final RandomAccessFile _file;
+
+    /** The lock held on _file. */
+    private final FileLock _lock;
+}
@@ -0,0 +1,152 @@
+package gitlet;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/** Records how merge conflicts were resolved, so that a later merge
+ *  producing the same conflict can reuse the resolution (the
+ *  equivalent of git's "rerere").
+ *
+ *  Each conflict is identified by a hash of the normalized contents
+ *  of its two sides. For each such ID, the directory RR-CACHE holds a
+ *  subdirectory with the conflicted file (PREIMAGE) and, once the
+ *  user has committed a resolution, the resolved file (POSTIMAGE).
+ *  Conflicts awaiting a resolution are listed in RR-CACHE/MERGE_RR,
+ *  and the merge commit that left them in RR-CACHE/MERGE_HEAD. The
+ *  commit made next concludes that merge: if it is made on top of the
+ *  merge commit, the conflicted files it changes are recorded as
+ *  resolved, and either way the pending conflicts are forgotten.
+ *  @author Israel Rodriguez
+ */
+class ResolutionCache {
+
+    /** A cache stored in the directory DIR. */
+    @SuppressWarnings("unchecked")
+    ResolutionCache(File dir) {
+        _dir = dir;
+        _dir.mkdirs();
+        File pending = Utils.join(_dir, "MERGE_RR");
+        if (pending.isFile()) {
+            _pending = Utils.readObject(pending, HashMap.class);
+        } else {
+            _pending = new HashMap<>();
+        }
+        File head = Utils.join(_dir, "MERGE_HEAD");
+        _merge = head.isFile() ? Utils.readContentsAsString(head) : null;
+    }
+
+    /** Returns the ID of the conflict between the contents OURS and
+     *  THEIRS, either of which may be null for a deleted file. */
+    static String conflictId(Blob ours, Blob theirs) {
+        return Utils.sha1(normalize(ours), "\0", normalize(theirs));
+    }
+
+    /** Returns the recorded resolution of conflict ID, or null if there
+     *  is none. */
+    byte[] resolution(String id) {
+        File post = Utils.join(_dir, id, "postimage");
+        return post.isFile() ? Utils.readContents(post) : null;
+    }
+
+    /** Notes that FILENAME was left with the conflicted contents
+     *  PREIMAGE by the conflict ID, so its resolution can be recorded
+     *  when it is committed. */
+    void conflicted(String filename, String id, byte[] preimage) {
+        File entry = Utils.join(_dir, id);
+        entry.mkdirs();
+        Utils.writeContents(Utils.join(entry, "preimage"), preimage);
+        _pending.put(filename, id);
+        save();
+    }
+
+    /** Notes that the pending conflicts were committed, unresolved, as
+     *  the merge commit ID. */
+    void merged(String id) {
+        if (!_pending.isEmpty()) {
+            _merge = id;
+            save();
+        }
+    }
+
+    /** Concludes the merge whose conflicts are pending with a commit on
+     *  top of PARENT: if PARENT is the merge commit, records as
+     *  resolutions the versions of conflicted files staged for addition
+     *  in STAGE whose contents no longer match the conflicted file.
+     *  Then forgets the pending conflicts. */
+    void concludeMerge(StagingArea stage, String parent) {
+        if (_pending.isEmpty()) {
+            return;
+        }
+        if (parent.equals(_merge)) {
+            for (Map.Entry<String, String> e : _pending.entrySet()) {
+                Blob staged = stage.forAddition().get(e.getKey());
+                if (staged == null) {
+                    continue;
+                }
+                File entry = Utils.join(_dir, e.getValue());
+                File pre = Utils.join(entry, "preimage");
+                if (pre.isFile()
+                        && Arrays.equals(Utils.readContents(pre),
+                                         staged.getContents())) {
+                    continue;
+                }
+                entry.mkdirs();
+                Utils.writeContents(Utils.join(entry, "postimage"),
+                        staged.getContents());
+            }
+        }
+        clearPending();
+    }
+
+    /** Forgets all conflicts awaiting a resolution. */
+    void clearPending() {
+        if (!_pending.isEmpty() || _merge != null) {
+            _pending.clear();
+            _merge = null;
+            save();
+        }
+    }
+
+    /** Returns the contents of BLOB with line endings converted to
+     *  newlines and trailing whitespace removed from every line. */
+    private static String normalize(Blob blob) {
+        if (blob == null || blob.getContents() == null) {
+            return "";
+        }
+        String text = new String(blob.getContents()).replace("\r\n", "\n");
+        StringBuilder result = new StringBuilder();
+        for (String line : text.split("\n")) {
+            result.append(line.stripTrailing()).append('\n');
+        }
+        return result.toString().stripTrailing();
+    }
+
+    /** Writes the list of pending conflicts, and the merge commit that
+     *  left them, to disk. */
+    private void save() {
+        File pending = Utils.join(_dir, "MERGE_RR");
+        File head = Utils.join(_dir, "MERGE_HEAD");
+        if (_pending.isEmpty()) {
+            pending.delete();
+        } else {
+            Utils.writeObject(pending, _pending);
+        }
+        if (_merge == null) {
+            head.delete();
+        } else {
+            Utils.writeContents(head, _merge);
+        }
+    }
+
+    /** Directory holding the cache. */
+    private File _dir;
+
+    /** Mapping from conflicted file names to their conflict IDs. */
+    private HashMap<String, String> _pending;
+
+    /** ID of the merge commit that left the pending conflicts, or null
+     *  if it has not been made. */
+    private String _merge;
+}
@@ -0,0 +1,304 @@
+package gitlet;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Measures how each Gitlet command scales with the length of history,
+ *  and fails if one scales worse than its budget allows. Usage:
+ *      java gitlet.ScalingSuite [SHAPE] [COMMITS ...]
+ *  For each number of COMMITS (default 1000, 10000 and 100000), builds
+ *  a repository of that many commits with a RepoGenerator, with history
+ *  of the given SHAPE (default criss-cross), and runs every command on
+ *  it in a process of its own, as a user would. Reports, for each, the
+ *  wall time the command took, the peak size of the heap, and the bytes
+ *  the process read and wrote.
+ *
+ *  Each command has a budget: the exponent K such that its costs may
+ *  grow with the number of commits N as N^K. Between consecutive sizes,
+ *  a cost that grows by more than SLACK times what its budget allows,
+ *  and that is large enough not to be noise, is reported as a
+ *  regression, and the suite then exits with status 1.
+ *  @author Israel Rodriguez
+ */
+public class ScalingSuite {
+
+    /** Allowed factor of growth, beyond the budget, between sizes. */
+    static final double SLACK = 2;
+
+    /** Smallest costs, in order wall milliseconds, heap bytes, bytes
+     *  read and bytes written, that are compared with the budget. */
+    static final double[] FLOOR = {100, 64 << 20, 1 << 20, 1 << 20};
+
+    /** Names of the costs measured, as reported. */
+    static final String[] COSTS = {"ms", "heap", "read", "written"};
+
+    /** Runs the suite as described above, or, if ARGS starts with
+     *  PROBE, runs one command as described at probe. */
+    public static void main(String... args) throws IOException {
+        if (args.length > 0 && args[0].equals(PROBE)) {
+            probe(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        RepoGenerator.Shape shape = RepoGenerator.Shape.CRISS_CROSS;
+        List<Integer> sizes = new ArrayList<>();
+        for (String arg : args) {
+            if (Character.isDigit(arg.charAt(0))) {
+                sizes.add(Integer.parseInt(arg));
+            } else {
+                shape = RepoGenerator.Shape.parse(arg);
+            }
+        }
+        if (sizes.isEmpty()) {
+            sizes.addAll(List.of(1000, 10000, 100000));
+        }
+
+        List<String> failures = new ArrayList<>();
+        Map<String, double[]> previous = null;
+        int previousSize = 0;
+        for (int size : sizes) {
+            File root = Files.createTempDirectory("gitlet-scale").toFile();
+            try {
+                long start = System.nanoTime();
+                new RepoGenerator(0, shape, FILES, 1024,
+                        RepoGenerator.Sizes.EXPONENTIAL, 0.02)
+                    .generate(Utils.join(root, "repo"), size);
+                System.out.printf("commits=%d generate ms=%.0f%n", size,
+                        (System.nanoTime() - start) / 1e6);
+                Map<String, double[]> costs = runAll(root, size);
+                if (previous != null) {
+                    check(previous, previousSize, costs, size, failures);
+                }
+                previous = costs;
+                previousSize = size;
+            } finally {
+                delete(root);
+            }
+        }
+        if (!failures.isEmpty()) {
+            for (String f : failures) {
+                System.out.println("REGRESSION " + f);
+            }
+            System.exit(1);
+        }
+        System.out.println("All commands within budget.");
+    }
+
+    /** Runs each command of SCRIPT on the repository of SIZE commits
+     *  under ROOT, reporting and returning the costs of each. */
+    private static Map<String, double[]> runAll(File root, int size)
+            throws IOException {
+        File repo = Utils.join(root, "repo");
+        File clone = Utils.join(root, "clone");
+        clone.mkdirs();
+        Map<String, double[]> result = new HashMap<>();
+        for (String[] step : SCRIPT) {
+            File dir = step[0].equals("clone") ? clone : repo;
+            if (step[1].equals("edit")) {
+                Utils.writeContents(Utils.join(dir, step[2]),
+                        "Edited at " + size + " commits.\n");
+                continue;
+            }
+            List<String> args = new ArrayList<>(Arrays.asList(step)
+                    .subList(2, step.length));
+            if (args.contains("HEAD")) {
+                args.set(args.indexOf("HEAD"),
+                    new Refs(Utils.join(repo, ".gitlet")).get("master"));
+            }
+            double[] costs = run(dir, args);
+            result.put(step[1], costs);
+            System.out.printf("commits=%d command=%s ms=%.1f heap=%.0f"
+                    + " read=%.0f written=%.0f%n", size, step[1],
+                    costs[0], costs[1], costs[2], costs[3]);
+        }
+        return result;
+    }
+
+    /** Runs gitlet.Main with ARGS in a new process whose working
+     *  directory is DIR, and returns its costs. */
+    private static double[] run(File dir, List<String> args)
+            throws IOException {
+        List<String> command = new ArrayList<>(List.of(
+                Utils.join(System.getProperty("java.home"), "bin", "java")
+                    .getPath(),
+                "-cp", classPath(),
+                ScalingSuite.class.getName(), PROBE));
+        command.addAll(args);
+        Process process = new ProcessBuilder(command).directory(dir)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+        String last = null;
+        try (BufferedReader err = new BufferedReader(
+                new InputStreamReader(process.getErrorStream()))) {
+            for (String line = err.readLine(); line != null;
+                    line = err.readLine()) {
+                last = line;
+            }
+        }
+        try {
+            process.waitFor();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (last == null || !last.startsWith(PROBE + " ")) {
+            throw Utils.error("No costs reported for %s.", args);
+        }
+        String[] fields = last.split(" ");
+        double[] costs = new double[COSTS.length];
+        for (int i = 0; i < costs.length; i += 1) {
+            costs[i] = Double.parseDouble(fields[i + 1]);
+        }
+        return costs;
+    }
+
+    /** Returns the class path of this process, with each entry made
+     *  absolute so that it holds in any working directory. */
+    private static String classPath() {
+        List<String> entries = new ArrayList<>();
+        for (String entry : System.getProperty("java.class.path")
+                 .split(File.pathSeparator)) {
+            entries.add(new File(entry).getAbsolutePath());
+        }
+        return String.join(File.pathSeparator, entries);
+    }
+
+    /** Adds to FAILURES a description of each cost in COSTS, measured
+     *  at SIZE commits, that grew beyond its budget since the
+     *  corresponding cost in BEFORE, measured at BEFORESIZE commits. */
+    private static void check(Map<String, double[]> before, int beforeSize,
+                              Map<String, double[]> costs, int size,
+                              List<String> failures) {
+        for (String[] budget : BUDGETS) {
+            double[] was = before.get(budget[0]);
+            double[] is = costs.get(budget[0]);
+            if (was == null || is == null) {
+                continue;
+            }
+            double allowed = SLACK * Math.pow((double) size / beforeSize,
+                    Double.parseDouble(budget[1]));
+            for (int i = 0; i < COSTS.length; i += 1) {
+                if (is[i] >= FLOOR[i] && is[i] > allowed * Math.max(was[i], 1)) {
+                    failures.add(String.format("command=%s %s grew %.1fx from"
+                            + " %d to %d commits; budget N^%s allows %.1fx",
+                            budget[0], COSTS[i], is[i] / Math.max(was[i], 1),
+                            beforeSize, size, budget[1], allowed));
+                }
+            }
+        }
+    }
+
+    /** Runs gitlet.Main with ARGS, and reports its costs on the standard
+     *  error as the last line, even if it exits. */
+    private static void probe(String[] args) {
+        long[] io = io();
+        long start = System.nanoTime();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            double millis = (System.nanoTime() - start) / 1e6;
+            long heap = 0;
+            for (MemoryPoolMXBean pool
+                     : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    heap += pool.getPeakUsage().getUsed();
+                }
+            }
+            long[] after = io();
+            System.err.printf("%s %.3f %d %d %d%n", PROBE, millis, heap,
+                    after[0] - io[0], after[1] - io[1]);
+        }));
+        Main.main(args);
+    }
+
+    /** Returns the bytes this process has read and written so far, or
+     *  zeroes where the system does not say. */
+    private static long[] io() {
+        long[] result = new long[2];
+        File stats = new File("/proc/self/io");
+        if (!stats.isFile()) {
+            return result;
+        }
+        for (String line : Utils.readContentsAsString(stats).split("\n")) {
+            if (line.startsWith("rchar:")) {
+                result[0] = Long.parseLong(line.substring(6).trim());
+            } else if (line.startsWith("wchar:")) {
+                result[1] = Long.parseLong(line.substring(6).trim());
+            }
+        }
+        return result;
+    }
+
+    /** Deletes F and everything under it. */
+    private static void delete(File f) {
+        File[] children = f.listFiles();
+        if (children != null) {
+            for (File c : children) {
+                delete(c);
+            }
+        }
+        f.delete();
+    }
+
+    /** First argument marking a process that runs one command. */
+    private static final String PROBE = "probe";
+
+    /** Number of files in the repositories built. */
+    private static final int FILES = 100;
+
+    /** The commands run on each repository, in order: the repository
+     *  (repo, or clone, which fetches from it), a name for the command,
+     *  and its arguments. HEAD stands for the ID of the tip of master
+     *  in repo. The pseudo-command edit changes a file. */
+    private static final String[][] SCRIPT = {
+        {"repo", "status", "status"},
+        {"repo", "log", "log"},
+        {"repo", "global-log", "global-log"},
+        {"repo", "find", "find", "Commit 1"},
+        {"repo", "branch", "branch", "scaling"},
+        {"repo", "rm-branch", "rm-branch", "scaling"},
+        {"repo", "config", "config", "gc.auto"},
+        {"repo", "checkout-file", "checkout", "--", "file0.txt"},
+        {"repo", "edit", "file0.txt"},
+        {"repo", "add", "add", "file0.txt"},
+        {"repo", "commit", "commit", "Scaling change"},
+        {"repo", "rm", "rm", "file2.txt"},
+        {"repo", "reset", "reset", "HEAD"},
+        {"repo", "checkout-branch", "checkout", "side"},
+        {"repo", "edit", "file1.txt"},
+        {"repo", "add-side", "add", "file1.txt"},
+        {"repo", "commit-side", "commit", "Scaling side change"},
+        {"repo", "checkout-back", "checkout", "master"},
+        {"repo", "merge", "merge", "side"},
+        {"repo", "gc", "gc"},
+        {"clone", "init", "init"},
+        {"clone", "add-remote", "add-remote", "origin", "../repo/.gitlet"},
+        {"clone", "fetch", "fetch", "origin", "master"},
+        {"clone", "pull", "pull", "origin", "master"},
+        {"clone", "edit", "file4.txt"},
+        {"clone", "add-clone", "add", "file4.txt"},
+        {"clone", "commit-clone", "commit", "Scaling clone change"},
+        {"clone", "push", "push", "origin", "master"},
+    };
+
+    /** The budget of each command named in SCRIPT: the exponent of the
+     *  number of commits its costs may grow with. The first commit in
+     *  the clone follows the fetch of the whole history, and so runs an
+     *  automatic gc. */
+    private static final String[][] BUDGETS = {
+        {"status", "0"}, {"log", "1"}, {"global-log", "1"}, {"find", "1"},
+        {"branch", "0"}, {"rm-branch", "0"}, {"config", "0"},
+        {"checkout-file", "0"}, {"add", "0"}, {"commit", "0"}, {"rm", "0"},
+        {"reset", "0"}, {"checkout-branch", "0"}, {"add-side", "0"},
+        {"commit-side", "0"}, {"checkout-back", "0"}, {"merge", "1"},
+        {"gc", "1"}, {"init", "0"}, {"add-remote", "0"}, {"fetch", "1"},
+        {"pull", "1"}, {"add-clone", "0"}, {"commit-clone", "1"},
+        {"push", "0"},
+    };
+}
@@ -0,0 +1,162 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+
+import static gitlet.UnitTest.assertEquals;
+import static gitlet.UnitTest.assertFails;
+import static gitlet.UnitTest.assertTrue;
+import static gitlet.UnitTest.branch;
+import static gitlet.UnitTest.commitFile;
+import static gitlet.UnitTest.run;
+
+/** Tests of GitletServer and HttpTransport over the loopback interface.
+ *  @author Israel Rodriguez
+ */
+class ServerTest {
+
+    /** The server listens only on the loopback address by default. */
+    static void testDefaultsToLoopback() throws IOException {
+        assertTrue("default address is not loopback",
+                InetAddress.getByName(GitletServer.LOOPBACK)
+                        .isLoopbackAddress());
+    }
+
+    /** A clone fetches the served history, pushes a commit on top of it,
+     *  and is refused a push that would drop a commit made since. */
+    static void testFetchAndPush() throws IOException {
+        File root = UnitTest.tempDirectory();
+        File source = new File(root, "source");
+        File target = new File(root, "target");
+        source.mkdirs();
+        target.mkdirs();
+        run(source, Gitlet::init);
+        commitFile(source, "f.txt", "one\n", "One");
+
+        GitletServer server = new GitletServer(new File(source, ".gitlet"));
+        int port = server.start(GitletServer.LOOPBACK, 0);
+        try {
+            run(target, Gitlet::init);
+            String url = "http://" + GitletServer.LOOPBACK + ":" + port;
+            run(target, g -> g.addRemote("origin", url));
+            run(target, g -> g.fetch("origin", "master", 0, false));
+            String fetched = branch(target, "origin/master");
+            assertEquals("fetched branch", branch(source, "master"), fetched);
+
+            run(target, g -> g.reset(fetched));
+            commitFile(target, "f.txt", "two\n", "Two");
+            run(target, g -> g.push("origin", "master"));
+            assertEquals("pushed branch", branch(target, "master"),
+                    branch(source, "master"));
+
+            commitFile(source, "g.txt", "remote\n", "Remote");
+            String remoteHead = branch(source, "master");
+            commitFile(target, "f.txt", "three\n", "Three");
+            String msg = assertFails("non-fast-forward push accepted",
+                () -> run(target, g -> g.push("origin", "master")));
+            assertEquals("refusal",
+                    "Please pull down remote changes before pushing.", msg);
+            assertEquals("remote branch after refused push", remoteHead,
+                    branch(source, "master"));
+
+            Transport transport = new HttpTransport(url);
+            ObjectStore objects = new RemoteRepository(target).objects();
+            assertFails("push from a stale branch accepted",
+                () -> transport.push(objects, branch(target, "master"),
+                        "master", fetched));
+            assertEquals("remote branch after stale push", remoteHead,
+                    branch(source, "master"));
+        } finally {
+            server.stop();
+            UnitTest.delete(root);
+        }
+    }
+
+    /** Requests naming something other than an object ID are refused
+     *  before the store is looked at, so no file outside it is read. */
+    static void testBadWantsAreRefused() throws IOException {
+        File root = UnitTest.tempDirectory();
+        File source = new File(root, "source");
+        source.mkdirs();
+        run(source, Gitlet::init);
+        commitFile(source, "f.txt", "one\n", "One");
+        Utils.writeContents(new File(root, "secret"), "secret\n");
+
+        GitletServer server = new GitletServer(new File(source, ".gitlet"));
+        int port = server.start(GitletServer.LOOPBACK, 0);
+        try {
+            String url = "http://" + GitletServer.LOOPBACK + ":" + port;
+            assertEquals("upload-blobs status", 400,
+                    post(url + "/upload-blobs",
+                            "want ../../../../secret\n"));
+            assertEquals("upload-pack status", 400,
+                    post(url + "/upload-pack",
+                            "want-ref master\nhave ../../../secret\n"));
+        } finally {
+            server.stop();
+            UnitTest.delete(root);
+        }
+    }
+
+    /** A push is refused unless it names well-formed IDs and the commit
+     *  it would move the branch to is in the repository once its pack
+     *  is stored. */
+    static void testBadPushesAreRefused() throws IOException {
+        File root = UnitTest.tempDirectory();
+        File source = new File(root, "source");
+        source.mkdirs();
+        run(source, Gitlet::init);
+        commitFile(source, "f.txt", "one\n", "One");
+        String head = branch(source, "master");
+
+        GitletServer server = new GitletServer(new File(source, ".gitlet"));
+        int port = server.start(GitletServer.LOOPBACK, 0);
+        try {
+            ByteArrayOutputStream empty = new ByteArrayOutputStream();
+            Pack.write(empty, new RemoteRepository(source).objects(),
+                    List.of(), Set.of(), true);
+            String url = "http://" + GitletServer.LOOPBACK + ":" + port
+                    + "/receive-pack?branch=master&old=" + head;
+            assertEquals("bad new ID", 400,
+                    post(url + "&new=../../x", empty.toByteArray()));
+            assertEquals("bad old ID", 400,
+                    post(url.replace(head, "..%2Fx") + "&new=" + head,
+                            empty.toByteArray()));
+            String absent = "0".repeat(head.length());
+            assertEquals("absent new commit", 409,
+                    post(url + "&new=" + absent, empty.toByteArray()));
+            assertEquals("branch after refused pushes", head,
+                    branch(source, "master"));
+        } finally {
+            server.stop();
+            UnitTest.delete(root);
+        }
+    }
+
+    /** Posts BODY to URL and returns the status of the response. */
+    private static int post(String url, String body) throws IOException {
+        return post(url, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Posts BODY to URL and returns the status of the response. */
+    private static int post(String url, byte[] body) throws IOException {
+        HttpURLConnection conn =
+                (HttpURLConnection) new URL(url).openConnection();
+        conn.setRequestMethod("POST");
+        conn.setDoOutput(true);
+        try (OutputStream out = conn.getOutputStream()) {
+            out.write(body);
+        }
+        int status = conn.getResponseCode();
+        conn.disconnect();
+        return status;
+    }
+}
@@ -1,75 +1,113 @@
 package gitlet;
 
-import java.io.Serializable;
-import java.util.HashMap;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Map;
 import java.util.TreeMap;
 
 
 /** The staging area in a Gitlet repository.
- * @author Israel Rodriguez
+ *
+ *  The contents of a file staged for addition go into the ObjectStore
+ *  when the file is staged, so the staging area holds only references:
+ *  the name and blob ID of each file staged for addition or for
+ *  removal. It is stored as a table of these, sorted by name, of a few
+ *  dozen bytes per file, which toBytes writes and fromBytes reads back
+ *  as blobs that read their contents from the store when needed.
+ *  @author Israel Rodriguez
  */
-public class StagingArea implements Serializable {
-
-    /** For serializing purposes. */
-    private static final long serialVersionUID = 0;
+public class StagingArea {
 
     /** Creates a new Staging Area. */
     public StagingArea() {
-        _stagedForAdd = new HashMap<>();
-        _stagedForRem = new HashMap<>();
-        _sortedAdd = new TreeMap<>();
-        _sortedRem = new TreeMap<>();
+        _stagedForAdd = new TreeMap<>();
+        _stagedForRem = new TreeMap<>();
+    }
+
+    /** Returns the staging area written as BYTES by toBytes, whose blobs
+     *  read their contents from STORE. */
+    static StagingArea fromBytes(byte[] bytes, ObjectStore store) {
+        StagingArea result = new StagingArea();
+        try (DataInputStream in =
+                 new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (in.readByte() != VERSION) {
+                throw Utils.error("Unknown staging area format.");
+            }
+            readTable(in, result._stagedForAdd, store);
+            readTable(in, result._stagedForRem, store);
+        } catch (IOException excp) {
+            throw Utils.error("Corrupt staging area.");
+        }
+        return result;
     }
 
+    /** Returns this staging area as stored. The contents of the blobs
+     *  staged must already be in the store. */
+    byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            writeTable(out, _stagedForAdd);
+            writeTable(out, _stagedForRem);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return bytes.toByteArray();
+    }
 
     /** Wipes the contents of the staging area. */
     public void clean() {
         _stagedForAdd.clear();
         _stagedForRem.clear();
-        _sortedRem.clear();
-        _sortedAdd.clear();
     }
 
-    /** Returns the stage where files are staged for addition. */
-    public HashMap<String, Blob> forAddition() {
+    /** Returns the files staged for addition, in lexicographic order. */
+    public TreeMap<String, Blob> forAddition() {
         return _stagedForAdd;
     }
 
-    /** Returns the stage where files are staged for removal. */
-    public HashMap<String, Blob> forRemoval() {
+    /** Returns the files staged for removal, in lexicographic order. */
+    public TreeMap<String, Blob> forRemoval() {
         return _stagedForRem;
     }
 
-    /** Returns the files staged for removal in lexicographic order. */
-    public TreeMap<String, Blob> sortedRem() {
-        _sortedRem.putAll(_stagedForRem);
-        return _sortedRem;
-    }
-
-    /** Returns the files staged for addition in lexicographic order. */
-    public TreeMap<String, Blob> sortedAdd() {
-        _sortedAdd.putAll(_stagedForAdd);
-        return _sortedAdd;
-    }
-
     /** Returns True only if there are no changes staged.*/
     public boolean isEmpty() {
         return _stagedForAdd.isEmpty() && _stagedForRem.isEmpty();
     }
 
-    /** HashMap that maps a filenames with their contents.
-     * These files are staged for addition. */
-    private HashMap<String, Blob> _stagedForAdd;
+    /** Writes the names and blob IDs of FILES to OUT. */
+    private static void writeTable(DataOutputStream out,
+                                   TreeMap<String, Blob> files)
+        throws IOException {
+        out.writeInt(files.size());
+        for (Map.Entry<String, Blob> e : files.entrySet()) {
+            out.writeUTF(e.getKey());
+            ObjectId.write(out, e.getValue().id());
+        }
+    }
+
+    /** Reads into FILES a table written by writeTable from IN, making
+     *  blobs that read their contents from STORE. */
+    private static void readTable(DataInputStream in,
+                                  TreeMap<String, Blob> files,
+                                  ObjectStore store)
+        throws IOException {
+        for (int n = in.readInt(); n > 0; n -= 1) {
+            String name = in.readUTF();
+            files.put(name, new Blob(name, ObjectId.read(in), store));
+        }
+    }
 
-    /** HashMap that maps a filenames with their contents.
-     * These files are staged for removal. */
-    private HashMap<String, Blob> _stagedForRem;
+    /** Version of the stored form. */
+    private static final byte VERSION = 1;
 
-    /** Used to lexicographically sort the files staged for
-     * addition. */
-    private TreeMap<String, Blob> _sortedAdd;
+    /** Maps the names of files staged for addition to their blobs. */
+    private final TreeMap<String, Blob> _stagedForAdd;
 
-    /** Used to lexicographically sort the files staged for
-     * removal. */
-    private TreeMap<String, Blob> _sortedRem;
+    /** Maps the names of files staged for removal to their blobs. */
+    private final TreeMap<String, Blob> _stagedForRem;
 }
@@ -0,0 +1,327 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** Accounting of where the time and I/O of one Gitlet command go,
+ *  reported as a single line of JSON when the command finishes. Tracing
+ *  is turned on by the option --trace before the command, which reports
+ *  on the standard error, or by the environment variable TRACE_ENV,
+ *  which reports on the standard error if it is 1 and otherwise appends
+ *  to the file it names.
+ *
+ *  The report gives the command's wall time; the count and total time
+ *  of each phase (phases may nest, so their times overlap); counts of
+ *  events such as commits loaded from the object store; the number of
+ *  SHA-1 hashes taken and the bytes hashed; the bytes read and written
+ *  in each file of the .gitlet directory, with objects grouped by kind
+ *  and the working directory as one; and, where the JVM measures them,
+ *  the bytes allocated by the main thread and the collections run.
+ *
+ *  Every hook tests the single flag ENABLED first, so that tracing
+ *  costs nothing measurable when it is off.
+ *  @author Israel Rodriguez
+ */
+class Trace {
+
+    /** Environment variable that turns tracing on. */
+    static final String TRACE_ENV = "GITLET_TRACE";
+
+    /** Option that turns tracing on. */
+    static final String OPTION = "--trace";
+
+    /** True iff the current command is being traced. */
+    static boolean enabled() {
+        return _enabled;
+    }
+
+    /** Starts tracing the command COMMAND with arguments ARGS, reporting
+     *  as requested by OPTION, if TRACEOPTION, or otherwise by
+     *  TRACE_ENV. Does nothing if neither asks for tracing. */
+    static void start(boolean traceOption, String command, String[] args) {
+        String env = System.getenv(TRACE_ENV);
+        if (traceOption) {
+            _destination = null;
+        } else if (env != null && !env.isEmpty() && !env.equals("0")) {
+            _destination = env.equals("1") ? null : env;
+        } else {
+            return;
+        }
+        _enabled = true;
+        _command = command;
+        _args = args;
+        _repository = new File(System.getProperty("user.dir"), ".gitlet")
+                .getAbsolutePath() + File.separator;
+        _allocated = allocated();
+        _gc = gc();
+        _start = System.nanoTime();
+    }
+
+    /** Starts the phase NAME, which ends when the returned Phase is
+     *  closed. */
+    static Phase phase(String name) {
+        return _enabled ? new Phase(name) : NO_PHASE;
+    }
+
+    /** Counts one occurrence of the event NAME. */
+    static void count(String name) {
+        if (_enabled) {
+            _counts.merge(name, 1L, Long::sum);
+        }
+    }
+
+    /** Records the hashing of BYTES bytes. */
+    static void hash(long bytes) {
+        if (_enabled) {
+            _hashes += 1;
+            _hashed += bytes;
+        }
+    }
+
+    /** Records the reading of BYTES bytes from FILE. */
+    static void read(File file, long bytes) {
+        if (_enabled) {
+            _files.computeIfAbsent(key(file), k -> new long[2])[0] += bytes;
+        }
+    }
+
+    /** Records the writing of BYTES bytes to FILE. */
+    static void write(File file, long bytes) {
+        if (_enabled) {
+            _files.computeIfAbsent(key(file), k -> new long[2])[1] += bytes;
+        }
+    }
+
+    /** Ends tracing, reporting the command as having FAILED or not. */
+    static void finish(boolean failed) {
+        if (!_enabled) {
+            return;
+        }
+        _enabled = false;
+        double wall = (System.nanoTime() - _start) / 1e6;
+        StringBuilder json = new StringBuilder("{\"command\":");
+        string(json, _command);
+        json.append(",\"args\":[");
+        for (int i = 0; i < _args.length; i += 1) {
+            json.append(i == 0 ? "" : ",");
+            string(json, _args[i]);
+        }
+        json.append("],\"status\":\"").append(failed ? "error" : "ok")
+            .append("\",\"ms\":").append(millis(wall)).append(",\"phases\":{");
+        String sep = "";
+        for (Map.Entry<String, long[]> e : _phases.entrySet()) {
+            json.append(sep);
+            string(json, e.getKey());
+            json.append(":{\"count\":").append(e.getValue()[0])
+                .append(",\"ms\":").append(millis(e.getValue()[1] / 1e6))
+                .append('}');
+            sep = ",";
+        }
+        json.append("},\"counts\":{");
+        sep = "";
+        for (Map.Entry<String, Long> e : _counts.entrySet()) {
+            json.append(sep);
+            string(json, e.getKey());
+            json.append(':').append(e.getValue());
+            sep = ",";
+        }
+        json.append("},\"hashes\":{\"count\":").append(_hashes)
+            .append(",\"bytes\":").append(_hashed).append("},\"files\":{");
+        sep = "";
+        for (Map.Entry<String, long[]> e : _files.entrySet()) {
+            json.append(sep);
+            string(json, e.getKey());
+            json.append(":{\"read\":").append(e.getValue()[0])
+                .append(",\"written\":").append(e.getValue()[1]).append('}');
+            sep = ",";
+        }
+        json.append('}');
+        long allocated = allocated();
+        if (allocated >= 0 && _allocated >= 0) {
+            json.append(",\"allocated\":").append(allocated - _allocated);
+        }
+        long[] gc = gc();
+        json.append(",\"gc\":{\"count\":").append(gc[0] - _gc[0])
+            .append(",\"ms\":").append(gc[1] - _gc[1]).append("}}");
+        report(json.toString());
+    }
+
+    /** Writes the report LINE where it was asked for. */
+    private static void report(String line) {
+        if (_destination == null) {
+            System.err.println(line);
+            return;
+        }
+        try (PrintStream out = new PrintStream(
+                new FileOutputStream(_destination, true), true,
+                StandardCharsets.UTF_8.name())) {
+            out.println(line);
+        } catch (IOException e) {
+            System.err.println(line);
+        }
+    }
+
+    /** Returns the name under which the I/O of FILE is reported: its
+     *  path within the .gitlet directory of the current repository,
+     *  with the fan-out of the object store left out and temporary
+     *  files named for the files they replace, or "worktree" for a file
+     *  outside it. Files of other repositories, such as remotes, keep
+     *  their full paths. */
+    private static String key(File file) {
+        String path = file.getAbsolutePath();
+        if (!path.startsWith(_repository)) {
+            int gitlet = path.lastIndexOf(File.separator + ".gitlet"
+                    + File.separator);
+            if (gitlet < 0) {
+                return "worktree";
+            }
+            return path.substring(0, gitlet + 9)
+                + name(path.substring(gitlet + 9));
+        }
+        return name(path.substring(_repository.length()));
+    }
+
+    /** Returns the name under which a file at PATH within a .gitlet
+     *  directory is reported. */
+    private static String name(String path) {
+        path = path.replace(File.separatorChar, '/');
+        if (path.startsWith("objects/")) {
+            int kind = path.indexOf('/', "objects/".length());
+            return kind < 0 ? path : path.substring(0, kind);
+        }
+        int slash = path.lastIndexOf('/');
+        String dir = path.substring(0, slash + 1);
+        String base = path.substring(slash + 1);
+        if (base.startsWith(".") && base.matches("\\..*\\.tmp\\d+")) {
+            base = base.substring(1, base.lastIndexOf(".tmp"));
+        }
+        return dir + base;
+    }
+
+    /** Appends S to JSON as a JSON string. */
+    private static void string(StringBuilder json, String s) {
+        json.append('"');
+        for (char c : s.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < ' ') {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    /** Returns MS rounded to thousandths, as written in reports. */
+    private static String millis(double ms) {
+        return String.format("%.3f", ms);
+    }
+
+    /** Returns the bytes the current thread has allocated, or -1 if the
+     *  JVM does not say. */
+    private static long allocated() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean t =
+                (com.sun.management.ThreadMXBean) threads;
+            if (t.isThreadAllocatedMemorySupported()
+                    && t.isThreadAllocatedMemoryEnabled()) {
+                return t.getThreadAllocatedBytes(
+                        Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    /** Returns the number of garbage collections run so far and the
+     *  milliseconds they took. */
+    private static long[] gc() {
+        long[] result = new long[2];
+        for (GarbageCollectorMXBean gc
+                 : ManagementFactory.getGarbageCollectorMXBeans()) {
+            result[0] += Math.max(0, gc.getCollectionCount());
+            result[1] += Math.max(0, gc.getCollectionTime());
+        }
+        return result;
+    }
+
+    /** A phase of a command being traced, which ends when closed. */
+    static class Phase implements AutoCloseable {
+
+        /** The phase NAME, starting now. */
+        Phase(String name) {
+            _name = name;
+            _phaseStart = System.nanoTime();
+        }
+
+        /** Ends this phase. */
+        @Override
+        public void close() {
+            if (_name != null && _enabled) {
+                long[] totals =
+                    _phases.computeIfAbsent(_name, k -> new long[2]);
+                totals[0] += 1;
+                totals[1] += System.nanoTime() - _phaseStart;
+            }
+        }
+
+        /** Name of this phase, or null for NO_PHASE. */
+        private final String _name;
+
+        /** Time this phase started, in nanoseconds. */
+        private final long _phaseStart;
+    }
+
+    /** The phase returned when tracing is off, which records nothing. */
+    private static final Phase NO_PHASE = new Phase(null);
+
+    /** True iff the current command is being traced. */
+    private static boolean _enabled;
+
+    /** File the report is appended to, or null for the standard
+     *  error. */
+    private static String _destination;
+
+    /** The command traced. */
+    private static String _command;
+
+    /** The arguments of the command traced. */
+    private static String[] _args;
+
+    /** Absolute path of the .gitlet directory of the current repository,
+     *  ending in a separator. */
+    private static String _repository;
+
+    /** Time tracing started, in nanoseconds. */
+    private static long _start;
+
+    /** Bytes the main thread had allocated when tracing started. */
+    private static long _allocated;
+
+    /** Collections run, and their milliseconds, when tracing started. */
+    private static long[] _gc;
+
+    /** Count and total nanoseconds of each phase. */
+    private static final Map<String, long[]> _phases = new TreeMap<>();
+
+    /** Count of each event. */
+    private static final Map<String, Long> _counts = new TreeMap<>();
+
+    /** Bytes read and written in each file reported. */
+    private static final Map<String, long[]> _files = new TreeMap<>();
+
+    /** Number of hashes taken. */
+    private static long _hashes;
+
+    /** Bytes hashed. */
+    private static long _hashed;
+}
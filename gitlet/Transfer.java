@@ -0,0 +1,297 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+/** Negotiation of the commits that must be sent from one repository
+ *  to another. The receiving side advertises the tips of its branches
+ *  (its "haves"), the sending side the commits asked for (its
+ *  "wants"), and only the part of the sender's history that the
+ *  receiver lacks is walked.
+ *  @author Israel Rodriguez
+ */
+class Transfer {
+
+    /** Returns the IDs of the commits reachable in SOURCE from WANTS that
+     *  are missing from DEST, ordered so that every commit comes after
+     *  its parents. The walk stops at commits in HAVES or already in
+     *  DEST; since a repository holding a commit also holds all of its
+     *  ancestors, nothing beyond that frontier is read. */
+    static List<String> missingCommits(ObjectStore source,
+                                       Collection<String> wants,
+                                       Set<String> haves,
+                                       ObjectStore dest) {
+        ArrayList<String> result = new ArrayList<>();
+        Set<String> visited = new HashSet<>();
+        Set<String> done = new HashSet<>();
+        ArrayDeque<String> stack = new ArrayDeque<>();
+        for (String want : wants) {
+            if (isMissing(want, haves, dest)) {
+                stack.push(want);
+            }
+        }
+        while (!stack.isEmpty()) {
+            String id = stack.peek();
+            if (visited.add(id)) {
+                Commit c = source.readCommit(id);
+                if (c == null) {
+                    throw Utils.error("Missing commit %s.", id);
+                }
+                for (String parent : parents(c)) {
+                    if (!visited.contains(parent)
+                            && isMissing(parent, haves, dest)) {
+                        stack.push(parent);
+                    }
+                }
+            } else {
+                stack.pop();
+                if (done.add(id)) {
+                    result.add(id);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Returns the IDs of the commits reachable in SOURCE from WANTS but
+     *  not from HAVES, ordered so that every commit comes after its
+     *  parents. Used when the receiving side cannot be inspected
+     *  directly, so that HAVES (those of them known to SOURCE) are all
+     *  that is known of it.
+     *
+     *  Both sets are walked together, newest commit first, painting
+     *  everything reachable from HAVES as uninteresting, and the walk
+     *  stops as soon as only uninteresting commits remain to be
+     *  visited, so shared history beyond the most recent common commits
+     *  is not read. With skewed clocks a commit the receiver has may be
+     *  included, but a commit it lacks never is left out. */
+    static List<String> missingCommits(ObjectStore source,
+                                       Collection<String> wants,
+                                       Set<String> haves) {
+        PriorityQueue<Commit> queue = new PriorityQueue<>(
+                Comparator.comparingLong(Commit::getTime).reversed());
+        Set<String> seen = new HashSet<>();
+        Set<String> uninteresting = new HashSet<>();
+        Set<String> candidates = new HashSet<>();
+        int interestingQueued = 0;
+        for (String have : haves) {
+            Commit c = source.readCommit(have);
+            if (c != null && seen.add(have)) {
+                uninteresting.add(have);
+                queue.add(c);
+            }
+        }
+        for (String want : wants) {
+            Commit c = source.readCommit(want);
+            if (c == null) {
+                throw Utils.error("Missing commit %s.", want);
+            }
+            if (seen.add(want)) {
+                queue.add(c);
+                interestingQueued += 1;
+            }
+        }
+        while (interestingQueued > 0) {
+            Commit c = queue.poll();
+            boolean painted = uninteresting.contains(c.getSHA());
+            if (!painted) {
+                interestingQueued -= 1;
+                candidates.add(c.getSHA());
+            }
+            for (String parent : parents(c)) {
+                if (painted && uninteresting.add(parent)
+                        && seen.contains(parent)
+                        && !candidates.contains(parent)) {
+                    interestingQueued -= 1;
+                }
+                if (!seen.contains(parent)) {
+                    Commit p = source.readCommit(parent);
+                    if (p == null) {
+                        continue;
+                    }
+                    seen.add(parent);
+                    queue.add(p);
+                    if (!uninteresting.contains(parent)) {
+                        interestingQueued += 1;
+                    }
+                }
+            }
+        }
+        candidates.removeAll(uninteresting);
+        return parentsFirst(source, candidates);
+    }
+
+    /** Returns the IDs of the commits of SOURCE within DEPTH generations
+     *  of WANTS (DEPTH 1 being WANTS alone) for which RECEIVERHAS is
+     *  false, ordered so that every commit comes after its parents. The
+     *  commits at the last generation that have parents are added to
+     *  BOUNDARY: the receiver will not have their parents.
+     *
+     *  RECEIVERSHALLOW holds the receiver's own boundary commits. If it
+     *  has any, the walk goes on through commits the receiver has, so
+     *  that its boundary commits within reach are deepened; otherwise
+     *  it stops at them, since their history is complete. */
+    static List<String> missingCommits(ObjectStore source,
+                                       Collection<String> wants,
+                                       Predicate<String> receiverHas,
+                                       Set<String> receiverShallow,
+                                       int depth, Set<String> boundary) {
+        Set<String> result = new HashSet<>();
+        HashMap<String, Integer> distance = new HashMap<>();
+        ArrayDeque<String> queue = new ArrayDeque<>();
+        boolean deepen = !receiverShallow.isEmpty();
+        for (String want : wants) {
+            if (distance.putIfAbsent(want, 0) == null) {
+                queue.add(want);
+            }
+        }
+        while (!queue.isEmpty()) {
+            String id = queue.poll();
+            int d = distance.get(id);
+            Commit c = source.readCommit(id);
+            if (c == null) {
+                throw Utils.error("Missing commit %s.", id);
+            }
+            boolean has = receiverHas.test(id);
+            if (!has) {
+                result.add(id);
+            } else if (!deepen) {
+                continue;
+            }
+            List<String> parents = parents(c);
+            if (d + 1 >= depth) {
+                if (!parents.isEmpty() && !has) {
+                    boundary.add(id);
+                }
+                continue;
+            }
+            for (String parent : parents) {
+                if (distance.putIfAbsent(parent, d + 1) == null) {
+                    queue.add(parent);
+                }
+            }
+        }
+        return parentsFirst(source, result);
+    }
+
+    /** Returns the IDs in COMMITS, commits of SOURCE, ordered so that
+     *  every commit comes after those of its parents in COMMITS. */
+    static List<String> parentsFirst(ObjectStore source,
+                                     Set<String> commits) {
+        ArrayList<String> result = new ArrayList<>();
+        Set<String> visited = new HashSet<>();
+        Set<String> done = new HashSet<>();
+        ArrayDeque<String> stack = new ArrayDeque<>();
+        for (String id : new TreeSet<>(commits)) {
+            if (visited.contains(id)) {
+                continue;
+            }
+            stack.push(id);
+            while (!stack.isEmpty()) {
+                String top = stack.peek();
+                if (visited.add(top)) {
+                    for (String parent : parents(source.readCommit(top))) {
+                        if (commits.contains(parent)
+                                && !visited.contains(parent)) {
+                            stack.push(parent);
+                        }
+                    }
+                } else {
+                    stack.pop();
+                    if (done.add(top)) {
+                        result.add(top);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Sends the commits COMMITS, ordered parents first, from SOURCE to
+     *  DEST as a single pack, which DEST checks and then stores. The
+     *  parents of the commits in BOUNDARY are not sent, and DEST does
+     *  not have them. If BLOBS is false, the contents of files are left
+     *  behind for DEST to fetch when it needs them. */
+    static void sendPack(ObjectStore source, List<String> commits,
+                         Set<String> boundary, boolean blobs,
+                         ObjectStore dest) {
+        if (commits.isEmpty()) {
+            return;
+        }
+        File pack = Utils.join(dest.directory(),
+                "incoming-" + System.nanoTime() + ".pack");
+        try {
+            dest.directory().mkdirs();
+            try (OutputStream out = new BufferedOutputStream(
+                    new FileOutputStream(pack))) {
+                Pack.write(out, source, commits, boundary, blobs);
+            }
+            Pack.read(pack, dest);
+        } catch (IOException e) {
+            throw Utils.error("Transfer failed: %s", e.getMessage());
+        } finally {
+            pack.delete();
+        }
+    }
+
+    /** Returns the IDs of the commits of SOURCE reachable from HAVES,
+     *  without going past the commits in SHALLOW: the commits held by a
+     *  receiver that advertised HAVES and SHALLOW. */
+    static Set<String> reachable(ObjectStore source, Set<String> haves,
+                                 Set<String> shallow) {
+        Set<String> result = new HashSet<>();
+        ArrayDeque<String> stack = new ArrayDeque<>(haves);
+        while (!stack.isEmpty()) {
+            String id = stack.pop();
+            Commit c = source.readCommit(id);
+            if (c == null || !result.add(id) || shallow.contains(id)) {
+                continue;
+            }
+            stack.addAll(parents(c));
+        }
+        return result;
+    }
+
+    /** Returns the IDs of the commits that BRANCHES point to. */
+    static Set<String> tips(Map<String, Branch> branches) {
+        Set<String> result = new HashSet<>();
+        for (Branch b : branches.values()) {
+            result.add(b.getID());
+        }
+        return result;
+    }
+
+    /** Returns the IDs of the parents of C. */
+    static List<String> parents(Commit c) {
+        ArrayList<String> result = new ArrayList<>(2);
+        if (c.parent() != null && !c.parent().isEmpty()) {
+            result.add(c.parent());
+        }
+        if (c.getSecondParent() != null) {
+            result.add(c.getSecondParent());
+        }
+        return result;
+    }
+
+    /** Returns true iff the commit ID must be sent to DEST, which
+     *  advertised HAVES. */
+    private static boolean isMissing(String id, Set<String> haves,
+                                     ObjectStore dest) {
+        return !haves.contains(id) && !dest.hasCommit(id);
+    }
+}
@@ -0,0 +1,39 @@
+package gitlet;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/** A connection to the repository a Remote refers to, through which
+ *  commits are pushed and fetched.
+ *  @author Israel Rodriguez
+ */
+interface Transport {
+
+    /** Returns the branches of the remote repository, mapping each
+     *  branch name to the ID of the commit it points to. */
+    Map<String, String> refs();
+
+    /** Stores in DEST the commits reachable from the remote branch
+     *  BRANCH, apart from those reachable from HAVES, which DEST is known
+     *  to have. If DEPTH is positive, only the commits within DEPTH
+     *  generations of the head of BRANCH are fetched. SHALLOW holds the
+     *  commits of DEST whose parents DEST lacks; the commits fetched
+     *  without their parents are added to it. If BLOBS is false, the
+     *  contents of files are left behind, to be fetched with fetchBlobs
+     *  when they are needed. Returns the ID of the commit BRANCH points
+     *  to. */
+    String fetch(String branch, Set<String> haves, int depth,
+                 Set<String> shallow, boolean blobs, ObjectStore dest);
+
+    /** Stores in DEST the contents of those of the blobs with IDS that
+     *  the remote repository has. */
+    void fetchBlobs(Collection<String> ids, ObjectStore dest);
+
+    /** Sends the remote repository the commits of SOURCE reachable from
+     *  the commit ID that it is missing, then points its branch BRANCH
+     *  at ID, provided that BRANCH still points at EXPECTED (or does not
+     *  exist, if EXPECTED is null). */
+    void push(ObjectStore source, String id, String branch,
+              String expected);
+}
@@ -0,0 +1,137 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.function.Consumer;
+
+/** Measures the throughput of fetching and pushing over HttpTransport
+ *  against a GitletServer on the loopback interface, and checks that
+ *  the transferred histories arrive intact. Usage:
+ *      java gitlet.TransportBenchmark [COMMITS [FILES]]
+ *  builds a repository with COMMITS commits (default 2000), each
+ *  changing one of FILES files (default 20), then reports one line per
+ *  measurement.
+ *  @author Israel Rodriguez
+ */
+public class TransportBenchmark {
+
+    /** Runs the benchmark with ARGS as described above. */
+    public static void main(String... args) throws IOException {
+        int commits = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int files = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        File root = Files.createTempDirectory("gitlet-bench").toFile();
+        File source = new File(root, "source");
+        File target = new File(root, "target");
+        source.mkdirs();
+        target.mkdirs();
+
+        run(source, Gitlet::init);
+        long start = System.nanoTime();
+        for (int i = 0; i < commits; i += 1) {
+            commitChange(source, i, files);
+        }
+        report("build", commits, start);
+
+        GitletServer server = new GitletServer(new File(source, ".gitlet"));
+        int port = server.start("127.0.0.1", 0);
+        try {
+            run(target, Gitlet::init);
+            String url = "http://127.0.0.1:" + port;
+            run(target, g -> g.addRemote("origin", url));
+
+            start = System.nanoTime();
+            run(target, g -> g.fetch("origin", "master", 0, false));
+            report("fetch-full", commits, start);
+            check(source, target);
+
+            commitChange(source, commits, files);
+            start = System.nanoTime();
+            run(target, g -> g.fetch("origin", "master", 0, false));
+            report("fetch-one-new", 1, start);
+            check(source, target);
+
+            run(target, g -> g.checkoutBranch("origin/master"));
+            run(target, g -> g.branch("work"));
+            run(target, g -> g.checkoutBranch("work"));
+            commitChange(target, commits + 1, files);
+            start = System.nanoTime();
+            run(target, g -> g.push("origin", "work"));
+            report("push-one-new", 1, start);
+            String pushed = new RemoteRepository(target).refs().get("work");
+            String received = new RemoteRepository(source).refs().get("work");
+            if (received == null || !received.equals(pushed)) {
+                fail("pushed branch did not arrive");
+            }
+        } finally {
+            server.stop();
+            delete(root);
+        }
+    }
+
+    /** Makes commit number I in the repository in DIR, which changes one
+     *  of FILES files. */
+    private static void commitChange(File dir, int i, int files) {
+        String name = "file" + (i % files) + ".txt";
+        File f = new File(dir, name);
+        String previous = f.isFile() ? Utils.readContentsAsString(f) : "";
+        Utils.writeContents(f, previous + "line " + i + "\n");
+        run(dir, g -> g.add(name));
+        run(dir, g -> g.commit("Commit " + i, null));
+    }
+
+    /** Runs COMMAND on the repository in DIR, as one gitlet command. */
+    static void run(File dir, Consumer<Gitlet> command) {
+        Gitlet g = new Gitlet(dir.getPath());
+        try {
+            command.accept(g);
+        } finally {
+            g.close();
+        }
+    }
+
+    /** Fails unless the remote-tracking branch in TARGET matches the head
+     *  of SOURCE and the history behind it is complete. */
+    private static void check(File source, File target) {
+        String head = new RemoteRepository(source).refs().get("master");
+        String fetched =
+                new RemoteRepository(target).refs().get("origin/master");
+        if (!head.equals(fetched)) {
+            fail("fetched branch does not match the remote");
+        }
+        ObjectStore store = new RemoteRepository(target).objects();
+        for (Commit c = store.readCommit(head); c != null;
+             c = store.readCommit(c.parent())) {
+            for (Blob b : c.getFiles().values()) {
+                if (b.getContents() == null) {
+                    fail("missing contents of " + b.filename());
+                }
+            }
+        }
+    }
+
+    /** Reports how long the measurement NAME of COUNT commits took since
+     *  START. */
+    private static void report(String name, int count, long start) {
+        double millis = (System.nanoTime() - start) / 1e6;
+        System.out.printf("%s commits=%d ms=%.1f commits/s=%.0f%n",
+                name, count, millis, count * 1000.0 / Math.max(millis, 1e-3));
+    }
+
+    /** Reports failure MSG and exits. */
+    private static void fail(String msg) {
+        System.out.println("FAILED: " + msg);
+        System.exit(1);
+    }
+
+    /** Deletes F and everything under it. */
+    private static void delete(File f) {
+        File[] children = f.listFiles();
+        if (children != null) {
+            for (File c : children) {
+                delete(c);
+            }
+        }
+        f.delete();
+    }
+}
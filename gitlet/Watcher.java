@@ -0,0 +1,268 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/** A process watching the working directory of a repository, which
+ *  records which files have changed so that commands can look at just
+ *  those rather than at every file.
+ *
+ *  The watcher numbers the changes it sees, and records, in the file
+ *  STATE of the directory DIR in the .gitlet directory, the number of
+ *  the last change to each file since it started. A token, naming the
+ *  watcher and the number of the last change it has recorded, marks a
+ *  point in this record, and query returns the files changed since a
+ *  token. A command that has looked at the files as of one token need
+ *  only look again at the files changed since.
+ *
+ *  A query first makes sure that the watcher has recorded every change
+ *  made before it: it creates a cookie file in the directory COOKIES,
+ *  which the watcher also watches, and waits for the watcher to delete
+ *  it, which it does only after recording the changes it saw first.
+ *  Where the watcher cannot say what changed, query says so, and the
+ *  command must look at every file: when no watcher is running, which
+ *  the lock it holds on DIR shows; when the token is from another
+ *  watcher, as after a restart; and when the watcher has lost events,
+ *  on which it starts afresh under a new name.
+ *  @author Israel Rodriguez
+ */
+class Watcher {
+
+    /** Setting that has commands ask a watcher what changed. */
+    static final String CONFIG_KEY = "core.fsmonitor";
+
+    /** Directory, in the .gitlet directory, of the watcher's files. */
+    static final String DIR = "watch";
+
+    /** Name of the record of changes in DIR. */
+    static final String STATE = "state";
+
+    /** Name of the directory of cookies in DIR. */
+    static final String COOKIES = "cookies";
+
+    /** Longest wait for the watcher to answer a cookie, in
+     *  milliseconds. */
+    static final long COOKIE_TIMEOUT = 1000;
+
+    /** What has changed since a token. */
+    static class Changes {
+
+        /** Changes whose token is TOKEN, or null if there is no watcher,
+         *  and whose changed files are PATHS, or null if unknown. */
+        Changes(String token, Set<String> paths) {
+            _token = token;
+            _paths = paths;
+        }
+
+        /** Returns the token of the present, or null if no watcher is
+         *  running. */
+        String token() {
+            return _token;
+        }
+
+        /** Returns the names of the files changed since the token asked
+         *  about, or null if every file must be looked at. */
+        Set<String> paths() {
+            return _paths;
+        }
+
+        /** The token of the present. */
+        private final String _token;
+
+        /** The files changed, or null. */
+        private final Set<String> _paths;
+    }
+
+    /** Returns what has changed, in the working directory of the
+     *  repository whose .gitlet directory is GITLETDIR, since SINCE, a
+     *  token from an earlier query, or null. */
+    static Changes query(File gitletDir, String since) {
+        File dir = Utils.join(gitletDir, DIR);
+        try (RepositoryLock free = RepositoryLock.tryAcquire(dir)) {
+            if (free != null || !dir.isDirectory()) {
+                return new Changes(null, null);
+            }
+        }
+        if (!sync(Utils.join(dir, COOKIES))) {
+            return new Changes(null, null);
+        }
+        File stateFile = Utils.join(dir, STATE);
+        if (!stateFile.isFile()) {
+            return new Changes(null, null);
+        }
+        State state = Utils.readObject(stateFile, State.class);
+        String token = state._name + ":" + state._count;
+        String prefix = state._name + ":";
+        if (since == null || !since.startsWith(prefix)) {
+            return new Changes(token, null);
+        }
+        long last;
+        try {
+            last = Long.parseLong(since.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return new Changes(token, null);
+        }
+        Set<String> paths = new HashSet<>();
+        for (Map.Entry<String, Long> e : state._changed.entrySet()) {
+            if (e.getValue() > last) {
+                paths.add(e.getKey());
+            }
+        }
+        return new Changes(token, paths);
+    }
+
+    /** Creates a cookie in the directory COOKIES and waits for the
+     *  watcher to delete it. Returns false if it did not in time. */
+    private static boolean sync(File cookies) {
+        File cookie = Utils.join(cookies, Long.toHexString(System.nanoTime())
+                + "-" + ProcessHandle.current().pid());
+        try {
+            if (!cookie.createNewFile()) {
+                return false;
+            }
+        } catch (IOException e) {
+            return false;
+        }
+        long deadline = System.currentTimeMillis() + COOKIE_TIMEOUT;
+        while (cookie.exists()) {
+            if (System.currentTimeMillis() > deadline) {
+                cookie.delete();
+                return false;
+            }
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                cookie.delete();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** A watcher of the working directory WORKDIR of the repository
+     *  whose .gitlet directory is GITLETDIR. */
+    Watcher(File workDir, File gitletDir) {
+        _workDir = workDir;
+        _dir = Utils.join(gitletDir, DIR);
+        _cookies = Utils.join(_dir, COOKIES);
+    }
+
+    /** Watches until the working directory goes away or the thread is
+     *  interrupted, calling STARTED once watching has begun. */
+    void run(Runnable started) {
+        _cookies.mkdirs();
+        try (RepositoryLock lock = RepositoryLock.tryAcquire(_dir)) {
+            if (lock == null) {
+                throw Utils.error("Already watching this repository.");
+            }
+            try (WatchService service =
+                     FileSystems.getDefault().newWatchService()) {
+                WatchKey files = _workDir.toPath().register(service,
+                        ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+                WatchKey cookies = _cookies.toPath().register(service,
+                        ENTRY_CREATE);
+                restart();
+                started.run();
+                watch(service, files, cookies);
+            } catch (ClosedWatchServiceException | InterruptedException e) {
+                /* Stopped. */
+            } catch (IOException e) {
+                throw Utils.error("Could not watch: %s", e.getMessage());
+            }
+        }
+    }
+
+    /** Records the changes SERVICE reports for the keys FILES and
+     *  COOKIES until FILES is no longer valid. */
+    private void watch(WatchService service, WatchKey files, WatchKey cookies)
+        throws InterruptedException {
+        while (true) {
+            WatchKey key = service.take();
+            List<File> seen = new ArrayList<>();
+            boolean valid = true;
+            for (; key != null; key = service.poll()) {
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        restart();
+                        continue;
+                    }
+                    String name = ((Path) event.context()).toString();
+                    if (key == cookies) {
+                        seen.add(Utils.join(_cookies, name));
+                    } else if (!name.equals(".gitlet")) {
+                        _state._count += 1;
+                        _state._changed.put(name, _state._count);
+                    }
+                }
+                valid &= key.reset() || key != files;
+            }
+            save();
+            for (File cookie : seen) {
+                cookie.delete();
+            }
+            if (!valid) {
+                return;
+            }
+        }
+    }
+
+    /** Starts a fresh record under a new name, so that every token
+     *  given out before is refused. */
+    private void restart() {
+        _state = new State();
+        _state._name = Long.toHexString(System.nanoTime())
+                + Long.toHexString(ProcessHandle.current().pid());
+        save();
+    }
+
+    /** Writes out the record of changes. */
+    private void save() {
+        Utils.atomicWriteObject(Utils.join(_dir, STATE), _state);
+    }
+
+    /** A record of changes. */
+    private static class State implements Serializable {
+
+        /** For serializing purposes. */
+        private static final long serialVersionUID = 0;
+
+        /** Name of the watcher that made this record. */
+        private String _name;
+
+        /** Number of changes recorded. */
+        private long _count;
+
+        /** The number of the last change to each file changed. */
+        private HashMap<String, Long> _changed = new HashMap<>();
+    }
+
+    /** The directory watched. */
+    private final File _workDir;
+
+    /** Directory of the watcher's files. */
+    private final File _dir;
+
+    /** Directory of cookies. */
+    private final File _cookies;
+
+    /** The record of changes. */
+    private State _state;
+}
@@ -0,0 +1,93 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import static gitlet.UnitTest.assertTrue;
+import static gitlet.UnitTest.commitFile;
+import static gitlet.UnitTest.fail;
+import static gitlet.UnitTest.run;
+
+/** Tests of status in a repository whose working directory a Watcher,
+ *  running as a process of its own, is watching.
+ *  @author Israel Rodriguez
+ */
+class WatcherTest {
+
+    /** Longest wait for the watcher to start, in milliseconds. */
+    private static final long START_TIMEOUT = 10000;
+
+    /** Files edited, made and deleted after the watcher has started,
+     *  and after status has kept the working tree as of its token, are
+     *  reported by the next status. */
+    static void testStatusSeesEditsAfterStart()
+        throws IOException, InterruptedException {
+        File dir = UnitTest.tempDirectory();
+        Process watcher = null;
+        try {
+            run(dir, Gitlet::init);
+            commitFile(dir, "f.txt", "one\n", "One");
+            commitFile(dir, "h.txt", "three\n", "Three");
+            run(dir, g -> g.config(Watcher.CONFIG_KEY, "true"));
+            watcher = UnitTest.gitlet(dir, "watch")
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .redirectError(ProcessBuilder.Redirect.DISCARD).start();
+            File gitletDir = new File(dir, ".gitlet");
+            waitForStart(gitletDir);
+
+            String before = status(dir);
+            assertTrue("status before edits:\n" + before,
+                    !before.contains("f.txt") && !before.contains("g.txt"));
+            assertTrue("status did not keep the working tree",
+                    new File(gitletDir, WorkingTree.FILE).isFile());
+
+            Utils.writeContents(new File(dir, "f.txt"), "two\n");
+            Utils.writeContents(new File(dir, "g.txt"), "new\n");
+            new File(dir, "h.txt").delete();
+            String after = status(dir);
+            assertTrue("edit not reported:\n" + after,
+                    after.contains("f.txt (modified)"));
+            assertTrue("deletion not reported:\n" + after,
+                    after.contains("h.txt (deleted)"));
+            assertTrue("new file not reported:\n" + after,
+                    after.contains("=== Untracked Files ===\ng.txt\n"));
+            assertTrue("watcher stopped", watcher.isAlive()
+                    && Watcher.query(gitletDir, null).token() != null);
+        } finally {
+            if (watcher != null) {
+                watcher.destroy();
+                watcher.waitFor();
+            }
+            UnitTest.delete(dir);
+        }
+    }
+
+    /** Waits for a watcher of the repository whose .gitlet directory is
+     *  GITLETDIR to record that it has started. */
+    private static void waitForStart(File gitletDir)
+        throws InterruptedException {
+        File state = Utils.join(gitletDir, Watcher.DIR, Watcher.STATE);
+        long deadline = System.currentTimeMillis() + START_TIMEOUT;
+        while (!state.isFile()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("watcher did not start");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    /** Returns what status prints for the repository in DIR. */
+    private static String status(File dir) {
+        PrintStream out = System.out;
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(printed, true));
+        try {
+            run(dir, Gitlet::status);
+        } finally {
+            System.setOut(out);
+        }
+        return printed.toString();
+    }
+}
@@ -0,0 +1,109 @@
+package gitlet;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.Set;
+import java.util.TreeMap;
+
+/** The files of a working directory that are not ignored, each with the
+ *  ID its contents would have as a blob, from which status tells which
+ *  files are modified without comparing contents.
+ *
+ *  Finding these means reading every file. Where a Watcher runs, the
+ *  result is kept, in the file FILE of the .gitlet directory, with the
+ *  token of the watcher's query made before it was found, and the next
+ *  command reads again only the files the watcher has seen change since.
+ *  When the watcher cannot say what changed, or the .gitletignore file
+ *  is among the files changed, every file is read again.
+ *  @author Israel Rodriguez
+ */
+class WorkingTree implements Serializable {
+
+    /** For serializing purposes. */
+    private static final long serialVersionUID = 0;
+
+    /** Name of the file, in the .gitlet directory, of the kept tree. */
+    static final String FILE = "worktree";
+
+    /** Returns the tree of the working directory WORKDIR, as IGNORE
+     *  filters it, of the repository whose .gitlet directory is
+     *  GITLETDIR. If MONITOR, starts from the tree kept there, if any,
+     *  and a Watcher's record of what has changed since. */
+    static WorkingTree load(File workDir, File gitletDir,
+                            IgnoreMatcher ignore, boolean monitor) {
+        if (!monitor) {
+            WorkingTree result = new WorkingTree();
+            result.scan(workDir, ignore);
+            return result;
+        }
+        File file = Utils.join(gitletDir, FILE);
+        WorkingTree kept = null;
+        if (file.isFile()) {
+            try {
+                kept = Utils.readObject(file, WorkingTree.class);
+            } catch (IllegalArgumentException e) {
+                kept = null;
+            }
+        }
+        Watcher.Changes changes = Watcher.query(gitletDir,
+                kept == null ? null : kept._token);
+        Set<String> paths = changes.paths();
+        WorkingTree result = kept;
+        if (kept == null || paths == null
+                || paths.contains(IgnoreMatcher.FILE)) {
+            result = new WorkingTree();
+            result.scan(workDir, ignore);
+        } else {
+            for (String name : paths) {
+                result.update(workDir, ignore, name);
+            }
+        }
+        if (changes.token() == null) {
+            file.delete();
+        } else if (!changes.token().equals(result._token)
+                   || result != kept) {
+            result._token = changes.token();
+            Utils.atomicWriteObject(file, result);
+        }
+        return result;
+    }
+
+    /** Returns the names of the files, in lexicographic order. */
+    Set<String> names() {
+        return _files.keySet();
+    }
+
+    /** Returns the ID the file NAME would have as a blob, or null if it
+     *  is not in this tree. */
+    ObjectId id(String name) {
+        return _files.get(name);
+    }
+
+    /** Fills this tree with every file of WORKDIR that IGNORE does not
+     *  ignore. */
+    private void scan(File workDir, IgnoreMatcher ignore) {
+        Trace.count("working tree scans");
+        String[] names = workDir.list();
+        if (names != null) {
+            for (String name : names) {
+                update(workDir, ignore, name);
+            }
+        }
+    }
+
+    /** Brings the entry for the file NAME in WORKDIR up to date. */
+    private void update(File workDir, IgnoreMatcher ignore, String name) {
+        if (ignore.ignored(name) || !Utils.join(workDir, name).isFile()) {
+            _files.remove(name);
+        } else {
+            Trace.count("working files read");
+            _files.put(name, new Blob(name, workDir.getPath()).id());
+        }
+    }
+
+    /** The watcher's token as of which this tree is known, or null. */
+    private String _token;
+
+    /** The blob ID of each file, by name. */
+    private final TreeMap<String, ObjectId> _files = new TreeMap<>();
+}